@@ -4,13 +4,27 @@ import com.git.hui.springai.advance.util.JsonUtil;
 import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +32,17 @@ import java.util.stream.Collectors;
  * <p>
  * 方案一：定义list的数据结构，key 为 conversationId, value 为消息信息
  * 方案二：定义hash的数据结构，field 为 conversationId, value 为列表
+ * <p>
+ * 增量模式（默认开启）：MessageWindowChatMemory 每次保存前都会先查询一次会话记录，这里记下查询到的消息，
+ * 保存时与之比对，只把新增的消息 RPUSH 到列表尾部、再用 LTRIM 裁掉滑出窗口的旧消息；
+ * 无法按 "丢弃头部 + 追加尾部" 描述的变化（如窗口中间的消息被淘汰）退化为整体覆盖，已有消息直接复用查询时的json，不再重新序列化。
+ * <p>
+ * 本地记录的消息只代表当前实例最后一次看到的内容，多实例部署时其他实例可能已经改写了列表：
+ * 增量保存通过一个 Lua 脚本在redis中原子地完成 "校验列表内容的摘要与本地记录一致 -> RPUSH -> LTRIM"，只需要一次往返；
+ * 摘要不一致时脚本不做任何修改，退化为整体覆盖（DEL + RPUSH 放在一个 MULTI/EXEC 事务中一次性发送）。
+ * <p>
+ * 旧版本以 leftPushAll 写入 chat:{conversationId}，列表中的消息是倒序的；新版本写入 chat-v2:{conversationId}，
+ * 查询不到新key时读取旧key并翻转顺序，下次保存时整体覆盖写入新key并删除旧key
  *
  * @author YiHui
  * @date 2025/8/7
@@ -27,7 +52,59 @@ public class RedisChatMemoryRepository implements ChatMemoryRepository {
     @Autowired
     private StringRedisTemplate redisTemplate;
 
-    private static final String PREFIX = "chat:";
+    /**
+     * 是否开启增量保存
+     */
+    @Value("${chat.memory.redis.incremental:true}")
+    private boolean incremental;
+
+    /**
+     * 与旧版本的前缀互不包含，按前缀查询会话id时两种key不会混在一起
+     */
+    private static final String PREFIX = "chat-v2:";
+
+    /**
+     * 旧版本的key前缀，列表中的消息为倒序
+     */
+    private static final String LEGACY_PREFIX = "chat:";
+
+    /**
+     * 增量保存脚本：列表内容的摘要与 ARGV[1] 一致时，追加 ARGV[3..] 并裁掉头部 ARGV[2] 条消息，返回1；否则不做修改，返回0。
+     * 摘要的计算方式与 {@link Snapshot#digest(List)} 一致
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = RedisScript.of("""
+            local items = redis.call('LRANGE', KEYS[1], 0, -1)
+            local buf = {}
+            for i, item in ipairs(items) do
+                buf[i] = string.len(item) .. ':' .. item
+            end
+            if redis.sha1hex(table.concat(buf)) ~= ARGV[1] then
+                return 0
+            end
+            if #ARGV > 2 then
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, 3))
+            end
+            local drop = tonumber(ARGV[2])
+            if drop > 0 then
+                redis.call('LTRIM', KEYS[1], drop, -1)
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * 本地最多记录多少个会话最近一次读写的消息，超出后淘汰最久未访问的会话（下次保存时整体覆盖）
+     */
+    private static final int MAX_SNAPSHOTS = 10_000;
+
+    /**
+     * 会话id -> redis中当前保存的消息
+     */
+    private final Map<String, Snapshot> snapshots = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    });
 
     /**
      * 查询所有会话id
@@ -36,8 +113,11 @@ public class RedisChatMemoryRepository implements ChatMemoryRepository {
      */
     @Override
     public List<String> findConversationIds() {
-        Set<String> ans = redisTemplate.keys(PREFIX + "*");
-        return ans.stream().map(key -> key.substring(PREFIX.length())).collect(Collectors.toList());
+        // 新旧两种前缀分别查询，尚未迁移的旧会话同样返回
+        Set<String> ids = new LinkedHashSet<>();
+        redisTemplate.keys(PREFIX + "*").forEach(key -> ids.add(key.substring(PREFIX.length())));
+        redisTemplate.keys(LEGACY_PREFIX + "*").forEach(key -> ids.add(key.substring(LEGACY_PREFIX.length())));
+        return new ArrayList<>(ids);
     }
 
     /**
@@ -52,10 +132,21 @@ public class RedisChatMemoryRepository implements ChatMemoryRepository {
         // 查询对话历史
         List<String> ans = redisTemplate.opsForList().range(key, 0, -1);
         if (CollectionUtils.isEmpty(ans)) {
-            return Collections.emptyList();
+            List<String> legacy = redisTemplate.opsForList().range(LEGACY_PREFIX + conversationId, 0, -1);
+            if (CollectionUtils.isEmpty(legacy)) {
+                remember(conversationId, Snapshot.EMPTY);
+                return Collections.emptyList();
+            }
+            // 旧版本写入的倒序列表：翻转后返回，不记录快照，下次保存时整体覆盖完成迁移
+            snapshots.remove(conversationId);
+            List<Message> messages = legacy.stream().map(item -> JsonUtil.toObj(item, Message.class)).collect(Collectors.toList());
+            Collections.reverse(messages);
+            return messages;
         }
 
-        return ans.stream().map(item -> JsonUtil.toObj(item, Message.class)).collect(Collectors.toList());
+        List<Message> messages = ans.stream().map(item -> JsonUtil.toObj(item, Message.class)).collect(Collectors.toList());
+        remember(conversationId, new Snapshot(List.copyOf(messages), List.copyOf(ans)));
+        return messages;
     }
 
     /**
@@ -67,11 +158,71 @@ public class RedisChatMemoryRepository implements ChatMemoryRepository {
     @Override
     public void saveAll(String conversationId, List<Message> messages) {
         String key = PREFIX + conversationId;
-        List<String> messageJsons = messages.stream().map(JsonUtil::toStr).toList();
-        // 先删除旧数据
-        redisTemplate.delete(key);
-        // 添加新数据，采用覆盖式更新方式
-        redisTemplate.opsForList().leftPushAll(key, messageJsons);
+        if (CollectionUtils.isEmpty(messages)) {
+            deleteByConversationId(conversationId);
+            return;
+        }
+
+        Snapshot snapshot = incremental ? snapshots.get(conversationId) : null;
+        int drop = snapshot == null ? -1 : snapshot.dropHead(messages);
+        List<String> messageJsons = null;
+        if (drop >= 0) {
+            // 增量保存：裁掉头部滑出窗口的消息，追加新消息
+            int kept = snapshot.messages().size() - drop;
+            List<String> appended = messages.subList(kept, messages.size()).stream().map(JsonUtil::toStr).toList();
+            if (saveIncrementally(key, snapshot, drop, appended)) {
+                messageJsons = new ArrayList<>(snapshot.jsons().subList(drop, snapshot.jsons().size()));
+                messageJsons.addAll(appended);
+            }
+        }
+        if (messageJsons == null) {
+            // 整体覆盖：先删除旧数据（包括旧版本的倒序列表），再按顺序写入（rightPush 保证与消息顺序一致）
+            List<String> jsons = snapshot == null ? messages.stream().map(JsonUtil::toStr).toList() : snapshot.toJsons(messages);
+            execute(ops -> {
+                ops.delete(List.of(key, LEGACY_PREFIX + conversationId));
+                ops.opsForList().rightPushAll(key, jsons);
+            });
+            messageJsons = jsons;
+        }
+        remember(conversationId, new Snapshot(List.copyOf(messages), messageJsons));
+    }
+
+    /**
+     * 增量保存：在一个 Lua 脚本中校验redis中的列表仍与本地快照一致，再追加新消息、裁掉头部
+     *
+     * @return 列表已被其他实例修改时返回false，此时列表保持不变，由调用方整体覆盖
+     */
+    private boolean saveIncrementally(String key, Snapshot snapshot, int drop, List<String> appended) {
+        Object[] args = new Object[2 + appended.size()];
+        args[0] = Snapshot.digest(snapshot.jsons());
+        args[1] = String.valueOf(drop);
+        for (int i = 0; i < appended.size(); i++) {
+            args[2 + i] = appended.get(i);
+        }
+        Long saved = redisTemplate.execute(APPEND_SCRIPT, List.of(key), args);
+        return saved != null && saved == 1L;
+    }
+
+    private void remember(String conversationId, Snapshot snapshot) {
+        if (incremental) {
+            snapshots.put(conversationId, snapshot);
+        }
+    }
+
+    /**
+     * 在一个 MULTI/EXEC 事务中执行写命令，命令在客户端排队，exec 时一次性发送
+     */
+    private void execute(Consumer<RedisOperations<String, String>> commands) {
+        redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                commands.accept(ops);
+                return ops.exec();
+            }
+        });
     }
 
     /**
@@ -81,6 +232,63 @@ public class RedisChatMemoryRepository implements ChatMemoryRepository {
      */
     @Override
     public void deleteByConversationId(String conversationId) {
-        redisTemplate.delete(PREFIX + conversationId);
+        redisTemplate.delete(List.of(PREFIX + conversationId, LEGACY_PREFIX + conversationId));
+        remember(conversationId, Snapshot.EMPTY);
+    }
+
+    /**
+     * redis中保存的消息以及对应的json
+     */
+    record Snapshot(List<Message> messages, List<String> jsons) {
+        static final Snapshot EMPTY = new Snapshot(List.of(), List.of());
+
+        /**
+         * 列表内容的摘要：每条消息按 "UTF-8字节数:内容" 拼接后计算SHA-1，与增量保存脚本中的计算方式一致；
+         * 带上长度前缀，避免不同的切分方式拼接出相同的字符串
+         */
+        static String digest(List<String> jsons) {
+            try {
+                MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+                for (String json : jsons) {
+                    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                    sha1.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+                    sha1.update(bytes);
+                }
+                return HexFormat.of().formatHex(sha1.digest());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 新的消息列表是否等于 丢弃头部若干条旧消息 + 追加若干条新消息
+         *
+         * @return 需要丢弃的头部消息数，无法增量保存时返回-1
+         */
+        int dropHead(List<Message> target) {
+            int size = messages.size();
+            for (int drop = 0; drop <= size; drop++) {
+                int kept = size - drop;
+                if (kept <= target.size() && messages.subList(drop, size).equals(target.subList(0, kept))) {
+                    // 旧消息全部丢弃时，只有旧列表本身为空才是增量，否则整体覆盖更省事
+                    return kept == 0 && size > 0 ? -1 : drop;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 整体覆盖时复用已有消息的json，只序列化新消息
+         */
+        List<String> toJsons(List<Message> target) {
+            Map<Message, String> known = new IdentityHashMap<>();
+            for (int i = 0; i < messages.size(); i++) {
+                known.put(messages.get(i), jsons.get(i));
+            }
+            return target.stream().map(message -> {
+                String json = known.get(message);
+                return json != null ? json : JsonUtil.toStr(message);
+            }).toList();
+        }
     }
 }
@@ -0,0 +1,118 @@
+package com.git.hui.springai.advance.repository;
+
+import com.git.hui.springai.advance.util.JsonUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基于真实redis验证增量保存脚本与旧数据迁移，本地没有docker时跳过
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class RedisChatMemoryRepositoryRedisTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static JedisConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final Message user1 = new UserMessage("第一个问题");
+    private final Message assistant1 = new AssistantMessage("第一个回答");
+    private final Message user2 = new UserMessage("第二个问题");
+    private final Message assistant2 = new AssistantMessage("第二个回答");
+
+    @BeforeAll
+    public static void init() {
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    public static void destroy() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    public void flush() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    private RedisChatMemoryRepository newRepository() {
+        RedisChatMemoryRepository repository = new RedisChatMemoryRepository();
+        ReflectionTestUtils.setField(repository, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(repository, "incremental", true);
+        return repository;
+    }
+
+    private List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    @Test
+    public void testSaveAppendAndTrim() {
+        RedisChatMemoryRepository repository = newRepository();
+        repository.saveAll("c1", List.of(user1, assistant1));
+        assertEquals(List.of("第一个问题", "第一个回答"), texts(repository.findByConversationId("c1")));
+
+        // 追加
+        repository.saveAll("c1", List.of(user1, assistant1, user2));
+        // 窗口滑动：丢弃头部、追加尾部
+        repository.saveAll("c1", List.of(user2, assistant2));
+        assertEquals(List.of("第二个问题", "第二个回答"), texts(newRepository().findByConversationId("c1")));
+    }
+
+    @Test
+    public void testConcurrentHeadTrimFallsBackToOverwrite() {
+        RedisChatMemoryRepository first = newRepository();
+        first.saveAll("c2", List.of(user1, assistant1, user2));
+
+        // 另一个实例裁掉头部并追加了相同的尾部：长度和最后一条消息与第一个实例的快照相同
+        RedisChatMemoryRepository second = newRepository();
+        second.findByConversationId("c2");
+        second.saveAll("c2", List.of(assistant1, user2, user2));
+
+        // 第一个实例的快照已失效，脚本校验失败后整体覆盖，最终内容与目标列表一致
+        first.saveAll("c2", List.of(user1, assistant1, user2, assistant2));
+        assertEquals(List.of("第一个问题", "第一个回答", "第二个问题", "第二个回答"), texts(newRepository().findByConversationId("c2")));
+    }
+
+    @Test
+    public void testLegacyMigration() {
+        // 旧版本以 leftPushAll 倒序写入
+        redisTemplate.opsForList().leftPushAll("chat:v2:x", JsonUtil.toStr(user1), JsonUtil.toStr(assistant1));
+
+        RedisChatMemoryRepository repository = newRepository();
+        assertEquals(List.of("v2:x"), repository.findConversationIds());
+        List<Message> messages = repository.findByConversationId("v2:x");
+        assertEquals(List.of("第一个问题", "第一个回答"), texts(messages));
+
+        repository.saveAll("v2:x", List.of(user1, assistant1, user2));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey("chat:v2:x")));
+        assertEquals(List.of("v2:x"), repository.findConversationIds());
+        assertEquals(List.of("第一个问题", "第一个回答", "第二个问题"), texts(newRepository().findByConversationId("v2:x")));
+    }
+}
@@ -0,0 +1,94 @@
+package com.git.hui.springai.advance.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量保存的快照比对逻辑，不依赖redis
+ */
+public class RedisChatMemoryRepositoryTest {
+
+    private final Message system = new SystemMessage("你是一个问答助手");
+    private final Message user1 = new UserMessage("第一个问题");
+    private final Message assistant1 = new AssistantMessage("第一个回答");
+    private final Message user2 = new UserMessage("第二个问题");
+    private final Message assistant2 = new AssistantMessage("第二个回答");
+
+    private RedisChatMemoryRepository.Snapshot snapshot(Message... messages) {
+        List<String> jsons = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            jsons.add("json-" + i);
+        }
+        return new RedisChatMemoryRepository.Snapshot(List.of(messages), jsons);
+    }
+
+    @Test
+    public void testDropHeadAppendOnly() {
+        RedisChatMemoryRepository.Snapshot snapshot = snapshot(user1, assistant1);
+        assertEquals(0, snapshot.dropHead(List.of(user1, assistant1, user2)));
+        assertEquals(0, snapshot.dropHead(List.of(user1, assistant1)));
+        assertEquals(0, RedisChatMemoryRepository.Snapshot.EMPTY.dropHead(List.of(user1)));
+    }
+
+    @Test
+    public void testDropHeadSlidingWindow() {
+        // 窗口已满：丢弃头部两条，追加两条
+        RedisChatMemoryRepository.Snapshot snapshot = snapshot(user1, assistant1, user2);
+        assertEquals(2, snapshot.dropHead(List.of(user2, assistant2)));
+        assertEquals(1, snapshot.dropHead(List.of(assistant1, user2, assistant2)));
+    }
+
+    @Test
+    public void testDropHeadFallback() {
+        RedisChatMemoryRepository.Snapshot snapshot = snapshot(system, user1, assistant1);
+        // 系统消息保留、中间的消息被淘汰，无法用 丢弃头部 + 追加尾部 描述
+        assertEquals(-1, snapshot.dropHead(List.of(system, assistant1, user2)));
+        // 旧消息全部被替换
+        assertEquals(-1, snapshot.dropHead(List.of(user2, assistant2)));
+        // 头部消息被替换
+        assertEquals(-1, snapshot(user1, assistant1).dropHead(List.of(user2, assistant1)));
+    }
+
+    @Test
+    public void testToJsonsReuseKnownMessages() {
+        RedisChatMemoryRepository.Snapshot snapshot = snapshot(system, user1, assistant1);
+        List<String> jsons = snapshot.toJsons(List.of(system, assistant1, user2));
+        assertEquals(3, jsons.size());
+        assertEquals("json-0", jsons.get(0));
+        assertEquals("json-2", jsons.get(1));
+        // 新消息重新序列化
+        assertTrue(jsons.get(2).contains("第二个问题"), jsons.get(2));
+    }
+
+    @Test
+    public void testDigest() {
+        String digest = RedisChatMemoryRepository.Snapshot.digest(List.of("json-0", "json-1", "json-2"));
+        assertEquals(digest, RedisChatMemoryRepository.Snapshot.digest(List.of("json-0", "json-1", "json-2")));
+        // 其他实例裁掉头部、追加了相同的尾部：长度和最后一条都相同，摘要不同
+        assertNotEquals(digest, RedisChatMemoryRepository.Snapshot.digest(List.of("json-1", "json-1", "json-2")));
+        // 拼接结果相同、切分方式不同
+        assertNotEquals(RedisChatMemoryRepository.Snapshot.digest(List.of("ab", "c")),
+                RedisChatMemoryRepository.Snapshot.digest(List.of("a", "bc")));
+        // 空列表与 redis.sha1hex('') 一致
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", RedisChatMemoryRepository.Snapshot.digest(List.of()));
+        // 与脚本中 string.len 一致，按UTF-8字节数计算长度
+        assertEquals(sha1Hex("9:第一个"), RedisChatMemoryRepository.Snapshot.digest(List.of("第一个")));
+    }
+
+    private static String sha1Hex(String text) {
+        try {
+            byte[] bytes = java.security.MessageDigest.getInstance("SHA-1").digest(text.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            return java.util.HexFormat.of().formatHex(bytes);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
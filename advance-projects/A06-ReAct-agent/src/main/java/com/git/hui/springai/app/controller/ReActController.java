@@ -0,0 +1,37 @@
+package com.git.hui.springai.app.controller;
+
+import com.git.hui.springai.app.react.service.LlmService;
+import com.git.hui.springai.app.react.simple.CalculatorTools;
+import com.git.hui.springai.app.react.simple.ReActToolExecutor;
+import com.git.hui.springai.app.react.stream.ReActEvent;
+import com.git.hui.springai.app.react.stream.StreamReActAgent;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * 响应式 ReAct Agent 的访问入口，以SSE的方式实时返回思考过程、工具调用与最终答案
+ * <p>
+ * 示例：GET /react/stream?question=先计算 100 + 50，然后将结果乘以 2
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@RestController
+@RequestMapping(path = "react")
+public class ReActController {
+    private final StreamReActAgent agent;
+
+    public ReActController(LlmService llmService) {
+        this.agent = new StreamReActAgent(llmService.getChatClient(null),
+                new ReActToolExecutor(new CalculatorTools().getTools(), true, ReActToolExecutor.DEFAULT_TIMEOUT));
+    }
+
+    @GetMapping(path = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ReActEvent> stream(@RequestParam String question) {
+        return agent.runStream(question);
+    }
+}
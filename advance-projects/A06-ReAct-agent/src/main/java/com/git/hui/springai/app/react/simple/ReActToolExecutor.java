@@ -0,0 +1,234 @@
+package com.git.hui.springai.app.react.simple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.tool.ToolCallback;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ReAct 的 Act & Observe 阶段 - 执行大模型一轮回复中的全部工具调用
+ * <p>
+ * 大模型一次返回多个工具调用时，每个调用都必须有对应的工具结果，否则下一轮对话时大模型看不到这些调用的结果，只能重新规划；
+ * 并行模式下同一轮的工具调用同时执行，整体耗时取决于最慢的工具，并受超时时间限制。
+ * 执行失败或超时的工具调用以错误信息作为结果返回给大模型，由大模型决定下一步；超时的工具调用会被中断，不再继续占用线程
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class ReActToolExecutor {
+    private static final Logger log = LoggerFactory.getLogger(ReActToolExecutor.class);
+
+    /**
+     * 默认的工具执行超时时间
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * 并行执行工具调用的最大线程数与排队数
+     */
+    private static final int MAX_TOOL_THREADS = 16;
+    private static final int MAX_TOOL_QUEUE = 256;
+
+    /**
+     * 工具调用一般是阻塞的IO操作，使用有界的守护线程池执行，空闲线程超时回收；
+     * 线程与队列都满时拒绝执行，以错误信息作为工具结果返回
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadPoolExecutor TOOL_EXECUTOR = newToolExecutor();
+
+    private static ThreadPoolExecutor newToolExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_TOOL_THREADS, MAX_TOOL_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_TOOL_QUEUE), r -> {
+            Thread thread = new Thread(r, "react-tool-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private final List<ToolCallback> tools;
+
+    /**
+     * 工具名称 -> 工具
+     */
+    private final Map<String, ToolCallback> toolMap;
+
+    /**
+     * 是否并行执行同一轮的多个工具调用
+     */
+    private final boolean parallel;
+
+    /**
+     * 并行执行时一轮工具调用的超时时间
+     */
+    private final Duration timeout;
+
+    /**
+     * 工具描述信息，工具列表不变，构建一次即可
+     */
+    private final String toolDescriptions;
+
+    public ReActToolExecutor(List<ToolCallback> tools, boolean parallel, Duration timeout) {
+        this.tools = tools != null ? List.copyOf(tools) : List.of();
+        this.parallel = parallel;
+        this.timeout = timeout;
+        this.toolMap = new LinkedHashMap<>();
+        for (ToolCallback tool : this.tools) {
+            toolMap.put(tool.getToolDefinition().name(), tool);
+        }
+        this.toolDescriptions = buildToolDescriptions();
+    }
+
+    public List<ToolCallback> getTools() {
+        return tools;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public String getToolDescriptions() {
+        return toolDescriptions;
+    }
+
+    /**
+     * 执行大模型返回的全部工具调用
+     *
+     * @param message 包含工具调用的大模型回复
+     * @return 工具结果，与工具调用一一对应且顺序一致
+     */
+    public ToolResponseMessage execute(AssistantMessage message) {
+        List<AssistantMessage.ToolCall> toolCalls = message.getToolCalls();
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        if (!parallel || toolCalls.size() == 1) {
+            for (AssistantMessage.ToolCall toolCall : toolCalls) {
+                responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), call(toolCall)));
+            }
+        } else {
+            log.debug("  ┌─ 🔧 并行执行 {} 个工具调用", toolCalls.size());
+            long deadline = System.nanoTime() + timeout.toNanos();
+            List<Future<String>> futures = toolCalls.stream().map(this::submit).toList();
+            for (int i = 0; i < toolCalls.size(); i++) {
+                AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+                responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), await(futures.get(i), deadline)));
+            }
+            log.debug("  └─ ✓ 并行工具执行完成\n");
+        }
+        return ToolResponseMessage.builder().responses(responses).build();
+    }
+
+    private Future<String> submit(AssistantMessage.ToolCall toolCall) {
+        try {
+            return TOOL_EXECUTOR.submit(() -> call(toolCall));
+        } catch (RejectedExecutionException e) {
+            log.warn("  └─ ✗ 工具 {} 执行被拒绝：线程池已满", toolCall.name());
+            return CompletableFuture.completedFuture("工具执行失败：执行中的工具调用过多，请稍后重试");
+        }
+    }
+
+    /**
+     * 等待工具结果，超过本轮的截止时间后中断仍在执行的工具调用
+     */
+    private String await(Future<String> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return timeoutMessage();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return "工具执行被中断";
+        } catch (ExecutionException e) {
+            return "工具执行失败：" + e.getCause().getMessage();
+        }
+    }
+
+    private String timeoutMessage() {
+        return "工具执行超时：超过 " + timeout.toMillis() + "ms 未返回结果";
+    }
+
+    /**
+     * 非阻塞地执行大模型返回的全部工具调用，适用于响应式的 ReAct 循环
+     * <p>
+     * 工具本身是同步调用，统一切换到 boundedElastic 线程执行，不占用调用方（如网络IO）的线程；
+     * 并行模式下同时执行、串行模式下逐个执行，每个调用都受超时时间限制，超时后取消订阅会中断执行工具的线程
+     *
+     * @param message 包含工具调用的大模型回复
+     * @return 工具结果，与工具调用一一对应且顺序一致
+     */
+    public Flux<ToolResponseMessage.ToolResponse> executeAsync(AssistantMessage message) {
+        Flux<AssistantMessage.ToolCall> toolCalls = Flux.fromIterable(message.getToolCalls());
+        return parallel ? toolCalls.flatMapSequential(this::callAsync) : toolCalls.concatMap(this::callAsync);
+    }
+
+    private Mono<ToolResponseMessage.ToolResponse> callAsync(AssistantMessage.ToolCall toolCall) {
+        return Mono.fromCallable(() -> call(toolCall))
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(timeout, Mono.fromSupplier(this::timeoutMessage))
+                .map(result -> new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), result));
+    }
+
+    /**
+     * 执行单个工具调用
+     */
+    private String call(AssistantMessage.ToolCall toolCall) {
+        log.debug("  ┌─ 🔧 执行工具调用");
+        log.debug("  │   工具名称：{}", toolCall.name());
+        log.debug("  │   工具参数：{}", toolCall.arguments());
+
+        ToolCallback tool = toolMap.get(toolCall.name());
+        if (tool == null) {
+            log.warn("  └─ ✗ 未找到工具：{}", toolCall.name());
+            return "未找到工具：" + toolCall.name();
+        }
+
+        try {
+            Object result = tool.call(toolCall.arguments());
+            String resultText = result != null ? result.toString() : "null";
+            log.debug("  │   执行结果：{}", resultText);
+            log.debug("  └─ ✓ 工具执行完成\n");
+            return resultText;
+        } catch (Exception e) {
+            log.warn("  └─ ✗ 工具 {} 执行失败：{}", toolCall.name(), e.getMessage());
+            return "工具执行失败：" + e.getMessage();
+        }
+    }
+
+    /**
+     * 获取工具描述信息
+     */
+    private String buildToolDescriptions() {
+        if (tools.isEmpty()) {
+            return "无";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (ToolCallback tool : tools) {
+            sb.append("- ").append(tool.getToolDefinition().name())
+                    .append(": ").append(tool.getToolDefinition().description())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
@@ -28,12 +29,48 @@ public class SimpleReActAgent {
     // 最大迭代次数
     private static final int MAX_ITERATIONS = 10;
 
+    private static final String SYSTEM_PROMPT = """
+            你是一个智能助手，使用 ReAct 范式解决问题。
+                            
+            请按以下步骤思考：
+            1. 分析当前问题和已有信息
+            2. 判断是否需要使用工具获取更多信息
+            3. %s
+            4. 【重要】如果已有足够信息，直接给出最终答案
+                            
+            响应规则：
+            - %s
+            - 关键：调用工具时，你必须使用工具定义中完整的工具名称（例如："fs-read-file-operator"）
+            - 【重要】如果之前的工具执行已经提供了足够的信息来回答原始问题，不要再调用另一个工具。相反，综合结果并直接提供你的最终答案
+                            
+            可用工具列表：
+            %s""";
+
     private final ChatClient chatClient;
-    private final List<ToolCallback> tools;
+    private final ReActToolExecutor toolExecutor;
+
+    /**
+     * 系统提示，工具列表不变，只构建一次
+     */
+    private final SystemMessage systemMessage;
 
     public SimpleReActAgent(ChatClient chatClient, List<ToolCallback> tools) {
+        this(chatClient, new ReActToolExecutor(tools, false, ReActToolExecutor.DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * @param toolExecutor 工具执行器，并行模式下允许大模型在一轮回复中同时发起多个互不依赖的工具调用
+     */
+    public SimpleReActAgent(ChatClient chatClient, ReActToolExecutor toolExecutor) {
         this.chatClient = chatClient;
-        this.tools = tools != null ? tools : new ArrayList<>();
+        this.toolExecutor = toolExecutor;
+        this.systemMessage = new SystemMessage(toolExecutor.isParallel()
+                ? SYSTEM_PROMPT.formatted("如果需要工具，调用合适的工具",
+                "互不依赖的多个工具调用请在同一轮回复中同时发起，它们会被并行执行；依赖前一个工具结果的调用放到下一轮",
+                toolExecutor.getToolDescriptions())
+                : SYSTEM_PROMPT.formatted("如果需要工具，调用一个合适的工具",
+                "你必须一次只调用一个工具，不允许同时调用多个工具",
+                toolExecutor.getToolDescriptions()));
     }
 
     /**
@@ -64,17 +101,12 @@ public class SimpleReActAgent {
 
                 // Act & Observe: 检查是否需要调用工具
                 if (hasToolCalls(assistantMessage)) {
-                    // 执行工具调用
-                    String toolResult = executeTools(assistantMessage);
-
-                    // 将工具结果添加到对话历史
-                    var toolCall = getToolCall(assistantMessage);
-                    messages.add(ToolResponseMessage.builder().responses(
-                            List.of(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), toolResult)
-                            )
-                    ).build());
+                    // 大模型的回复与工具结果都需要记录到对话历史，下一轮才能基于已有的结果继续推理
+                    messages.add(assistantMessage);
+                    ToolResponseMessage toolResponse = toolExecutor.execute(assistantMessage);
+                    messages.add(toolResponse);
 
-                    log.info("工具执行结果 {} => {}", toolCall.name(), toolResult);
+                    toolResponse.getResponses().forEach(res -> log.info("工具执行结果 {} => {}", res.name(), res.responseData()));
 
                 } else {
                     // 没有工具调用，说明大模型已给出最终答案
@@ -103,25 +135,7 @@ public class SimpleReActAgent {
      * Thinking 阶段 - 让大模型思考下一步
      */
     private ChatResponse think(List<Message> messages) {
-        // 构建系统提示
-        String systemPrompt = """
-                你是一个智能助手，使用 ReAct 范式解决问题。
-                                
-                请按以下步骤思考：
-                1. 分析当前问题和已有信息
-                2. 判断是否需要使用工具获取更多信息
-                3. 如果需要工具，调用一个合适的工具
-                4. 【重要】如果已有足够信息，直接给出最终答案
-                                
-                响应规则：
-                - 你必须一次只调用一个工具，不允许同时调用多个工具
-                - 关键：调用工具时，你必须使用工具定义中完整的工具名称（例如："fs-read-file-operator"）
-                - 【重要】如果之前的工具执行已经提供了足够的信息来回答原始问题，不要再调用另一个工具。相反，综合结果并直接提供你的最终答案
-                                
-                可用工具列表：\n""" + getToolDescriptions();
-
-        Message systemMessage = new org.springframework.ai.chat.messages.SystemMessage(systemPrompt);
-        List<Message> allMessages = new ArrayList<>();
+        List<Message> allMessages = new ArrayList<>(messages.size() + 1);
         allMessages.add(systemMessage);
         allMessages.addAll(messages);
 
@@ -133,7 +147,7 @@ public class SimpleReActAgent {
         Prompt prompt = new Prompt(allMessages, options);
 
         return chatClient.prompt(prompt)
-                .toolCallbacks(tools)
+                .toolCallbacks(toolExecutor.getTools())
                 .call()
                 .chatResponse();
     }
@@ -144,55 +158,4 @@ public class SimpleReActAgent {
     private boolean hasToolCalls(AssistantMessage message) {
         return message.getToolCalls() != null && !message.getToolCalls().isEmpty();
     }
-
-    /**
-     * 获取第一个工具的名称
-     */
-    private AssistantMessage.ToolCall getToolCall(AssistantMessage message) {
-        if (hasToolCalls(message)) {
-            return message.getToolCalls().get(0);
-        }
-        return null;
-    }
-
-    /**
-     * Act & Observe 阶段 - 执行工具并观察结果
-     */
-    private String executeTools(AssistantMessage message) throws Exception {
-        var toolCall = getToolCall(message);  // 只处理第一个工具调用
-
-        log.debug("  ┌─ 🔧 执行工具调用");
-        log.debug("  │   工具名称：{}", toolCall.name());
-        log.debug("  │   工具参数：{}", toolCall.arguments());
-
-        // 查找并执行匹配的工具
-        for (ToolCallback tool : tools) {
-            if (tool.getToolDefinition().name().equals(toolCall.name())) {
-                Object result = tool.call(toolCall.arguments());
-                String resultText = result != null ? result.toString() : "null";
-                log.debug("  │   执行结果：{}", resultText);
-                log.debug("  └─ ✓ 工具执行完成\n");
-                return resultText;
-            }
-        }
-
-        throw new RuntimeException("未找到工具：" + toolCall.name());
-    }
-
-    /**
-     * 获取工具描述信息
-     */
-    private String getToolDescriptions() {
-        if (tools.isEmpty()) {
-            return "无";
-        }
-
-        StringBuilder sb = new StringBuilder();
-        for (ToolCallback tool : tools) {
-            sb.append("- ").append(tool.getToolDefinition().name())
-                    .append(": ").append(tool.getToolDefinition().description())
-                    .append("\n");
-        }
-        return sb.toString();
-    }
 }
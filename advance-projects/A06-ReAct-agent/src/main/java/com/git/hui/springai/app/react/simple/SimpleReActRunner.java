@@ -29,7 +29,8 @@ public class SimpleReActRunner implements CommandLineRunner {
         List<ToolCallback> tools = calculatorTools.getTools();
 
         // 2. 创建 ReAct Agent
-        SimpleReActAgent agent = new SimpleReActAgent(chatClient, tools);
+        // 同一轮的多个工具调用并行执行
+        SimpleReActAgent agent = new SimpleReActAgent(chatClient, new ReActToolExecutor(tools, true, ReActToolExecutor.DEFAULT_TIMEOUT));
 
         // 3. 运行示例
         System.out.println("\n========== 示例 1: 简单加法 ==========");
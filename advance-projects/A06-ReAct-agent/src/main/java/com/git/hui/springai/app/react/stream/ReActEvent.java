@@ -0,0 +1,58 @@
+package com.git.hui.springai.app.react.stream;
+
+/**
+ * 响应式 ReAct 循环中输出的事件
+ *
+ * @param type      事件类型
+ * @param iteration 所在的轮次，从1开始
+ * @param content   文本增量 / 工具参数 / 工具结果 / 最终答案 / 错误信息
+ * @param toolId    工具调用id，仅工具相关事件有值
+ * @param toolName  工具名称，仅工具相关事件有值
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public record ReActEvent(Type type, int iteration, String content, String toolId, String toolName) {
+
+    public enum Type {
+        /**
+         * 大模型输出的文本增量（思考过程）
+         */
+        TEXT,
+        /**
+         * 大模型发起的工具调用
+         */
+        TOOL_CALL,
+        /**
+         * 工具执行结果
+         */
+        TOOL_RESULT,
+        /**
+         * 最终答案
+         */
+        ANSWER,
+        /**
+         * 执行出错，循环终止
+         */
+        ERROR
+    }
+
+    public static ReActEvent text(int iteration, String text) {
+        return new ReActEvent(Type.TEXT, iteration, text, null, null);
+    }
+
+    public static ReActEvent toolCall(int iteration, String toolId, String toolName, String arguments) {
+        return new ReActEvent(Type.TOOL_CALL, iteration, arguments, toolId, toolName);
+    }
+
+    public static ReActEvent toolResult(int iteration, String toolId, String toolName, String result) {
+        return new ReActEvent(Type.TOOL_RESULT, iteration, result, toolId, toolName);
+    }
+
+    public static ReActEvent answer(int iteration, String answer) {
+        return new ReActEvent(Type.ANSWER, iteration, answer, null, null);
+    }
+
+    public static ReActEvent error(int iteration, String message) {
+        return new ReActEvent(Type.ERROR, iteration, message, null, null);
+    }
+}
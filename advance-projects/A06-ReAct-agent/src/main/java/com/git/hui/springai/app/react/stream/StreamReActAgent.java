@@ -1,10 +1,12 @@
 package com.git.hui.springai.app.react.stream;
 
+import com.git.hui.springai.app.react.simple.ReActToolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
@@ -15,7 +17,6 @@ import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 流式 ReAct Agent 实现
@@ -31,12 +32,53 @@ public class StreamReActAgent {
     // 最大迭代次数
     private static final int MAX_ITERATIONS = 10;
 
+    private static final String SYSTEM_PROMPT = """
+            你是一个智能助手，使用 ReAct 范式解决问题。
+                            
+            请按以下步骤思考：
+            1. 分析当前问题和已有信息
+            2. 判断是否需要使用工具获取更多信息
+            3. %s
+            4. 【重要】如果已有足够信息，直接给出最终答案
+                            
+            响应规则：
+            - %s
+            - 关键：调用工具时，你必须使用工具定义中完整的工具名称（例如："fs-read-file-operator"）
+            - 【重要】如果之前的工具执行已经提供了足够的信息来回答原始问题，不要再调用另一个工具。相反，综合结果并直接提供你的最终答案
+                            
+            可用工具列表：
+            %s""";
+
+    /**
+     * 一轮流式响应中没有收到任何内容时的提示
+     */
+    private static final String EMPTY_TURN_MESSAGE = "大模型未返回任何内容，无法完成任务。";
+
     private final ChatClient chatClient;
-    private final List<ToolCallback> tools;
+    private final ReActToolExecutor toolExecutor;
+
+    /**
+     * 系统提示，工具列表不变，只构建一次
+     */
+    private final SystemMessage systemMessage;
 
     public StreamReActAgent(ChatClient chatClient, List<ToolCallback> tools) {
+        this(chatClient, new ReActToolExecutor(tools, false, ReActToolExecutor.DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * @param toolExecutor 工具执行器，并行模式下允许大模型在一轮回复中同时发起多个互不依赖的工具调用
+     */
+    public StreamReActAgent(ChatClient chatClient, ReActToolExecutor toolExecutor) {
         this.chatClient = chatClient;
-        this.tools = tools != null ? tools : new ArrayList<>();
+        this.toolExecutor = toolExecutor;
+        this.systemMessage = new SystemMessage(toolExecutor.isParallel()
+                ? SYSTEM_PROMPT.formatted("如果需要工具，调用合适的工具",
+                "互不依赖的多个工具调用请在同一轮回复中同时发起，它们会被并行执行；依赖前一个工具结果的调用放到下一轮",
+                toolExecutor.getToolDescriptions())
+                : SYSTEM_PROMPT.formatted("如果需要工具，调用一个合适的工具",
+                "你必须一次只调用一个工具，不允许同时调用多个工具",
+                toolExecutor.getToolDescriptions()));
     }
 
     /**
@@ -64,20 +106,19 @@ public class StreamReActAgent {
             try {
                 // Thinking: 流式获取大模型的思考过程
                 AssistantMessage assistantMessage = thinkStreaming(messages);
+                if (assistantMessage == null) {
+                    log.warn("第 {} 轮大模型未返回任何内容，任务终止", iteration);
+                    return EMPTY_TURN_MESSAGE;
+                }
 
                 // Act & Observe: 检查是否需要调用工具
                 if (hasToolCalls(assistantMessage)) {
-                    // 执行工具调用
-                    String toolResult = executeTools(assistantMessage);
+                    // 大模型的回复与工具结果都需要记录到对话历史，下一轮才能基于已有的结果继续推理
+                    messages.add(assistantMessage);
+                    ToolResponseMessage toolResponse = toolExecutor.execute(assistantMessage);
+                    messages.add(toolResponse);
 
-                    // 将工具结果添加到对话历史
-                    var toolCall = getToolCall(assistantMessage);
-                    messages.add(ToolResponseMessage.builder().responses(
-                            List.of(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), toolResult)
-                            )
-                    ).build());
-
-                    log.info("工具执行结果 {} => {}", toolCall.name(), toolResult);
+                    toolResponse.getResponses().forEach(res -> log.info("工具执行结果 {} => {}", res.name(), res.responseData()));
 
                 } else {
                     // 没有工具调用，说明大模型已给出最终答案
@@ -102,29 +143,94 @@ public class StreamReActAgent {
         return "达到最大迭代次数 (" + MAX_ITERATIONS + ")，无法完成任务。";
     }
 
+    /**
+     * 运行 ReAct 循环（全响应式）
+     * <p>
+     * 与 {@link #run(String)} 的循环逻辑一致，但全程不阻塞线程：大模型的流式响应直接转换为事件输出，
+     * 一轮结束后再拼接下一轮；工具调用在 boundedElastic 线程上执行。调用方订阅即可实时获取思考过程、工具调用与最终答案
+     *
+     * @param question 用户问题
+     * @return ReAct 事件流，以 ANSWER 或 ERROR 事件结束
+     */
+    public Flux<ReActEvent> runStream(String question) {
+        return Flux.defer(() -> {
+            log.info("💬 问题：{}", question);
+            List<Message> messages = new ArrayList<>();
+            messages.add(new UserMessage(question));
+            return iterate(messages, 1);
+        }).onErrorResume(e -> {
+            log.error("ReAct 循环出错：{}", e.getMessage(), e);
+            return Flux.just(ReActEvent.error(0, e.getMessage()));
+        });
+    }
+
+    /**
+     * 第 iteration 轮：Thinking，结束后根据大模型的回复决定 Act & Observe 还是返回最终答案
+     */
+    private Flux<ReActEvent> iterate(List<Message> messages, int iteration) {
+        if (iteration > MAX_ITERATIONS) {
+            log.info("⚠️  达到最大迭代次数，任务终止");
+            return Flux.just(ReActEvent.error(MAX_ITERATIONS, "达到最大迭代次数 (" + MAX_ITERATIONS + ")，无法完成任务。"));
+        }
+
+        TurnBuffer turn = new TurnBuffer();
+        return streamThinking(messages)
+                .mapNotNull(response -> {
+                    String delta = turn.accept(response);
+                    return delta.isEmpty() ? null : ReActEvent.text(iteration, delta);
+                })
+                .concatWith(Flux.defer(() -> act(messages, iteration, turn.toMessage())))
+                // 本轮（含工具执行）出错时带上实际的轮次；后续轮次的错误已由各自的轮次处理
+                .onErrorResume(e -> {
+                    log.error("第 {} 轮 ReAct 循环出错：{}", iteration, e.getMessage(), e);
+                    return Flux.just(ReActEvent.error(iteration, e.getMessage()));
+                });
+    }
+
+    /**
+     * Act & Observe 阶段 - 执行本轮的全部工具调用，记录对话历史后进入下一轮
+     *
+     * @param assistantMessage 本轮大模型的回复，流式响应中没有收到任何内容时为null
+     */
+    private Flux<ReActEvent> act(List<Message> messages, int iteration, AssistantMessage assistantMessage) {
+        if (assistantMessage == null) {
+            log.warn("第 {} 轮大模型未返回任何内容，任务终止", iteration);
+            return Flux.just(ReActEvent.error(iteration, EMPTY_TURN_MESSAGE));
+        }
+        if (!hasToolCalls(assistantMessage)) {
+            log.info(" ✅ 第 {} 轮无工具调用，直接返回结果：{}", iteration, assistantMessage.getText());
+            return Flux.just(ReActEvent.answer(iteration, assistantMessage.getText()));
+        }
+
+        messages.add(assistantMessage);
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        return Flux.fromIterable(assistantMessage.getToolCalls())
+                .map(toolCall -> ReActEvent.toolCall(iteration, toolCall.id(), toolCall.name(), toolCall.arguments()))
+                .concatWith(toolExecutor.executeAsync(assistantMessage)
+                        .doOnNext(responses::add)
+                        .map(res -> ReActEvent.toolResult(iteration, res.id(), res.name(), res.responseData())))
+                .concatWith(Flux.defer(() -> {
+                    messages.add(ToolResponseMessage.builder().responses(responses).build());
+                    return iterate(messages, iteration + 1);
+                }));
+    }
+
     /**
      * Thinking 阶段 - 流式获取大模型响应
+     *
+     * @return 本轮的完整回复，流式响应中没有收到任何内容时返回null
      */
     private AssistantMessage thinkStreaming(List<Message> messages) {
-        // 构建系统提示
-        String systemPrompt = """
-                你是一个智能助手，使用 ReAct 范式解决问题。
-                                
-                请按以下步骤思考：
-                1. 分析当前问题和已有信息
-                2. 判断是否需要使用工具获取更多信息
-                3. 如果需要工具，调用一个合适的工具
-                4. 【重要】如果已有足够信息，直接给出最终答案
-                                
-                响应规则：
-                - 你必须一次只调用一个工具，不允许同时调用多个工具
-                - 关键：调用工具时，你必须使用工具定义中完整的工具名称（例如："fs-read-file-operator"）
-                - 【重要】如果之前的工具执行已经提供了足够的信息来回答原始问题，不要再调用另一个工具。相反，综合结果并直接提供你的最终答案
-                                
-                可用工具列表：\n""" + getToolDescriptions();
-
-        Message systemMessage = new org.springframework.ai.chat.messages.SystemMessage(systemPrompt);
-        List<Message> allMessages = new ArrayList<>();
+        TurnBuffer turn = new TurnBuffer();
+        streamThinking(messages).doOnNext(turn::accept).blockLast();
+        return turn.toMessage();
+    }
+
+    /**
+     * 发起一轮流式对话
+     */
+    private Flux<ChatResponse> streamThinking(List<Message> messages) {
+        List<Message> allMessages = new ArrayList<>(messages.size() + 1);
         allMessages.add(systemMessage);
         allMessages.addAll(messages);
 
@@ -135,50 +241,10 @@ public class StreamReActAgent {
 
         Prompt prompt = new Prompt(allMessages, options);
 
-        // 使用流式响应
-        AtomicReference<AssistantMessage> lastMessage = new AtomicReference<>();
-        StringBuilder fullText = new StringBuilder();
-
-        Flux<ChatResponse> responseFlux = chatClient.prompt(prompt)
-                .toolCallbacks(tools)
+        return chatClient.prompt(prompt)
+                .toolCallbacks(toolExecutor.getTools())
                 .stream()
                 .chatResponse();
-
-        // 处理流式响应
-        responseFlux.doOnNext(response -> {
-            if (response.getResult() != null && response.getResult().getOutput() != null) {
-                AssistantMessage output = response.getResult().getOutput();
-
-                // 累积文本内容
-                String text = output.getText();
-                if (text != null && !text.isEmpty()) {
-                    fullText.append(text);
-                    log.info("【流式文本】{}", text);
-                }
-
-                // 检测工具调用
-                if (output.getToolCalls() != null && !output.getToolCalls().isEmpty()) {
-                    log.info("【检测到工具调用】");
-                }
-
-                // 保存最后一个消息
-                lastMessage.set(output);
-            }
-        }).blockLast();
-
-        // 如果有累积的文本且没有工具调用，构建完整的消息
-        if (lastMessage.get() != null) {
-            AssistantMessage currentMessage = lastMessage.get();
-            if ((currentMessage.getToolCalls() == null || currentMessage.getToolCalls().isEmpty())
-                    && fullText.length() > 0) {
-                // 重新构建包含完整文本的消息
-                return AssistantMessage.builder()
-                        .content(fullText.toString())
-                        .build();
-            }
-        }
-
-        return lastMessage.get();
     }
 
     /**
@@ -189,53 +255,52 @@ public class StreamReActAgent {
     }
 
     /**
-     * 获取第一个工具调用
-     */
-    private AssistantMessage.ToolCall getToolCall(AssistantMessage message) {
-        if (hasToolCalls(message)) {
-            return message.getToolCalls().get(0);
-        }
-        return null;
-    }
-
-    /**
-     * Act & Observe 阶段 - 执行工具并观察结果
+     * 一轮流式响应的累积结果：完整文本与全部工具调用
      */
-    private String executeTools(AssistantMessage message) throws Exception {
-        var toolCall = getToolCall(message);  // 只处理第一个工具调用
-
-        log.debug("  ┌─ 🔧 执行工具调用");
-        log.debug("  │   工具名称：{}", toolCall.name());
-        log.debug("  │   工具参数：{}", toolCall.arguments());
-
-        // 查找并执行匹配的工具
-        for (ToolCallback tool : tools) {
-            if (tool.getToolDefinition().name().equals(toolCall.name())) {
-                Object result = tool.call(toolCall.arguments());
-                String resultText = result != null ? result.toString() : "null";
-                log.debug("  │   执行结果：{}", resultText);
-                log.debug("  └─ ✓ 工具执行完成\n");
-                return resultText;
+    private static class TurnBuffer {
+        private final StringBuilder fullText = new StringBuilder();
+        private final List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        private boolean received;
+
+        /**
+         * 累积一个流式片段
+         *
+         * @return 本片段的文本增量，没有文本时返回空字符串
+         */
+        String accept(ChatResponse response) {
+            if (response.getResult() == null || response.getResult().getOutput() == null) {
+                return "";
             }
-        }
+            received = true;
+            AssistantMessage output = response.getResult().getOutput();
 
-        throw new RuntimeException("未找到工具：" + toolCall.name());
-    }
+            // 累积工具调用
+            if (output.getToolCalls() != null && !output.getToolCalls().isEmpty()) {
+                log.info("【检测到工具调用】");
+                toolCalls.addAll(output.getToolCalls());
+            }
 
-    /**
-     * 获取工具描述信息
-     */
-    private String getToolDescriptions() {
-        if (tools.isEmpty()) {
-            return "无";
+            // 累积文本内容
+            String text = output.getText();
+            if (text == null || text.isEmpty()) {
+                return "";
+            }
+            fullText.append(text);
+            log.info("【流式文本】{}", text);
+            return text;
         }
 
-        StringBuilder sb = new StringBuilder();
-        for (ToolCallback tool : tools) {
-            sb.append("- ").append(tool.getToolDefinition().name())
-                    .append(": ").append(tool.getToolDefinition().description())
-                    .append("\n");
+        /**
+         * 重新构建包含完整文本与全部工具调用的消息，作为本轮回复记录到对话历史中
+         */
+        AssistantMessage toMessage() {
+            if (!received) {
+                return null;
+            }
+            return AssistantMessage.builder()
+                    .content(fullText.toString())
+                    .toolCalls(toolCalls)
+                    .build();
         }
-        return sb.toString();
     }
 }
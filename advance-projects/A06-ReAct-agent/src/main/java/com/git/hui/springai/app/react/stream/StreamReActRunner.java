@@ -1,6 +1,7 @@
 package com.git.hui.springai.app.react.stream;
 
 import com.git.hui.springai.app.react.simple.CalculatorTools;
+import com.git.hui.springai.app.react.simple.ReActToolExecutor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.boot.CommandLineRunner;
@@ -27,7 +28,8 @@ public class StreamReActRunner implements CommandLineRunner {
         List<ToolCallback> tools = calculatorTools.getTools();
 
         // 2. 创建流式 ReAct Agent
-        StreamReActAgent agent = new StreamReActAgent(chatClient, tools);
+        // 同一轮的多个工具调用并行执行
+        StreamReActAgent agent = new StreamReActAgent(chatClient, new ReActToolExecutor(tools, true, ReActToolExecutor.DEFAULT_TIMEOUT));
 
         // 3. 运行示例
         System.out.println("\n╔════════════════════════════════════════╗");
@@ -0,0 +1,269 @@
+package com.git.hui.springai.app.react;
+
+import com.git.hui.springai.app.react.simple.ReActToolExecutor;
+import com.git.hui.springai.app.react.simple.SimpleReActAgent;
+import com.git.hui.springai.app.react.stream.ReActEvent;
+import com.git.hui.springai.app.react.stream.StreamReActAgent;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用脚本化的本地 ChatModel 对比 ReAct 循环的迭代次数与耗时：
+ * <ul>
+ *     <li>sequential: 每轮只允许调用一个工具</li>
+ *     <li>parallel: 互不依赖的工具调用在同一轮发起并行执行</li>
+ * </ul>
+ * 脚本模型按照对话历史决定下一步：历史中还没有结果的工具调用继续发起，全部有结果后给出最终答案；
+ * 同时校验每个工具结果前都有发起该调用的大模型回复，历史不完整时直接失败
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class ReActAgentBenchmarkTest {
+
+    /**
+     * 每个工具的模拟耗时
+     */
+    private static final long TOOL_LATENCY_MS = 200;
+
+    /**
+     * 回答问题需要的全部工具调用，三者互不依赖
+     */
+    private static final List<AssistantMessage.ToolCall> PLAN = List.of(
+            new AssistantMessage.ToolCall("call-1", "function", "weather", "{\"city\":\"北京\"}"),
+            new AssistantMessage.ToolCall("call-2", "function", "weather", "{\"city\":\"武汉\"}"),
+            new AssistantMessage.ToolCall("call-3", "function", "add", "{\"a\":25,\"b\":37}")
+    );
+
+    private static final String QUESTION = "北京和武汉的天气如何？另外 25 + 37 等于多少？";
+
+    @Test
+    public void testIterationsToAnswer() {
+        Result sequential = benchmark("sequential", false, client -> new SimpleReActAgent(client, toolExecutor(false))::run);
+        Result parallel = benchmark("parallel", true, client -> new SimpleReActAgent(client, toolExecutor(true))::run);
+        Result streamParallel = benchmark("stream-parallel", true, client -> new StreamReActAgent(client, toolExecutor(true))::run);
+
+        assertEquals(PLAN.size() + 1, sequential.iterations());
+        assertEquals(2, parallel.iterations());
+        assertEquals(2, streamParallel.iterations());
+        // 并行执行时一轮的工具耗时取决于最慢的工具
+        assertTrue(parallel.costMs() < sequential.costMs());
+    }
+
+    @Test
+    public void testReactiveRun() {
+        ScriptedChatModel model = new ScriptedChatModel(true);
+        StreamReActAgent agent = new StreamReActAgent(ChatClient.builder(model).build(), toolExecutor(true));
+
+        long start = System.currentTimeMillis();
+        List<ReActEvent> events = agent.runStream(QUESTION).collectList().block();
+        System.out.printf("%-16s iterations: %d, cost: %dms%n", "reactive", model.calls.get(), System.currentTimeMillis() - start);
+
+        Map<ReActEvent.Type, Long> counts = events.stream().collect(Collectors.groupingBy(ReActEvent::type, Collectors.counting()));
+        assertEquals(PLAN.size(), counts.get(ReActEvent.Type.TOOL_CALL));
+        assertEquals(PLAN.size(), counts.get(ReActEvent.Type.TOOL_RESULT));
+        // 最终答案分多个片段流式输出，文本增量拼接后等于最终答案
+        String text = events.stream().filter(e -> e.type() == ReActEvent.Type.TEXT).map(ReActEvent::content).collect(Collectors.joining());
+        assertEquals(ScriptedChatModel.ANSWER, text);
+
+        ReActEvent last = events.get(events.size() - 1);
+        assertEquals(ReActEvent.Type.ANSWER, last.type());
+        assertEquals(2, last.iteration());
+        assertEquals(ScriptedChatModel.ANSWER, last.content());
+    }
+
+    @Test
+    public void testEmptyTurn() {
+        // 第一轮发起工具调用，第二轮的流式响应没有任何内容
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel model = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                if (calls.incrementAndGet() > 1) {
+                    return Flux.empty();
+                }
+                return Flux.just(new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(PLAN).build()))));
+            }
+        };
+        StreamReActAgent agent = new StreamReActAgent(ChatClient.builder(model).build(), toolExecutor(true));
+
+        List<ReActEvent> events = agent.runStream(QUESTION).collectList().block();
+        ReActEvent last = events.get(events.size() - 1);
+        assertEquals(ReActEvent.Type.ERROR, last.type());
+        assertEquals(2, last.iteration());
+
+        calls.set(1);
+        assertEquals("大模型未返回任何内容，无法完成任务。", agent.run(QUESTION));
+    }
+
+    @Test
+    public void testToolTimeout() {
+        ReActToolExecutor executor = new ReActToolExecutor(tools(), true, Duration.ofMillis(50));
+        SlowTools.INTERRUPTED.set(0);
+        ToolResponseMessage response = executor.execute(AssistantMessage.builder().content("").toolCalls(PLAN).build());
+        assertEquals(PLAN.size(), response.getResponses().size());
+        response.getResponses().forEach(res -> assertTrue(res.responseData().startsWith("工具执行超时")));
+        // 超时的工具调用被中断，不再继续占用线程
+        assertInterrupted();
+
+        ReActToolExecutor async = new ReActToolExecutor(tools(), true, Duration.ofMillis(50));
+        SlowTools.INTERRUPTED.set(0);
+        List<ToolResponseMessage.ToolResponse> responses = async.executeAsync(AssistantMessage.builder().content("").toolCalls(PLAN).build())
+                .collectList().block();
+        assertEquals(PLAN.size(), responses.size());
+        responses.forEach(res -> assertTrue(res.responseData().startsWith("工具执行超时")));
+        assertInterrupted();
+    }
+
+    private static void assertInterrupted() {
+        long deadline = System.currentTimeMillis() + 1000;
+        // 工具线程响应中断是异步的，等待一小段时间
+        while (SlowTools.INTERRUPTED.get() < PLAN.size() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(PLAN.size(), SlowTools.INTERRUPTED.get());
+    }
+
+    private Result benchmark(String name, boolean parallel, Function<ChatClient, Function<String, String>> agentFactory) {
+        ScriptedChatModel model = new ScriptedChatModel(parallel);
+        Function<String, String> agent = agentFactory.apply(ChatClient.builder(model).build());
+
+        long start = System.currentTimeMillis();
+        String answer = agent.apply(QUESTION);
+        long cost = System.currentTimeMillis() - start;
+
+        assertEquals(ScriptedChatModel.ANSWER, answer);
+        System.out.printf("%-16s iterations: %d, cost: %dms%n", name, model.calls.get(), cost);
+        return new Result(model.calls.get(), cost);
+    }
+
+    private static ReActToolExecutor toolExecutor(boolean parallel) {
+        return new ReActToolExecutor(tools(), parallel, ReActToolExecutor.DEFAULT_TIMEOUT);
+    }
+
+    private static List<ToolCallback> tools() {
+        return List.of(MethodToolCallbackProvider.builder().toolObjects(new SlowTools()).build().getToolCallbacks());
+    }
+
+    private record Result(int iterations, long costMs) {
+    }
+
+    /**
+     * 按对话历史决定回复的本地模型，并发模式下一次发起全部未完成的工具调用
+     */
+    private static class ScriptedChatModel implements ChatModel {
+        static final String ANSWER = "北京晴天，武汉晴天，25 + 37 = 62";
+
+        private final boolean parallel;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        ScriptedChatModel(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            List<Message> messages = prompt.getInstructions();
+            assertTrue(messages.get(0) instanceof SystemMessage);
+            assertEquals(parallel, messages.get(0).getText().contains("同时发起"));
+
+            Set<String> requested = new HashSet<>();
+            Set<String> answered = new HashSet<>();
+            for (Message message : messages) {
+                if (message instanceof AssistantMessage assistant && assistant.hasToolCalls()) {
+                    assistant.getToolCalls().forEach(call -> requested.add(call.id()));
+                } else if (message instanceof ToolResponseMessage toolResponse) {
+                    toolResponse.getResponses().forEach(res -> {
+                        assertTrue(requested.contains(res.id()), "工具结果之前缺少对应的大模型回复：" + res.id());
+                        answered.add(res.id());
+                    });
+                }
+            }
+
+            List<AssistantMessage.ToolCall> pending = PLAN.stream().filter(call -> !answered.contains(call.id())).toList();
+            AssistantMessage output;
+            if (pending.isEmpty()) {
+                output = new AssistantMessage(ANSWER);
+            } else {
+                output = AssistantMessage.builder().content("")
+                        .toolCalls(parallel ? pending : pending.subList(0, 1))
+                        .build();
+            }
+            return new ChatResponse(List.of(new Generation(output)));
+        }
+
+        /**
+         * 最终答案按逗号拆分为多个片段输出，模拟流式响应
+         */
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            ChatResponse response = call(prompt);
+            AssistantMessage output = response.getResult().getOutput();
+            if (output.hasToolCalls()) {
+                return Flux.just(response);
+            }
+            return Flux.fromArray(output.getText().split("(?<=，)"))
+                    .map(text -> new ChatResponse(List.of(new Generation(new AssistantMessage(text)))));
+        }
+    }
+
+    public static class SlowTools {
+        /**
+         * 执行过程中被中断的工具调用数
+         */
+        static final AtomicInteger INTERRUPTED = new AtomicInteger();
+
+        @Tool(description = "查询天气信息")
+        public String weather(@ToolParam(description = "城市名称") String city) throws InterruptedException {
+            sleep();
+            return city + "：晴天";
+        }
+
+        @Tool(description = "执行加法运算，返回两个数的和")
+        public double add(@ToolParam(description = "第一个加数") double a,
+                          @ToolParam(description = "第二个加数") double b) throws InterruptedException {
+            sleep();
+            return a + b;
+        }
+
+        private static void sleep() throws InterruptedException {
+            try {
+                Thread.sleep(TOOL_LATENCY_MS);
+            } catch (InterruptedException e) {
+                INTERRUPTED.incrementAndGet();
+                throw e;
+            }
+        }
+    }
+}
@@ -92,7 +92,10 @@ public class ChatController {
                     @SuppressWarnings("unchecked")
                     List<Object> params = (List<Object>) args.getOrDefault("params", null);
 
-                    Map<String, Object> result = curdTool.execute(jdbcTemplate, sql, params);
+                    // 获取 SELECT 后续记录时携带的游标
+                    String cursor = (String) args.get("cursor");
+
+                    Map<String, Object> result = curdTool.execute(jdbcTemplate, sql, params, cursor);
 
                     // 3. 格式化返回结果
                     String formattedResult = curdTool.formatResult(result);
@@ -103,7 +106,7 @@ public class ChatController {
 
                     return formattedResult;
                 })
-                .description("执行 SQL 操作（支持 SELECT/INSERT/UPDATE/DELETE）。参数：sql - SQL 语句，params - 参数列表（可选）")
+                .description("执行 SQL 操作（支持 SELECT/INSERT/UPDATE/DELETE）。参数：sql - SQL 语句，params - 参数列表（可选），cursor - 获取 SELECT 后续记录的游标（可选）")
                 .inputType(Map.class)
                 .build();
 
@@ -150,6 +153,9 @@ public class ChatController {
                         【参数说明】
                         如果 SQL 中包含 ? 占位符，需要在 params 参数中按顺序提供对应的值
                         例如：SELECT * FROM t_order WHERE customer_name = ?  对应的 params: ["张三"]
+                        SELECT 单次最多返回有限的记录，结果第一行为列名，之后每行一条记录；
+                        如果提示还有更多记录并给出了 cursor，确实需要时使用相同的 sql、params 并传入该 cursor 获取后续记录；
+                        只有按唯一的列（如主键）ORDER BY 的查询才能翻页
                             
                         【重要提示】
                         1. 所有 SQL 操作都需要人工审批确认
@@ -1,8 +1,16 @@
 package com.git.hui.springai.ali.mvc.tool;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -19,6 +27,40 @@ public class CurdTool {
     
     private JdbcTemplate jdbcTemplate;
     
+    /**
+     * 单个字段值在返回结果中保留的最大字符数
+     */
+    private static final int MAX_CELL_CHARS = 200;
+    
+    /**
+     * 单次查询返回给大模型的最大行数，超出部分通过 cursor 分页获取
+     */
+    @Value("${sql.select.max-rows:50}")
+    private int maxRows;
+    
+    /**
+     * 单次查询返回结果的最大字节数（UTF-8）
+     */
+    @Value("${sql.select.max-bytes:16384}")
+    private int maxBytes;
+    
+    /**
+     * 驱动每次从数据库拉取的行数
+     */
+    @Value("${sql.select.fetch-size:100}")
+    private int fetchSize;
+    
+    /**
+     * 游标允许的最大偏移量：分页需要重新执行查询并跳过之前的记录，越往后越慢，超出后只能通过 WHERE 条件缩小范围
+     */
+    @Value("${sql.select.max-offset:1000}")
+    private int maxOffset;
+    
+    /**
+     * ORDER BY 子句，分页时要求查询结果有稳定的顺序
+     */
+    private static final Pattern ORDER_BY = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+    
     // SQL 操作类型枚举
     public enum SqlType {
         SELECT("查询"),
@@ -47,6 +89,19 @@ public class CurdTool {
      * @return 执行结果
      */
     public Map<String, Object> execute(JdbcTemplate jdbcTemplate, String sql, List<Object> params) {
+        return execute(jdbcTemplate, sql, params, null);
+    }
+    
+    /**
+     * 执行 SQL 操作
+     * 
+     * @param jdbcTemplate JdbcTemplate 实例
+     * @param sql SQL 语句
+     * @param params 参数列表（可选）
+     * @param cursor 上一次查询返回的游标，用于获取 SELECT 的后续记录（可选）
+     * @return 执行结果
+     */
+    public Map<String, Object> execute(JdbcTemplate jdbcTemplate, String sql, List<Object> params, String cursor) {
         this.jdbcTemplate = jdbcTemplate;
         System.out.println("[execute] 执行 SQL：" + sql);
         System.out.println("[execute] 参数列表：" + params);
@@ -68,7 +123,7 @@ public class CurdTool {
             // 2. 根据 SQL 类型执行不同操作
             switch (sqlType) {
                 case SELECT:
-                    return executeSelect(sql, params);
+                    return executeSelect(sql, params, cursor);
                 case INSERT:
                     return executeInsert(sql, params);
                 case UPDATE:
@@ -128,48 +183,167 @@ public class CurdTool {
     
     /**
      * 执行 SELECT 查询
+     * <p>
+     * 结果集逐行读取，不会把全部记录加载到内存：达到行数或字节数上限即停止读取，并返回游标，
+     * 大模型携带相同的 SQL、参数与游标再次调用即可获取后续记录。
+     * 游标按偏移量翻页，只有带 ORDER BY 的查询才会返回游标（没有排序时每次执行的返回顺序不确定，翻页会漏掉或重复记录），
+     * 且偏移量不能超过 sql.select.max-offset
+     * 返回结果为列式的紧凑文本：列名只输出一次，每条记录一行
      */
-    private Map<String, Object> executeSelect(String sql, List<Object> params) {
+    private Map<String, Object> executeSelect(String sql, List<Object> params, String cursor) {
         Map<String, Object> result = new HashMap<>();
         
-        List<Map<String, Object>> data;
-        if (params != null && !params.isEmpty()) {
-            data = jdbcTemplate.queryForList(sql, params.toArray());
-        } else {
-            data = jdbcTemplate.queryForList(sql);
+        String queryKey = queryKey(sql, params);
+        boolean ordered = ORDER_BY.matcher(sql).find();
+        int offset = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            offset = parseCursor(cursor, queryKey);
+            if (offset < 0 || !ordered) {
+                result.put("success", false);
+                result.put("message", "❌ cursor 无效：cursor 只能与返回它的 SQL 及参数一起使用");
+                return result;
+            }
+            if (offset > maxOffset) {
+                result.put("success", false);
+                result.put("message", "❌ cursor 超出可翻页的范围（最多 " + maxOffset + " 条），请通过 WHERE 条件缩小查询范围");
+                return result;
+            }
         }
         
+        int skip = offset;
+        SelectPage page = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            // 多取一行用于判断是否还有后续记录；偏移量已限制在 maxOffset 以内，这里仍按 long 计算避免配置过大时溢出
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, (long) skip + maxRows + 1));
+            if (params != null && !params.isEmpty()) {
+                new ArgumentPreparedStatementSetter(params.toArray()).setValues(ps);
+            }
+            return ps;
+        }, (ResultSetExtractor<SelectPage>) rs -> readPage(rs, skip));
+        
         result.put("success", true);
         result.put("sqlType", SqlType.SELECT);
-        result.put("rowCount", data.size());
-        result.put("data", data);
-        
-        // 构建友好的消息
-        StringBuilder message = new StringBuilder();
-        message.append("✅ 查询成功！\n");
-        message.append("共查询到 ").append(data.size()).append(" 条记录\n\n");
-        
-        if (!data.isEmpty()) {
-            // 显示前 5 条结果
-            int displayCount = Math.min(data.size(), 5);
-            for (int i = 0; i < displayCount; i++) {
-                message.append("【记录 ").append(i + 1).append("】\n");
-                Map<String, Object> row = data.get(i);
-                for (Map.Entry<String, Object> entry : row.entrySet()) {
-                    message.append("  ").append(entry.getKey())
-                            .append(": ").append(entry.getValue()).append("\n");
+        result.put("rowCount", page.rows().size());
+        result.put("columns", page.columns());
+        result.put("rows", page.rows());
+        
+        StringBuilder message = new StringBuilder(page.table().length() + 128);
+        message.append("✅ 查询成功！");
+        if (page.rows().isEmpty()) {
+            message.append("没有符合条件的记录\n");
+        } else {
+            message.append("返回第 ").append(offset + 1).append(" ~ ").append(offset + page.rows().size()).append(" 条记录\n");
+            message.append(page.table());
+        }
+        int nextOffset = offset + page.rows().size();
+        if (page.hasMore() && ordered && nextOffset <= maxOffset) {
+            String nextCursor = queryKey + ":" + nextOffset;
+            result.put("nextCursor", nextCursor);
+            message.append("... 还有更多记录；如需继续查看，使用相同的 sql 与 params 并传入 cursor=\"")
+                    .append(nextCursor).append("\"，或者使用 WHERE/LIMIT 缩小查询范围\n");
+        } else if (page.hasMore() && !ordered) {
+            message.append("... 还有更多记录；查询没有 ORDER BY，无法分页，如需继续查看，请按唯一的列（如主键）添加 ORDER BY 后重新查询，或者使用 WHERE/LIMIT 缩小查询范围\n");
+        } else if (page.hasMore()) {
+            message.append("... 还有更多记录；已超过可翻页的范围，请在 WHERE 条件中按排序列从最后一条记录之后继续查询，或者进一步缩小查询范围\n");
+        }
+        result.put("message", message.toString());
+        return result;
+    }
+    
+    /**
+     * 读取一页记录：跳过游标之前的记录，达到行数或字节数上限时停止
+     */
+    private SelectPage readPage(ResultSet rs, int skip) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnCount = meta.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(meta.getColumnLabel(i));
+        }
+        
+        StringBuilder table = new StringBuilder();
+        table.append(String.join(",", columns)).append("\n");
+        int bytes = table.toString().getBytes(StandardCharsets.UTF_8).length;
+        
+        for (int i = 0; i < skip; i++) {
+            if (!rs.next()) {
+                return new SelectPage(columns, List.of(), "", false);
+            }
+        }
+        
+        List<List<Object>> rows = new ArrayList<>(Math.min(maxRows, 64));
+        boolean hasMore = false;
+        StringBuilder line = new StringBuilder();
+        while (rs.next()) {
+            if (rows.size() >= maxRows) {
+                hasMore = true;
+                break;
+            }
+            List<Object> row = new ArrayList<>(columnCount);
+            line.setLength(0);
+            for (int i = 1; i <= columnCount; i++) {
+                Object value = rs.getObject(i);
+                row.add(value);
+                if (i > 1) {
+                    line.append(',');
                 }
-                message.append("\n");
+                appendCell(line, value);
             }
-            
-            if (data.size() > 5) {
-                message.append("... 还有 ").append(data.size() - 5)
-                        .append(" 条记录，请使用 LIMIT 等条件筛选\n");
+            line.append('\n');
+            int lineBytes = line.toString().getBytes(StandardCharsets.UTF_8).length;
+            // 至少返回一条记录，保证游标能够前进
+            if (!rows.isEmpty() && bytes + lineBytes > maxBytes) {
+                hasMore = true;
+                break;
             }
+            rows.add(row);
+            table.append(line);
+            bytes += lineBytes;
+        }
+        return new SelectPage(columns, rows, table.toString(), hasMore);
+    }
+    
+    /**
+     * 输出单个字段值：NULL 原样输出，过长的值截断，包含逗号、引号、换行的值按 CSV 规则加引号
+     */
+    private static void appendCell(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("NULL");
+            return;
+        }
+        String text = value.toString();
+        if (text.length() > MAX_CELL_CHARS) {
+            text = text.substring(0, MAX_CELL_CHARS) + "...";
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            line.append('"').append(text.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(text);
+        }
+    }
+    
+    /**
+     * 查询标识：游标只对同一条 SQL 与参数有效
+     */
+    private static String queryKey(String sql, List<Object> params) {
+        return Integer.toHexString(Objects.hash(sql.trim(), params == null ? List.of() : params));
+    }
+    
+    /**
+     * 解析游标，格式为 查询标识:偏移量；与当前查询不匹配或格式错误时返回 -1
+     */
+    private static int parseCursor(String cursor, String queryKey) {
+        int index = cursor.lastIndexOf(':');
+        if (index < 0 || !cursor.substring(0, index).equals(queryKey)) {
+            return -1;
+        }
+        try {
+            int offset = Integer.parseInt(cursor.substring(index + 1).trim());
+            return offset >= 0 ? offset : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        
-        result.put("message", message.toString());
-        return result;
     }
     
     /**
@@ -286,32 +460,8 @@ public class CurdTool {
         
         switch (sqlType) {
             case SELECT:
-                Integer rowCount = (Integer) result.get("rowCount");
-                formatted.append("✅ 查询成功！\n");
-                formatted.append("共查询到 ").append(rowCount).append(" 条记录\n");
-                
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> data = (List<Map<String, Object>>) result.get("data");
-                if (data != null && !data.isEmpty()) {
-                    formatted.append("\n--- 查询结果 ---\n");
-                    int displayCount = Math.min(data.size(), 10);
-                    for (int i = 0; i < displayCount; i++) {
-                        formatted.append("【记录 ").append(i + 1).append("】\n");
-                        Map<String, Object> row = data.get(i);
-                        if (row != null) {
-                            for (Map.Entry<String, Object> entry : row.entrySet()) {
-                                formatted.append("  ").append(entry.getKey())
-                                        .append(": ").append(entry.getValue()).append("\n");
-                            }
-                            formatted.append("\n");
-                        }
-                    }
-                    
-                    if (data.size() > 10) {
-                        formatted.append("... 还有 ").append(data.size() - 10)
-                                .append(" 条记录\n");
-                    }
-                }
+                // 查询结果在 executeSelect 中已按行数、字节数上限格式化
+                formatted.append(result.get("message"));
                 break;
                 
             case INSERT:
@@ -328,4 +478,15 @@ public class CurdTool {
         
         return formatted.toString();
     }
-}
+    
+    /**
+     * 一页查询结果
+     *
+     * @param columns 列名
+     * @param rows    记录，每条记录按列的顺序排列
+     * @param table   列式文本：第一行为列名，之后每行一条记录
+     * @param hasMore 是否还有后续记录
+     */
+    private record SelectPage(List<String> columns, List<List<Object>> rows, String table, boolean hasMore) {
+    }
+}
\ No newline at end of file
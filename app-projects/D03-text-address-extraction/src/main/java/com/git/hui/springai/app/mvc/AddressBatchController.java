@@ -0,0 +1,244 @@
+package com.git.hui.springai.app.mvc;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.git.hui.springai.app.service.AddressAdCodeService;
+import com.git.hui.springai.app.service.AddressRuleExtractor;
+import com.git.hui.springai.app.service.RegionTrie;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量地址提取
+ * <p>
+ * 结构清晰的地址直接按规则提取；其余地址每 address.batch.size 条合并为一次大模型调用，最多同时进行 address.batch.concurrency 次调用，
+ * 结果以 NDJSON 的形式按完成顺序逐条返回，通过 index 与输入对应
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@RestController
+public class AddressBatchController {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AddressBatchController.class);
+
+    private static final String SYSTEM_PROMPT = """
+            你是一个专业的地址信息提取专家。用户会一次提供多条带序号的地址文本，请逐条提取结构化地址信息。
+
+            提取规则：
+            1. 识别并分离出：省份、城市、区县、街道、详细地址、联系人、联系电话
+            2. 地址组件可能存在简称、别称，请转换为标准名称
+            3. 每条地址单独提取，互不影响；返回结果的条数与输入一致，并通过 index 字段对应输入的序号
+            4. 行政区域编码无需填写
+
+            输出格式要求：
+            - 省份：完整省份名称，如"广东省"
+            - 城市：地级市名称，直辖市填"北京市"等
+            - 区县：区或县级市名称
+            - 街道：街道、乡镇名称
+            - 详细地址：门牌号、小区、楼栋等
+            """;
+
+    private final ChatClient chatClient;
+
+    private final AddressAdCodeService addressAdCodeService;
+
+    private final AddressRuleExtractor addressRuleExtractor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 每次大模型调用提取的地址条数
+     */
+    @Value("${address.batch.size:20}")
+    private int batchSize;
+
+    /**
+     * 同时进行的大模型调用数
+     */
+    @Value("${address.batch.concurrency:4}")
+    private int concurrency;
+
+    @Value("${address.rule-first:true}")
+    private boolean ruleFirst;
+
+    public AddressBatchController(ChatModel chatModel, AddressAdCodeService addressAdCodeService, AddressRuleExtractor addressRuleExtractor) {
+        this.chatClient = ChatClient.builder(chatModel).defaultSystem(SYSTEM_PROMPT).build();
+        this.addressAdCodeService = addressAdCodeService;
+        this.addressRuleExtractor = addressRuleExtractor;
+    }
+
+    /**
+     * 批量提取地址，请求体为地址文本组成的 JSON 数组
+     *
+     * @param contents 地址文本
+     * @return 每条地址的提取结果
+     */
+    @PostMapping(path = "/ai/genAddressBatch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchAddress> generateAddressBatch(@RequestBody List<String> contents) {
+        return extract(Flux.fromIterable(contents));
+    }
+
+    /**
+     * 批量提取地址，请求体按行读取，边读边处理：
+     * <ul>
+     *     <li>text/plain、text/csv：每行一条地址文本</li>
+     *     <li>application/x-ndjson：每行一个 JSON 字符串，或者包含 content 字段的 JSON 对象</li>
+     * </ul>
+     *
+     * @param reader 请求体
+     * @return 每条地址的提取结果
+     */
+    @PostMapping(path = "/ai/genAddressBatch", consumes = {MediaType.TEXT_PLAIN_VALUE, "text/csv", MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchAddress> generateAddressBatch(Reader reader) {
+        Flux<String> lines = Flux.using(() -> new BufferedReader(reader),
+                        buffered -> Flux.fromStream(buffered.lines()),
+                        this::closeQuietly)
+                .filter(line -> !line.isBlank())
+                .map(this::parseLine);
+        return extract(lines.subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Flux<BatchAddress> extract(Flux<String> contents) {
+        AtomicInteger counter = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        return contents
+                .map(content -> {
+                    int index = counter.getAndIncrement();
+                    AddressRuleExtractor.RuleAddress rule = ruleFirst ? addressRuleExtractor.extract(content) : null;
+                    return rule == null ? new BatchAddress(index, content, null, null)
+                            : new BatchAddress(index, content,
+                            new ChatController.ExtractedAddress(ChatController.Address.of(rule), ChatController.ExtractSource.RULE), null);
+                })
+                .publish(shared -> Flux.merge(
+                        // 规则提取成功的直接返回，其余的攒批后交给大模型
+                        shared.filter(item -> item.address() != null),
+                        shared.filter(item -> item.address() == null)
+                                .buffer(batchSize)
+                                .flatMap(batch -> Mono.fromCallable(() -> extractByModel(batch))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .onErrorResume(e -> {
+                                            log.error("批量提取地址失败: {}", e.getMessage(), e);
+                                            return Mono.just(batch.stream().map(item -> item.withError(e.getMessage())).toList());
+                                        }), concurrency)
+                                .flatMapIterable(list -> list)))
+                .doOnComplete(() -> log.info("批量提取地址 {} 条，耗时 {}ms", counter.get(), System.currentTimeMillis() - start));
+    }
+
+    /**
+     * 一次大模型调用提取一批地址
+     */
+    private List<BatchAddress> extractByModel(List<BatchAddress> batch) {
+        StringBuilder input = new StringBuilder();
+        for (BatchAddress item : batch) {
+            input.append(item.index()).append(". ").append(item.content().replace('\n', ' ')).append('\n');
+        }
+        List<IndexedAddress> output = chatClient.prompt()
+                .user(u -> u.text("请逐条提取下面 {count} 条地址文本中的地址信息，要求中文返回：\n\n{input}")
+                        .param("count", batch.size())
+                        .param("input", input.toString()))
+                .call()
+                .entity(new ParameterizedTypeReference<List<IndexedAddress>>() {
+                });
+
+        Map<Integer, ChatController.Address> addresses = new HashMap<>();
+        if (output != null) {
+            for (IndexedAddress item : output) {
+                if (item != null && item.address() != null) {
+                    addresses.put(item.index(), item.address());
+                }
+            }
+        }
+
+        List<BatchAddress> result = new ArrayList<>(batch.size());
+        for (BatchAddress item : batch) {
+            ChatController.Address address = addresses.get(item.index());
+            if (address == null) {
+                result.add(item.withError("大模型未返回该地址的提取结果"));
+                continue;
+            }
+            // 行政区域编码在本地查询，不需要大模型调用工具
+            RegionTrie.Resolution resolution = addressAdCodeService.resolve(
+                    String.join("", nullToEmpty(address.province()), nullToEmpty(address.city()), nullToEmpty(address.area())));
+            String adCode = resolution == null ? null : resolution.region().code();
+            result.add(new BatchAddress(item.index(), item.content(),
+                    new ChatController.ExtractedAddress(address.withAdCode(adCode), ChatController.ExtractSource.MODEL), null));
+        }
+        return result;
+    }
+
+    private String parseLine(String line) {
+        String text = line.strip();
+        if (!text.startsWith("\"") && !text.startsWith("{")) {
+            return text;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(text);
+            if (node.isTextual()) {
+                return node.asText();
+            }
+            if (node.hasNonNull("content")) {
+                return node.get("content").asText();
+            }
+        } catch (IOException e) {
+            log.debug("非JSON格式，按原文处理: {}", text);
+        }
+        return text;
+    }
+
+    private void closeQuietly(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.debug("关闭请求体失败", e);
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * 大模型返回的单条提取结果
+     */
+    record IndexedAddress(
+            @JsonPropertyDescription("地址文本在输入中的序号")
+            int index,
+            @JsonPropertyDescription("提取出的地址信息")
+            ChatController.Address address
+    ) {
+    }
+
+    /**
+     * 批量提取中单条地址的结果
+     *
+     * @param index   在输入中的序号，从0开始
+     * @param content 输入的地址文本
+     * @param address 提取结果，失败时为null
+     * @param error   失败原因
+     */
+    record BatchAddress(int index, String content, ChatController.ExtractedAddress address, String error) {
+        BatchAddress withError(String error) {
+            return new BatchAddress(index, content, null, error);
+        }
+    }
+}
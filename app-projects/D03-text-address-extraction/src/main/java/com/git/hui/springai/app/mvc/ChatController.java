@@ -1,7 +1,10 @@
 package com.git.hui.springai.app.mvc;
 
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import com.git.hui.springai.app.service.AddressAdCodeService;
+import com.git.hui.springai.app.service.AddressRuleExtractor;
+import com.git.hui.springai.app.service.RegionTrie;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.model.ChatModel;
@@ -12,12 +15,14 @@ import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @author YiHui
@@ -52,10 +57,19 @@ public class ChatController {
 
     private final AddressAdCodeService addressAdCodeService;
 
+    private final AddressRuleExtractor addressRuleExtractor;
+
+    /**
+     * 是否优先使用规则提取，规则无法确定时再调用大模型
+     */
+    @Value("${address.rule-first:true}")
+    private boolean ruleFirst;
+
     @Autowired
-    public ChatController(ChatModel chatModel, AddressAdCodeService addressAdCodeService) {
+    public ChatController(ChatModel chatModel, AddressAdCodeService addressAdCodeService, AddressRuleExtractor addressRuleExtractor) {
         this.chatModel = chatModel;
         this.addressAdCodeService = addressAdCodeService;
+        this.addressRuleExtractor = addressRuleExtractor;
         this.chatClient = ChatClient.builder(chatModel)
                 .defaultAdvisors(new SimpleLoggerAdvisor(ModelOptionsUtils::toJsonStringPrettyPrinter, ModelOptionsUtils::toJsonStringPrettyPrinter, 0))
                 .defaultSystem(SYSTEM_PROMPT)
@@ -70,7 +84,11 @@ public class ChatController {
      */
     @GetMapping("/ai/genAddress")
     @ResponseBody
-    public Address generateAddress(String content) {
+    public ExtractedAddress generateAddress(String content) {
+        return extract(content, () -> generateAddressByModel(content));
+    }
+
+    private Address generateAddressByModel(String content) {
         BeanOutputConverter<Address> beanOutputConverter = new BeanOutputConverter<>(Address.class);
         String format = beanOutputConverter.getFormat();
 
@@ -87,10 +105,12 @@ public class ChatController {
 
     @GetMapping("/ai/genAddressWithPromptTemplate")
     @ResponseBody
-    public Address generateAddressWithPromptTemplate(String content) {
-        ChatClient.CallResponseSpec res = chatClient.prompt(content).call();
-        Address address = res.entity(Address.class);
-        return address;
+    public ExtractedAddress generateAddressWithPromptTemplate(String content) {
+        return extract(content, () -> {
+            ChatClient.CallResponseSpec res = chatClient.prompt(content).call();
+            Address address = res.entity(Address.class);
+            return address;
+        });
     }
 
     /**
@@ -101,12 +121,50 @@ public class ChatController {
      */
     @GetMapping("/ai/genAddressWithCodeTool")
     @ResponseBody
-    public Address generateAddressWithCodeTool(String content) {
+    public ExtractedAddress generateAddressWithCodeTool(String content) {
+        return extract(content, () -> generateAddressWithCodeToolByModel(content));
+    }
+
+    private Address generateAddressWithCodeToolByModel(String content) {
+        RegionTrie.Resolution resolution = addressAdCodeService.resolve(content);
+        if (resolution != null && resolution.hits() >= 2 && resolution.region().level() == RegionTrie.Level.AREA) {
+            // 文本中包含完整的 省/市 + 区县，本地即可确定行政编码，不需要大模型再发起一次工具调用
+            RegionTrie.Region region = resolution.region();
+            log.info("本地解析行政区域: {} -> {}", region.fullName(), region.code());
+            Address address = chatClient.prompt()
+                    .user(u -> u.text("{content}\n\n行政区域编码已确定为 {adCode}（{region}），无需调用工具")
+                            .param("content", content)
+                            .param("adCode", region.code())
+                            .param("region", region.fullName()))
+                    .call()
+                    .entity(Address.class);
+            return address == null ? null : address.withAdCode(region.code());
+        }
+
         ChatClient.CallResponseSpec res = chatClient.prompt(content).tools(addressAdCodeService).call();
         Address address = res.entity(Address.class);
         return address;
     }
 
+    /**
+     * 规则优先：结构清晰的地址文本直接按规则提取，只有存在歧义的文本才交给大模型
+     *
+     * @param content 地址文本
+     * @param model   大模型提取
+     * @return 提取结果，source 记录了实际的提取方式
+     */
+    private ExtractedAddress extract(String content, Supplier<Address> model) {
+        if (ruleFirst) {
+            AddressRuleExtractor.RuleAddress rule = addressRuleExtractor.extract(content);
+            if (rule != null) {
+                log.info("规则提取地址: {}", rule);
+                return new ExtractedAddress(Address.of(rule), ExtractSource.RULE);
+            }
+        }
+        Address address = model.get();
+        return address == null ? null : new ExtractedAddress(address, ExtractSource.MODEL);
+    }
+
     // 页面展示方法
     @GetMapping("/addressPage")
     public String addressPage(Model model) {
@@ -131,6 +189,35 @@ public class ChatController {
             @JsonPropertyDescription("联系人电话，如 15345785872")
             String personPhone
     ) {
+        static Address of(AddressRuleExtractor.RuleAddress rule) {
+            return new Address(rule.province(), rule.city(), rule.area(), rule.street(), rule.adCode(),
+                    rule.detailInfo(), rule.personName(), rule.personPhone());
+        }
+
+        Address withAdCode(String adCode) {
+            return new Address(province, city, area, street, adCode, detailInfo, personName, personPhone);
+        }
+    }
+
+    /**
+     * 返回给调用方的提取结果：地址字段平铺输出，并附带提取方式；
+     * 提取方式由服务端填写，不放在 Address 中，避免出现在交给大模型的输出格式里
+     *
+     * @param address 提取出的地址
+     * @param source  提取方式
+     */
+    record ExtractedAddress(@JsonUnwrapped Address address, ExtractSource source) {
+    }
+
+    enum ExtractSource {
+        /**
+         * 本地规则提取，没有调用大模型
+         */
+        RULE,
+        /**
+         * 大模型提取
+         */
+        MODEL
     }
 
 }
\ No newline at end of file
@@ -8,14 +8,12 @@ import org.slf4j.Logger;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -32,10 +30,10 @@ public class AddressAdCodeService {
     private final Logger log = org.slf4j.LoggerFactory.getLogger(AddressAdCodeService.class);
     private final static String data = "data/pca-code.json";
 
-    private volatile Map<String, ProvinceMapper> provinceMap;
+    private volatile RegionTrie regionTrie;
 
     /**
-     * 从 data/pca-code.json 中加载数据，并结构化
+     * 从 data/pca-code.json 中加载数据，并构建行政区域前缀树
      */
     @PostConstruct
     public void init() {
@@ -46,18 +44,8 @@ public class AddressAdCodeService {
             // 将content反序列化为 List<Province>
             List<Province> provinces = mapper.readValue(content, mapper.getTypeFactory().constructCollectionType(List.class, Province.class));
 
-            // 构建结构化数据，方便快速查找
-            HashMap<String, ProvinceMapper> map = new HashMap<>();
-            for (Province province : provinces) {
-                ProvinceMapper provinceMap = new ProvinceMapper(province.code, province.name, new HashMap<>());
-                map.put(province.name, provinceMap);
-                for (City city : province.children) {
-                    Map<String, Area> areaMap = CollectionUtils.isEmpty(city.children) ? Map.of() : city.children.stream().collect(Collectors.toMap(s -> s.name, s -> s));
-                    CityMapper cityMap = new CityMapper(city.code, city.name, areaMap);
-                    provinceMap.children.put(city.name, cityMap);
-                }
-            }
-            this.provinceMap = map;
+            // 构建前缀树，支持简称、无后缀名称以及完整地址文本的快速查找
+            this.regionTrie = RegionTrie.build(provinces);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -80,25 +68,24 @@ public class AddressAdCodeService {
             @ToolParam(description = "区，如 武昌区")
             String area) {
         log.info("queryAdCode: {}, {}, {}", province, city, area);
-        ProvinceMapper provinceMap = this.provinceMap.get(province);
-        if (StringUtils.isBlank(city)) {
-            return provinceMap.code;
-        }
-        CityMapper cityMap = provinceMap.children.get(city);
-        if (cityMap == null) {
-            // 市未查到，返回省的行政编码
-            return provinceMap.code;
-        }
-        if (StringUtils.isBlank(area)) {
-            return cityMap.code;
+        // 省市区依次拼接后按地址文本解析：支持简称，某一级写错或缺失时返回能确定的最下级区域编码
+        RegionTrie.Resolution resolution = resolve(Stream.of(province, city, area)
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.joining()));
+        if (resolution == null) {
+            return "未找到对应的行政区域，请检查省市区名称是否正确";
         }
+        return resolution.region().code();
+    }
 
-        Area ar = cityMap.children.get(area);
-        if (ar == null) {
-            // 区未查到，返回市的编码
-            return cityMap.code;
-        }
-        return ar.code;
+    /**
+     * 从地址文本中解析行政区域
+     *
+     * @param address 地址文本，可以是完整的收货地址，如 湖北武汉武昌区东湖路100号
+     * @return 解析结果，无法匹配时返回null
+     */
+    public RegionTrie.Resolution resolve(String address) {
+        return regionTrie.resolve(address);
     }
 
     public record Area(String code, String name) {
@@ -108,12 +95,6 @@ public class AddressAdCodeService {
     public record City(String code, String name, List<Area> children) {
     }
 
-    public record CityMapper(String code, String name, Map<String, Area> children) {
-    }
-
     public record Province(String code, String name, List<City> children) {
     }
-
-    public record ProvinceMapper(String code, String name, Map<String, CityMapper> children) {
-    }
 }
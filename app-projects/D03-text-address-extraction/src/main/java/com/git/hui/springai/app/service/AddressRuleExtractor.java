@@ -0,0 +1,172 @@
+package com.git.hui.springai.app.service;
+
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于规则的地址提取
+ * <p>
+ * 面向 “省市区 + 详细地址 + 联系人 + 电话” 这类结构清晰的快递面单文本：手机号/座机号用正则提取，省市区通过行政区域前缀树切分，
+ * 剩下的片段按分隔符拆分为联系人与详细地址。任何一步存在歧义（多个电话、省市区不完整、多余的文本片段、缺少联系人等）都直接放弃，交给大模型处理
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Service
+public class AddressRuleExtractor {
+    private final Logger log = org.slf4j.LoggerFactory.getLogger(AddressRuleExtractor.class);
+
+    /**
+     * 手机号或座机号，前后不能紧跟其他数字
+     */
+    private static final Pattern PHONE = Pattern.compile("(?<!\\d)(?:1[3-9]\\d{9}|0\\d{2,3}-?\\d{7,8})(?!\\d)");
+
+    /**
+     * 面单中常见的字段标签，如 收货人：、电话：、地址：
+     */
+    private static final Pattern LABEL = Pattern.compile("(?:收货人|收件人|联系人|姓名|联系电话|手机号码|手机号|手机|电话|收货地址|详细地址|地址)\\s*[:：]?");
+
+    /**
+     * 字段之间的分隔符
+     */
+    private static final String SEPARATORS = ",，;；、|/";
+    private static final Pattern SEPARATOR = Pattern.compile("[\\s" + SEPARATORS + "]+");
+
+    /**
+     * 联系人姓名：2~6个汉字，允许少数民族姓名中的间隔号
+     */
+    private static final Pattern NAME = Pattern.compile("[\\u4e00-\\u9fa5][\\u4e00-\\u9fa5·]{1,5}");
+
+    /**
+     * 详细地址中的街道部分，如 东湖路、中山大道、关山街道
+     */
+    private static final Pattern STREET = Pattern.compile("^(.+?(?:街道|大道|路|街|巷|镇|乡))(.*)$");
+
+    /**
+     * 详细地址末尾疑似粘连了姓名：最后一个门牌数字及 号/室/栋 等单位之后仍有汉字，如 东湖路8号张三
+     */
+    private static final Pattern NAME_TAIL = Pattern.compile("^.*\\d[A-Za-z]?(?:号院|号楼|号|室|栋|幢|楼|层|单元|座|户|弄|期|院)*+[\\u4e00-\\u9fa5·]+$");
+
+    private final AddressAdCodeService addressAdCodeService;
+
+    public AddressRuleExtractor(AddressAdCodeService addressAdCodeService) {
+        this.addressAdCodeService = addressAdCodeService;
+    }
+
+    /**
+     * 按规则提取地址信息
+     *
+     * @param content 地址文本，如 湖北省武汉市武昌区东湖路8号 张三 15345785872
+     * @return 提取结果；文本存在歧义、无法确定时返回null
+     */
+    public RuleAddress extract(String content) {
+        if (content == null || content.isBlank()) {
+            return null;
+        }
+
+        // 1. 电话：最多只能有一个
+        Set<String> phones = new LinkedHashSet<>();
+        Matcher matcher = PHONE.matcher(content);
+        while (matcher.find()) {
+            phones.add(matcher.group());
+        }
+        if (phones.size() > 1) {
+            return reject(content, "包含多个电话");
+        }
+        String text = LABEL.matcher(PHONE.matcher(content).replaceAll(" ")).replaceAll(" ");
+
+        // 2. 省市区：至少命中两级并且精确到区县
+        RegionTrie.Resolution resolution = addressAdCodeService.resolve(text);
+        if (resolution == null || resolution.hits() < 2 || resolution.region().level() != RegionTrie.Level.AREA) {
+            return reject(content, "省市区不完整");
+        }
+
+        // 3. 详细地址：区县之后到下一个分隔符之间的文本；省市区前面不能紧跟其他文本
+        int segmentStart = lastSeparatorEnd(text, resolution.start());
+        if (segmentStart < resolution.start()) {
+            return reject(content, "省市区前存在无法识别的文本");
+        }
+        int segmentEnd = nextSeparatorStart(text, resolution.end());
+        String detail = text.substring(resolution.end(), segmentEnd).strip();
+        if (detail.isEmpty()) {
+            return reject(content, "缺少详细地址");
+        }
+        if (NAME_TAIL.matcher(detail).matches()) {
+            return reject(content, "详细地址末尾疑似包含姓名");
+        }
+
+        // 4. 联系人：剩下的文本片段最多一个，且必须像一个姓名
+        List<String> rest = new ArrayList<>();
+        for (String part : SEPARATOR.split(text.substring(0, segmentStart) + " " + text.substring(segmentEnd))) {
+            if (!part.isBlank()) {
+                rest.add(part);
+            }
+        }
+        if (rest.size() > 1 || (rest.size() == 1 && !NAME.matcher(rest.get(0)).matches())) {
+            return reject(content, "存在无法识别的文本片段 " + rest);
+        }
+        if (rest.isEmpty()) {
+            // 没有单独的联系人片段时，姓名很可能与详细地址连在一起，规则无法可靠地切分
+            return reject(content, "缺少联系人");
+        }
+
+        RegionTrie.Region area = resolution.region();
+        RegionTrie.Region province = area.parent().level() == RegionTrie.Level.PROVINCE ? area.parent() : area.parent().parent();
+        String city;
+        if (area.parent().level() == RegionTrie.Level.CITY) {
+            city = area.parent().name();
+        } else {
+            // 直辖市的市填写直辖市本身，省直辖的县级市没有地级市
+            city = province.name().endsWith("市") ? province.name() : null;
+        }
+
+        String street = null;
+        Matcher streetMatcher = STREET.matcher(detail);
+        if (streetMatcher.matches() && !streetMatcher.group(2).isEmpty()) {
+            street = streetMatcher.group(1);
+            detail = streetMatcher.group(2);
+        }
+        return new RuleAddress(province.name(), city, area.name(), street, area.code(), detail,
+                rest.get(0),
+                phones.isEmpty() ? null : phones.iterator().next());
+    }
+
+    private RuleAddress reject(String content, String reason) {
+        log.debug("规则提取失败({}): {}", reason, content);
+        return null;
+    }
+
+    private static int lastSeparatorEnd(String text, int before) {
+        int index = before;
+        while (index > 0 && !isSeparator(text.charAt(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    private static int nextSeparatorStart(String text, int from) {
+        int index = from;
+        while (index < text.length() && !isSeparator(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || SEPARATORS.indexOf(c) >= 0;
+    }
+
+    /**
+     * 规则提取出的地址信息，字段与大模型的提取结果一致
+     */
+    public record RuleAddress(String province, String city, String area, String street, String adCode,
+                              String detailInfo, String personName, String personPhone) {
+    }
+}
@@ -0,0 +1,241 @@
+package com.git.hui.springai.app.service;
+
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 行政区域前缀树
+ * <p>
+ * 每个省/市/区县以标准名称以及去掉后缀的简称（湖北省 -> 湖北，恩施土家族苗族自治州 -> 恩施）作为key挂到前缀树上，
+ * 从文本中按 省 -> 市 -> 区县 的层级做最长匹配，可以直接从简称、无后缀的名称或者一段完整的收货地址中解析出行政区域编码
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class RegionTrie {
+
+    /**
+     * 数据源中用于占位的市级节点（直辖市的“市辖区”、省直辖县级行政区划等），不作为可匹配的名称
+     */
+    private static final Pattern PLACEHOLDER = Pattern.compile("市辖区|县|.*直辖县级行政区划");
+
+    /**
+     * 民族自治地方名称中的自治后缀
+     */
+    private static final Pattern AUTONOMOUS_SUFFIX = Pattern.compile("自治(区|州|县|旗)$");
+
+    /**
+     * 自治地方名称中的民族，部分名称中不带“族”，如 新疆维吾尔自治区、伊犁哈萨克自治州
+     */
+    private static final String[] ETHNIC_GROUPS = ("蒙古族 蒙古 回族 藏族 维吾尔族 维吾尔 苗族 彝族 壮族 布依族 朝鲜族 满族 侗族 瑶族 白族 土家族 哈尼族 哈萨克族 哈萨克 " +
+            "傣族 黎族 傈僳族 佤族 畲族 高山族 拉祜族 水族 东乡族 纳西族 景颇族 柯尔克孜族 土族 柯尔克孜 达斡尔族 仫佬族 羌族 布朗族 撒拉族 毛南族 仡佬族 " +
+            "锡伯族 阿昌族 普米族 塔吉克族 怒族 乌孜别克族 俄罗斯族 鄂温克族 德昂族 保安族 裕固族 京族 塔塔尔族 独龙族 鄂伦春族 赫哲族 门巴族 珞巴族 基诺族")
+            .split(" ");
+
+    /**
+     * 普通行政区域名称的后缀，按长度优先匹配
+     */
+    private static final String[] SUFFIXES = {"特别行政区", "地区", "林区", "省", "市", "区", "县", "旗", "盟"};
+
+    /**
+     * 前缀树的根节点，同一个名称可能对应多个区域（如 鼓楼区）
+     */
+    private final Node root = new Node();
+
+    private RegionTrie() {
+    }
+
+    public static RegionTrie build(List<AddressAdCodeService.Province> provinces) {
+        RegionTrie trie = new RegionTrie();
+        for (AddressAdCodeService.Province province : provinces) {
+            Region p = new Region(province.code(), province.name(), Level.PROVINCE, null);
+            trie.add(p);
+            for (AddressAdCodeService.City city : province.children()) {
+                Region c = new Region(city.code(), city.name(), Level.CITY, p);
+                boolean placeholder = PLACEHOLDER.matcher(city.name()).matches();
+                if (!placeholder) {
+                    trie.add(c);
+                }
+                if (CollectionUtils.isEmpty(city.children())) {
+                    continue;
+                }
+                for (AddressAdCodeService.Area area : city.children()) {
+                    // 直辖市、省直辖县的区县直接挂在省下面
+                    trie.add(new Region(area.code(), area.name(), Level.AREA, placeholder ? p : c));
+                }
+            }
+        }
+        return trie;
+    }
+
+    private void add(Region region) {
+        for (String alias : aliases(region.name())) {
+            Node node = root;
+            for (int i = 0; i < alias.length(); i++) {
+                node = node.children.computeIfAbsent(alias.charAt(i), k -> new Node());
+            }
+            node.regions.add(region);
+        }
+    }
+
+    /**
+     * 生成区域的匹配名称：标准名称 + 去掉后缀的简称，简称至少保留两个字；自治州额外支持 恩施州 这种常用简称
+     */
+    static Set<String> aliases(String name) {
+        Set<String> result = new LinkedHashSet<>();
+        result.add(name);
+
+        String shortName = AUTONOMOUS_SUFFIX.matcher(name).replaceFirst("");
+        if (shortName.length() < name.length()) {
+            // 去掉民族名称：恩施土家族苗族 -> 恩施，新疆维吾尔 -> 新疆
+            boolean stripped = true;
+            while (stripped) {
+                stripped = false;
+                for (String ethnic : ETHNIC_GROUPS) {
+                    if (shortName.endsWith(ethnic) && shortName.length() - ethnic.length() >= 2) {
+                        shortName = shortName.substring(0, shortName.length() - ethnic.length());
+                        stripped = true;
+                    }
+                }
+            }
+        } else {
+            for (String suffix : SUFFIXES) {
+                if (name.endsWith(suffix)) {
+                    shortName = name.substring(0, name.length() - suffix.length());
+                    break;
+                }
+            }
+        }
+        if (shortName.length() >= 2) {
+            result.add(shortName);
+            if (name.endsWith("自治州")) {
+                result.add(shortName + "州");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从文本中解析行政区域
+     * <p>
+     * 从左到右扫描，每个位置取已确定区域的下级区域中最长的名称；同名区域无法唯一确定时跳过，
+     * 继续用后面更具体的名称匹配；解析到区县一级后停止
+     *
+     * @param text 地址文本，如 湖北武汉武昌区东湖路100号
+     * @return 能够唯一确定的最下级区域，没有匹配时返回null
+     */
+    public Resolution resolve(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        Region current = null;
+        int hits = 0, start = -1, end = -1;
+        int i = 0;
+        while (i < text.length() && (current == null || current.level() != Level.AREA)) {
+            Node node = root;
+            List<Region> matched = null;
+            int matchEnd = i;
+            for (int j = i; j < text.length(); j++) {
+                node = node.children.get(text.charAt(j));
+                if (node == null) {
+                    break;
+                }
+                List<Region> within = descendants(node.regions, current);
+                if (!within.isEmpty()) {
+                    matched = within;
+                    matchEnd = j + 1;
+                }
+            }
+
+            if (matched == null) {
+                i++;
+                continue;
+            }
+            Region region = matched.size() == 1 ? matched.get(0) : commonAncestor(matched);
+            if (region != null) {
+                current = region;
+                hits++;
+                start = start < 0 ? i : start;
+                end = matchEnd;
+            }
+            i = matchEnd;
+        }
+        return current == null ? null : new Resolution(current, hits, start, end);
+    }
+
+    /**
+     * 同名区域中如果有一个是其他所有区域的上级，则取上级区域，如 乌鲁木齐 同时匹配 乌鲁木齐市 与其下的 乌鲁木齐县
+     */
+    private static Region commonAncestor(List<Region> regions) {
+        Region top = regions.get(0);
+        for (Region region : regions) {
+            if (region.code().length() < top.code().length()) {
+                top = region;
+            }
+        }
+        for (Region region : regions) {
+            if (!region.code().startsWith(top.code())) {
+                return null;
+            }
+        }
+        return top;
+    }
+
+    private static List<Region> descendants(List<Region> regions, Region ancestor) {
+        if (ancestor == null || regions.isEmpty()) {
+            return regions;
+        }
+        List<Region> result = new ArrayList<>(1);
+        for (Region region : regions) {
+            if (region.code().length() > ancestor.code().length() && region.code().startsWith(ancestor.code())) {
+                result.add(region);
+            }
+        }
+        return result;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Region> regions = new ArrayList<>(1);
+    }
+
+    public enum Level {
+        PROVINCE, CITY, AREA
+    }
+
+    /**
+     * 行政区域
+     *
+     * @param code   行政区域编码
+     * @param name   标准名称
+     * @param level  层级
+     * @param parent 上级区域，省级为null；直辖市的区县上级为省级区域
+     */
+    public record Region(String code, String name, Level level, Region parent) {
+
+        /**
+         * 从省到当前区域的完整名称，如 湖北省武汉市武昌区
+         */
+        public String fullName() {
+            return parent == null ? name : parent.fullName() + name;
+        }
+    }
+
+    /**
+     * 解析结果
+     *
+     * @param region 能够唯一确定的最下级区域
+     * @param hits   文本中命中的层级数，如 湖北武汉武昌区 为3，只写了 武昌区 为1
+     * @param start  文本中第一个命中的区域名称的起始位置
+     * @param end    文本中最后一个命中的区域名称的结束位置，之后即为街道、门牌等详细地址
+     */
+    public record Resolution(Region region, int hits, int start, int end) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.git.hui.springai.app.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 规则提取地址：结构清晰的面单文本直接提取，存在歧义的文本返回null交给大模型
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class AddressRuleExtractorTest {
+
+    private static AddressRuleExtractor extractor;
+
+    @BeforeAll
+    public static void init() {
+        AddressAdCodeService service = new AddressAdCodeService();
+        service.init();
+        extractor = new AddressRuleExtractor(service);
+    }
+
+    @Test
+    public void testExtract() {
+        AddressRuleExtractor.RuleAddress address = extractor.extract("湖北省武汉市武昌区东湖路8号 张三 15345785872");
+        assertEquals(new AddressRuleExtractor.RuleAddress("湖北省", "武汉市", "武昌区", "东湖路", "420106",
+                "8号", "张三", "15345785872"), address);
+    }
+
+    @Test
+    public void testAbbreviationWithLabels() {
+        AddressRuleExtractor.RuleAddress address = extractor.extract("收货人：李四，手机：13800138000，地址：湖北武汉武昌区中山路1号3栋");
+        assertNotNull(address);
+        assertEquals("湖北省", address.province());
+        assertEquals("武汉市", address.city());
+        assertEquals("武昌区", address.area());
+        assertEquals("中山路", address.street());
+        assertEquals("1号3栋", address.detailInfo());
+        assertEquals("李四", address.personName());
+        assertEquals("13800138000", address.personPhone());
+    }
+
+    @Test
+    public void testMunicipality() {
+        AddressRuleExtractor.RuleAddress address = extractor.extract("北京朝阳区建国路88号 王五 010-12345678");
+        assertNotNull(address);
+        // 直辖市的市填写直辖市本身
+        assertEquals("北京市", address.province());
+        assertEquals("北京市", address.city());
+        assertEquals("朝阳区", address.area());
+        assertEquals("110105", address.adCode());
+        assertEquals("010-12345678", address.personPhone());
+    }
+
+    @Test
+    public void testAutonomousPrefecture() {
+        AddressRuleExtractor.RuleAddress address = extractor.extract("湖北恩施州利川市东城街道滨江路2号 赵六 15345785872");
+        assertNotNull(address);
+        assertEquals("湖北省", address.province());
+        assertEquals("恩施土家族苗族自治州", address.city());
+        assertEquals("利川市", address.area());
+        assertEquals("422802", address.adCode());
+        assertEquals("东城街道", address.street());
+        assertEquals("滨江路2号", address.detailInfo());
+    }
+
+    @Test
+    public void testReject() {
+        // 多个电话
+        assertNull(extractor.extract("湖北省武汉市武昌区东湖路8号 张三 15345785872 13800138000"));
+        // 省市区不完整
+        assertNull(extractor.extract("武昌区东湖路8号 张三 15345785872"));
+        // 同名区县无法确定
+        assertNull(extractor.extract("鼓楼区中山路1号 张三 15345785872"));
+        // 姓名与详细地址连在一起
+        assertNull(extractor.extract("湖北省武汉市武昌区东湖路8号张三 15345785872"));
+        // 缺少联系人
+        assertNull(extractor.extract("湖北省武汉市武昌区东湖路8号 15345785872"));
+        // 多余的文本片段
+        assertNull(extractor.extract("湖北省武汉市武昌区东湖路8号 张三 放门口 15345785872"));
+        // 省市区前有无法识别的文本
+        assertNull(extractor.extract("寄到湖北省武汉市武昌区东湖路8号 张三 15345785872"));
+        // 缺少详细地址
+        assertNull(extractor.extract("湖北省武汉市武昌区 张三 15345785872"));
+        assertNull(extractor.extract(" "));
+        assertNull(extractor.extract(null));
+    }
+}
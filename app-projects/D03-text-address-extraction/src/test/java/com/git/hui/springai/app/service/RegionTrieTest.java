@@ -0,0 +1,88 @@
+package com.git.hui.springai.app.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行政区域前缀树：简称、直辖市、自治州以及同名区域的解析
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class RegionTrieTest {
+
+    private static AddressAdCodeService service;
+
+    @BeforeAll
+    public static void init() {
+        service = new AddressAdCodeService();
+        service.init();
+    }
+
+    @Test
+    public void testAliases() {
+        assertEquals(Set.of("湖北省", "湖北"), RegionTrie.aliases("湖北省"));
+        assertEquals(Set.of("恩施土家族苗族自治州", "恩施", "恩施州"), RegionTrie.aliases("恩施土家族苗族自治州"));
+        // 民族名称中不带“族”
+        assertEquals(Set.of("新疆维吾尔自治区", "新疆"), RegionTrie.aliases("新疆维吾尔自治区"));
+        // 简称至少保留两个字
+        assertEquals(Set.of("城区"), RegionTrie.aliases("城区"));
+    }
+
+    @Test
+    public void testAbbreviation() {
+        String text = "湖北武汉武昌区东湖路100号";
+        RegionTrie.Resolution resolution = service.resolve(text);
+        assertEquals("420106", resolution.region().code());
+        assertEquals(RegionTrie.Level.AREA, resolution.region().level());
+        assertEquals("湖北省武汉市武昌区", resolution.region().fullName());
+        assertEquals(3, resolution.hits());
+        assertEquals(0, resolution.start());
+        assertEquals("东湖路100号", text.substring(resolution.end()));
+
+        // 只写到市一级
+        RegionTrie.Resolution city = service.resolve("湖北武汉");
+        assertEquals(RegionTrie.Level.CITY, city.region().level());
+        assertEquals(2, city.hits());
+    }
+
+    @Test
+    public void testMunicipality() {
+        RegionTrie.Resolution resolution = service.resolve("北京朝阳区建国路88号");
+        assertEquals("110105", resolution.region().code());
+        // 直辖市的区县直接挂在省级区域下，市辖区不参与匹配
+        assertEquals(RegionTrie.Level.PROVINCE, resolution.region().parent().level());
+        assertEquals("北京市朝阳区", resolution.region().fullName());
+
+        assertEquals("310115", service.resolve("上海市浦东新区").region().code());
+    }
+
+    @Test
+    public void testAutonomousPrefecture() {
+        assertEquals("422802", service.resolve("湖北恩施州利川市").region().code());
+        assertEquals("422802", service.resolve("恩施土家族苗族自治州利川市").region().code());
+        assertEquals("654002", service.resolve("新疆伊犁伊宁市").region().code());
+    }
+
+    @Test
+    public void testAmbiguousName() {
+        // 鼓楼区在多个城市都存在，无法唯一确定
+        assertNull(service.resolve("鼓楼区"));
+        assertEquals("320106", service.resolve("南京鼓楼区").region().code());
+        assertEquals("350102", service.resolve("福州市鼓楼区").region().code());
+
+        // 同名的区县挂在不同省份下，带上省份后可以确定
+        assertEquals("220104", service.resolve("吉林长春朝阳区").region().code());
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertNull(service.resolve(null));
+        assertNull(service.resolve(""));
+        assertNull(service.resolve("火星基地1号"));
+    }
+}
@@ -67,6 +67,9 @@ public class BaseInvoiceInfo {
     @JsonPropertyDescription(value = "开票人")
     private String issuer;
 
+    @JsonPropertyDescription(value = "商品明细的总行数，只统计行数，如：12")
+    private Integer itemCount;
+
     // 系统信息
     @JsonPropertyDescription(value = "发票图片MD5")
     private String imageHash;
@@ -0,0 +1,31 @@
+package com.git.hui.springai.app.entity.req;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@Accessors(chain = true)
+@Schema(description = "发票批量提取响应")
+public class InvoiceBatchExtractResponse {
+
+    @Schema(description = "整体处理状态：全部识别成功且校验通过为SUCCESS，部分识别成功为PARTIAL_SUCCESS，全部失败为ERROR")
+    private ProcessStatus status;
+
+    @Schema(description = "每张发票的提取结果，与上传顺序一致，requestId 为文件名")
+    private List<InvoiceExtractResponse> results;
+
+    @Schema(description = "发票总数")
+    private Integer total;
+
+    @Schema(description = "复用已有识别结果的发票数（命中缓存或与本批次中的其他图片重复）")
+    private Integer cached;
+
+    @Schema(description = "处理耗时(ms)")
+    private Long processTime;
+
+    @Schema(description = "错误信息")
+    private String errorMessage;
+}
@@ -1,6 +1,7 @@
 package com.git.hui.springai.app.entity.req;
 
 import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.service.InvoiceValidationService;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import lombok.experimental.Accessors;
@@ -19,9 +20,15 @@ public class InvoiceExtractResponse {
     @Schema(description = "提取结果")
     private InvoiceInfo invoiceInfo;
 
+    @Schema(description = "字段校验结果")
+    private InvoiceValidationService.ValidationResult validation;
+
     @Schema(description = "处理耗时(ms)")
     private Long processTime;
 
+    @Schema(description = "是否复用了已有的识别结果")
+    private Boolean cached;
+
     @Schema(description = "错误信息")
     private String errorMessage;
 }
\ No newline at end of file
@@ -2,11 +2,15 @@ package com.git.hui.springai.app.mvc;
 
 import cn.hutool.http.HttpUtil;
 import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.entity.req.InvoiceBatchExtractResponse;
 import com.git.hui.springai.app.entity.req.InvoiceExtractRequest;
 import com.git.hui.springai.app.entity.req.InvoiceExtractResponse;
 import com.git.hui.springai.app.entity.req.ProcessStatus;
+import com.git.hui.springai.app.service.InvoiceBatchService;
 import com.git.hui.springai.app.service.InvoiceExtractionService;
+import com.git.hui.springai.app.service.InvoiceValidationService;
 import io.micrometer.common.util.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.MimeType;
@@ -17,6 +21,8 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 图片识别
@@ -27,9 +33,21 @@ import java.io.IOException;
 @Controller
 public class InvoiceExtractionController {
     private final InvoiceExtractionService invoiceExtractionService;
+    private final InvoiceBatchService invoiceBatchService;
+    private final InvoiceValidationService invoiceValidationService;
 
-    public InvoiceExtractionController(InvoiceExtractionService invoiceExtractionService) {
+    /**
+     * 单次批量识别最多允许上传的发票数
+     */
+    @Value("${invoice.batch.max-size:50}")
+    private int batchMaxSize;
+
+    public InvoiceExtractionController(InvoiceExtractionService invoiceExtractionService,
+                                       InvoiceBatchService invoiceBatchService,
+                                       InvoiceValidationService invoiceValidationService) {
         this.invoiceExtractionService = invoiceExtractionService;
+        this.invoiceBatchService = invoiceBatchService;
+        this.invoiceValidationService = invoiceValidationService;
     }
 
     /**
@@ -91,13 +109,54 @@ public class InvoiceExtractionController {
         } else {
             invoiceInfo = invoiceExtractionService.extractInvoice(imageBytes, mimeType, request.getMsg());
         }
+        if (invoiceInfo == null) {
+            return new InvoiceExtractResponse()
+                    .setProcessTime(System.currentTimeMillis() - start)
+                    .setStatus(ProcessStatus.OCR_FAILED)
+                    .setErrorMessage("未能识别出发票信息");
+        }
+
+        // 本地校验提取结果，不需要大模型额外发起工具调用
+        InvoiceValidationService.ValidationResult validation = invoiceValidationService.validate(invoiceInfo);
         return new InvoiceExtractResponse()
                 .setInvoiceInfo(invoiceInfo)
+                .setValidation(validation)
                 .setProcessTime(System.currentTimeMillis() - start)
-                .setStatus(ProcessStatus.SUCCESS);
+                .setStatus(validation.isValid() ? ProcessStatus.SUCCESS : ProcessStatus.VALIDATION_FAILED);
     }
 
 
+    /**
+     * 批量上传发票图片并提取内容，相同的图片只识别一次，识别过的图片直接返回缓存结果
+     *
+     * @param files     上传的发票图片文件
+     * @param needItems 是否需要识别商品明细
+     * @param msg       识别提示信息
+     * @return 每张发票的识别结果与处理状态
+     */
+    @ResponseBody
+    @PostMapping(path = "/extractBatch")
+    public InvoiceBatchExtractResponse extractBatch(@RequestParam("files") List<MultipartFile> files,
+                                                    @RequestParam(value = "needItems", required = false) Boolean needItems,
+                                                    @RequestParam(value = "msg", required = false) String msg) throws IOException {
+        if (files.isEmpty()) {
+            return new InvoiceBatchExtractResponse().setStatus(ProcessStatus.ERROR).setErrorMessage("请上传发票图片");
+        }
+        if (files.size() > batchMaxSize) {
+            return new InvoiceBatchExtractResponse().setStatus(ProcessStatus.ERROR)
+                    .setErrorMessage("单次最多上传 " + batchMaxSize + " 张发票");
+        }
+
+        List<InvoiceBatchService.InvoiceImage> images = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            String name = StringUtils.isBlank(file.getOriginalFilename()) ? String.valueOf(i) : file.getOriginalFilename();
+            String contentType = StringUtils.isBlank(file.getContentType()) ? "image/jpeg" : file.getContentType();
+            images.add(new InvoiceBatchService.InvoiceImage(name, file.getBytes(), MimeType.valueOf(contentType)));
+        }
+        return invoiceBatchService.extractBatch(images, Boolean.TRUE.equals(needItems), msg);
+    }
+
     /**
      * 显示发票识别页面
      *
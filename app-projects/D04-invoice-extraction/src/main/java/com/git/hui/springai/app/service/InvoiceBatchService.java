@@ -0,0 +1,215 @@
+package com.git.hui.springai.app.service;
+
+import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.entity.req.InvoiceBatchExtractResponse;
+import com.git.hui.springai.app.entity.req.InvoiceExtractResponse;
+import com.git.hui.springai.app.entity.req.ProcessStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 发票批量提取服务
+ * <p>
+ * 1. 按图片内容hash去重：同一批次中重复的图片只识别一次，之前以相同提示信息、预处理参数识别过的图片直接返回缓存结果
+ * 2. 未命中缓存的图片先缩放/压缩再交给大模型识别，识别结果写入缓存
+ * 3. 同时识别的发票数受 invoice.batch.concurrency 限制，单张发票的处理状态单独返回
+ * 4. 识别结果（包括缓存结果）在本地执行字段校验，校验不通过的发票状态为 VALIDATION_FAILED
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Slf4j
+@Service
+public class InvoiceBatchService {
+
+    private final InvoiceExtractionService invoiceExtractionService;
+    private final InvoiceImagePreprocessor imagePreprocessor;
+    private final InvoiceResultCache resultCache;
+    private final InvoiceValidationService invoiceValidationService;
+
+    /**
+     * 批量识别的线程池，线程数即同时识别的发票数
+     */
+    private final ExecutorService batchExecutor;
+
+    /**
+     * 整个批次的超时时间，超时的发票返回 TIMEOUT，后台识别完成后依然会写入缓存
+     */
+    private final Duration timeout;
+
+    public InvoiceBatchService(InvoiceExtractionService invoiceExtractionService,
+                               InvoiceImagePreprocessor imagePreprocessor,
+                               InvoiceResultCache resultCache,
+                               InvoiceValidationService invoiceValidationService,
+                               @Value("${invoice.batch.concurrency:4}") int concurrency,
+                               @Value("${invoice.batch.timeout:120s}") Duration timeout) {
+        this.invoiceExtractionService = invoiceExtractionService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.resultCache = resultCache;
+        this.invoiceValidationService = invoiceValidationService;
+        this.timeout = timeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.batchExecutor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "invoice-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    /**
+     * 批量识别发票
+     *
+     * @param images    待识别的发票图片
+     * @param needItems 是否需要识别商品明细
+     * @param msg       识别提示信息
+     * @return 批量识别结果，results 的顺序与 images 一致
+     */
+    public InvoiceBatchExtractResponse extractBatch(List<InvoiceImage> images, boolean needItems, String msg) {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout.toMillis();
+
+        // 1. 按 hash 去重，每个不同的图片只提交一次识别任务
+        Map<String, CompletableFuture<InvoiceInfo>> tasks = new HashMap<>();
+        Set<String> fromCache = new HashSet<>();
+        List<String> keys = new ArrayList<>(images.size());
+        for (InvoiceImage image : images) {
+            String hash = InvoiceImagePreprocessor.hash(image.bytes());
+            String key = cacheKey(hash, needItems, msg);
+            keys.add(key);
+            if (tasks.containsKey(key)) {
+                continue;
+            }
+
+            InvoiceInfo cached = resultCache.get(key);
+            if (cached != null) {
+                fromCache.add(key);
+                tasks.put(key, CompletableFuture.completedFuture(cached));
+            } else {
+                tasks.put(key, CompletableFuture.supplyAsync(() -> extract(image, hash, key, needItems, msg), batchExecutor));
+            }
+        }
+
+        // 2. 按上传顺序收集每张发票的结果
+        List<InvoiceExtractResponse> results = new ArrayList<>(images.size());
+        Set<String> seen = new HashSet<>();
+        int cachedCount = 0, successCount = 0, extractedCount = 0;
+        for (int i = 0; i < images.size(); i++) {
+            String key = keys.get(i);
+            // 命中缓存，或者与批次中前面的图片重复，都算复用已有的结果
+            boolean cached = !seen.add(key) || fromCache.contains(key);
+            InvoiceExtractResponse response = await(tasks.get(key), deadline)
+                    .setRequestId(images.get(i).name())
+                    .setCached(cached);
+            results.add(response);
+            if (cached) {
+                cachedCount++;
+            }
+            if (response.getStatus() == ProcessStatus.SUCCESS) {
+                successCount++;
+            }
+            if (response.getInvoiceInfo() != null) {
+                extractedCount++;
+            }
+        }
+
+        ProcessStatus status = successCount == images.size() ? ProcessStatus.SUCCESS
+                : extractedCount > 0 ? ProcessStatus.PARTIAL_SUCCESS : ProcessStatus.ERROR;
+        long cost = System.currentTimeMillis() - start;
+        log.info("批量识别发票 {} 张，去重后识别 {} 张，复用结果 {} 张，成功 {} 张，耗时 {}ms",
+                images.size(), tasks.size() - fromCache.size(), cachedCount, successCount, cost);
+        return new InvoiceBatchExtractResponse()
+                .setStatus(status)
+                .setResults(results)
+                .setTotal(images.size())
+                .setCached(cachedCount)
+                .setProcessTime(cost);
+    }
+
+    /**
+     * 识别结果的缓存key：图片hash + 是否识别明细 + 提示信息与预处理参数的hash，任意一项不同都不复用之前的结果
+     */
+    private String cacheKey(String hash, boolean needItems, String msg) {
+        String options = (msg == null ? "" : msg) + "|" + imagePreprocessor.settings();
+        return hash + (needItems ? "-items-" : "-base-") + DigestUtils.md5DigestAsHex(options.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InvoiceInfo extract(InvoiceImage image, String hash, String key, boolean needItems, String msg) {
+        long start = System.currentTimeMillis();
+        InvoiceImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(image.bytes(), image.mimeType());
+        InvoiceInfo invoiceInfo = needItems
+                ? invoiceExtractionService.extractInvoiceWitInhItems(prepared.bytes(), prepared.mimeType(), msg)
+                : invoiceExtractionService.extractInvoice(prepared.bytes(), prepared.mimeType(), msg);
+        if (invoiceInfo != null) {
+            invoiceInfo.setImageHash(hash);
+            if (invoiceInfo.getExtractTime() == null) {
+                invoiceInfo.setExtractTime(LocalDateTime.now());
+            }
+            resultCache.put(key, invoiceInfo);
+        }
+        log.info("发票 {} 识别耗时：{}ms", image.name(), System.currentTimeMillis() - start);
+        return invoiceInfo;
+    }
+
+    /**
+     * 等待单张发票的识别结果，并转换为对应的处理状态
+     */
+    private InvoiceExtractResponse await(CompletableFuture<InvoiceInfo> task, long deadline) {
+        long start = System.currentTimeMillis();
+        InvoiceExtractResponse response = new InvoiceExtractResponse();
+        try {
+            InvoiceInfo invoiceInfo = task.get(Math.max(0, deadline - start), TimeUnit.MILLISECONDS);
+            if (invoiceInfo == null) {
+                return response.setStatus(ProcessStatus.OCR_FAILED).setErrorMessage("未能识别出发票信息");
+            }
+            InvoiceValidationService.ValidationResult validation = invoiceValidationService.validate(invoiceInfo);
+            return response.setStatus(validation.isValid() ? ProcessStatus.SUCCESS : ProcessStatus.VALIDATION_FAILED)
+                    .setInvoiceInfo(invoiceInfo)
+                    .setValidation(validation);
+        } catch (TimeoutException e) {
+            return response.setStatus(ProcessStatus.TIMEOUT).setErrorMessage("识别超时");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            log.warn("发票识别失败: {}", cause.getMessage(), cause);
+            return response.setStatus(ProcessStatus.ERROR).setErrorMessage(cause.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return response.setStatus(ProcessStatus.ERROR).setErrorMessage("识别被中断");
+        }
+    }
+
+    /**
+     * 待识别的发票图片
+     *
+     * @param name     图片名称，作为结果的 requestId
+     * @param bytes    图片内容
+     * @param mimeType 图片类型
+     */
+    public record InvoiceImage(String name, byte[] bytes, MimeType mimeType) {
+    }
+}
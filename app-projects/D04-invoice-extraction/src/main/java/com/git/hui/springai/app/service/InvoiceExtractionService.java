@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.git.hui.springai.app.entity.invoice.BaseInvoiceInfo;
 import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
 import com.git.hui.springai.app.entity.invoice.InvoiceItem;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClientRequest;
@@ -33,6 +34,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 发票提取服务
@@ -53,14 +59,52 @@ public class InvoiceExtractionService {
     @Value("classpath:/prompts/invoice-items-extract.st")
     private Resource invoiceItemPrompt;
 
+    /**
+     * 每次提取的商品行数
+     */
+    private static final int ITEM_STEP = 5;
+
+    /**
+     * 并行提取时最多同时发起的商品行数，避免识别出的行数异常时发起过多请求；超出部分逐批提取
+     */
+    private static final int MAX_ITEM_ROWS = 200;
+
+    /**
+     * 是否并行提取商品明细：先识别出商品行数，再同时发起所有批次的提取
+     */
+    @Value("${invoice.items.parallel:true}")
+    private boolean parallelItems;
+
     private final ChatModel chatModel;
     private final ChatClient chatClient;
 
-    public InvoiceExtractionService(ChatModel chatModel) {
+    /**
+     * 发票提取的专用线程池，大模型调用都是阻塞的网络请求，不使用公共的 ForkJoinPool
+     */
+    private final ExecutorService extractExecutor;
+
+    public InvoiceExtractionService(ChatModel chatModel,
+                                    @Value("${invoice.extract.concurrency:8}") int concurrency,
+                                    @Value("${invoice.extract.queue-capacity:256}") int queueCapacity) {
         this.chatModel = chatModel;
         this.chatClient = ChatClient.builder(chatModel)
                 .defaultAdvisors(new SimpleLoggerAdvisor())
                 .build();
+        AtomicInteger counter = new AtomicInteger();
+        // 队列满时由提交任务的线程直接执行，相当于限流
+        this.extractExecutor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "invoice-extract-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractExecutor.shutdown();
     }
 
 
@@ -157,6 +201,8 @@ public class InvoiceExtractionService {
      * 识别发票中商品行较多的发票内容
      * <p>
      * - 图片中的信息，超过窗口上下文的场景，我们需要进行分批处理
+     * - 并行模式：基础信息中同时识别出商品行数，再按行数同时发起所有批次的提取，按顺序合并；
+     * 40行的发票只需要 基础信息 + 一轮并行的明细提取 两次往返，而不是逐批串行的8次；未识别出行数时退化为逐批提取
      *
      * @param imageBytes 图片字节
      * @param mimeType   图片类型
@@ -164,34 +210,16 @@ public class InvoiceExtractionService {
      * @return
      */
     public InvoiceInfo extractInvoiceWitInhItems(byte[] imageBytes, MimeType mimeType, String msg) {
+        long begin = System.currentTimeMillis();
         Media media = Media.builder()
                 .mimeType(mimeType)
                 .data(imageBytes)
                 .build();
-        CompletableFuture<BaseInvoiceInfo> infoFuture = CompletableFuture.supplyAsync(() -> {
-            BaseInvoiceInfo invoiceInfo = extractBaseInvoice(imageBytes, mimeType, msg);
-            return invoiceInfo;
-        });
-        CompletableFuture<List<InvoiceItem>> itemFuture = CompletableFuture.supplyAsync(() -> {
-            final int step = 5;
-            int start = 0, end = step;
-            List<InvoiceItem> totalItems = new ArrayList<>();
-            while (true) {
-                log.info("开始处理：{} - {}", start, end);
-                List<InvoiceItem> items = extractInvoiceItems(media, start, end);
-                if (CollectionUtils.isEmpty(items)) {
-                    break;
-                }
-                totalItems.addAll(items);
-                if (items.size() < end - start) {
-                    break;
-                } else {
-                    start += step;
-                    end += step;
-                }
-            }
-            return totalItems;
-        });
+        CompletableFuture<BaseInvoiceInfo> infoFuture = CompletableFuture.supplyAsync(
+                () -> extractBaseInvoice(imageBytes, mimeType, msg), extractExecutor);
+        CompletableFuture<List<InvoiceItem>> itemFuture = parallelItems
+                ? infoFuture.thenCompose(info -> extractInvoiceItemsParallel(media, info == null ? null : info.getItemCount()))
+                : CompletableFuture.supplyAsync(() -> extractInvoiceItemsSequential(media, 0), extractExecutor);
 
         // 等待两个任务完成
         CompletableFuture.allOf(infoFuture, itemFuture).join();
@@ -203,9 +231,81 @@ public class InvoiceExtractionService {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        log.info("提取发票明细耗时：{}ms，商品行数：{}", System.currentTimeMillis() - begin, invoiceInfo.getItems().size());
         return invoiceInfo;
     }
 
+    /**
+     * 按商品行数同时发起所有批次的提取，结果按批次顺序合并；
+     * 识别出的行数可能偏少，最后一批返回满批时说明后面还有商品行，从下一批开始继续逐批提取
+     *
+     * @param itemCount 商品行数，未识别出时逐批提取
+     */
+    private CompletableFuture<List<InvoiceItem>> extractInvoiceItemsParallel(Media media, Integer itemCount) {
+        if (itemCount == null || itemCount <= 0) {
+            log.info("未识别出商品行数，逐批提取商品明细");
+            return CompletableFuture.supplyAsync(() -> extractInvoiceItemsSequential(media, 0), extractExecutor);
+        }
+
+        int rows = Math.min(itemCount, MAX_ITEM_ROWS);
+        if (itemCount > MAX_ITEM_ROWS) {
+            log.warn("商品行数 {} 超过并行提取上限 {}，超出部分逐批提取", itemCount, MAX_ITEM_ROWS);
+        }
+        log.info("商品行数：{}，并行提取 {} 批", itemCount, (rows + ITEM_STEP - 1) / ITEM_STEP);
+        List<CompletableFuture<List<InvoiceItem>>> batches = new ArrayList<>();
+        int nextStart = 0;
+        for (; nextStart < rows; nextStart += ITEM_STEP) {
+            final int batchStart = nextStart, batchEnd = nextStart + ITEM_STEP;
+            batches.add(CompletableFuture.supplyAsync(() -> extractInvoiceItems(media, batchStart, batchEnd), extractExecutor));
+        }
+        final int continueStart = nextStart;
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+                .thenCompose(v -> {
+                    List<InvoiceItem> totalItems = new ArrayList<>(rows);
+                    for (CompletableFuture<List<InvoiceItem>> batch : batches) {
+                        List<InvoiceItem> items = batch.join();
+                        if (!CollectionUtils.isEmpty(items)) {
+                            totalItems.addAll(items);
+                        }
+                    }
+                    List<InvoiceItem> last = batches.get(batches.size() - 1).join();
+                    if (last == null || last.size() < ITEM_STEP) {
+                        return CompletableFuture.completedFuture(totalItems);
+                    }
+                    log.info("最后一批返回满批，识别出的商品行数 {} 偏少，从第 {} 行继续逐批提取", itemCount, continueStart);
+                    return CompletableFuture.supplyAsync(() -> extractInvoiceItemsSequential(media, continueStart), extractExecutor)
+                            .thenApply(rest -> {
+                                totalItems.addAll(rest);
+                                return totalItems;
+                            });
+                });
+    }
+
+    /**
+     * 逐批提取商品明细，直到某一批返回的行数不足
+     *
+     * @param start 起始行
+     */
+    private List<InvoiceItem> extractInvoiceItemsSequential(Media media, int start) {
+        int end = start + ITEM_STEP;
+        List<InvoiceItem> totalItems = new ArrayList<>();
+        while (true) {
+            log.info("开始处理：{} - {}", start, end);
+            List<InvoiceItem> items = extractInvoiceItems(media, start, end);
+            if (CollectionUtils.isEmpty(items)) {
+                break;
+            }
+            totalItems.addAll(items);
+            if (items.size() < end - start) {
+                break;
+            } else {
+                start += ITEM_STEP;
+                end += ITEM_STEP;
+            }
+        }
+        return totalItems;
+    }
+
     private List<InvoiceItem> extractInvoiceItems(Media media, Integer start, Integer end) {
         PromptTemplate promptTemplate = PromptTemplate.builder()
                 // 因为提示词中返回的json对象中，有 {}，所以使用默认的 {} 来替换占位变量，会报错
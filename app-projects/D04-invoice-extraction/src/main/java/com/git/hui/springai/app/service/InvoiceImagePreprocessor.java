@@ -0,0 +1,127 @@
+package com.git.hui.springai.app.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 发票图片预处理
+ * <p>
+ * 视觉模型按图片分辨率计费（token数与像素数近似成正比），手机拍照/扫描件的分辨率往往远超识别所需；
+ * 上传前将长边缩放到目标尺寸并统一转为JPEG，无法解码的图片（如PDF）保持原样
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Slf4j
+@Component
+public class InvoiceImagePreprocessor {
+
+    /**
+     * 缩放后长边的最大像素
+     */
+    @Value("${invoice.image.max-size:1600}")
+    private int maxSize;
+
+    /**
+     * JPEG压缩质量，0~1
+     */
+    @Value("${invoice.image.quality:0.85}")
+    private float quality;
+
+    /**
+     * 预处理图片
+     *
+     * @param imageBytes 原始图片
+     * @param mimeType   原始图片类型
+     * @return 预处理后的图片
+     */
+    public PreparedImage prepare(byte[] imageBytes, MimeType mimeType) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            if (image == null) {
+                return new PreparedImage(imageBytes, mimeType);
+            }
+
+            int width = image.getWidth(), height = image.getHeight();
+            double scale = Math.min(1d, (double) maxSize / Math.max(width, height));
+            int targetWidth = (int) Math.round(width * scale), targetHeight = (int) Math.round(height * scale);
+
+            // 统一绘制到RGB画布上：JPEG不支持透明通道，缩放使用双线性插值保证文字清晰
+            BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = target.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(image, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+
+            byte[] encoded = encodeJpeg(target);
+            if (scale == 1d && encoded.length >= imageBytes.length) {
+                // 无需缩放且重新编码后没有变小，直接使用原图
+                return new PreparedImage(imageBytes, mimeType);
+            }
+            log.debug("图片预处理：{}x{} {}B -> {}x{} {}B", width, height, imageBytes.length, targetWidth, targetHeight, encoded.length);
+            return new PreparedImage(encoded, MimeTypeUtils.IMAGE_JPEG);
+        } catch (IOException | RuntimeException e) {
+            log.warn("图片预处理失败，使用原图: {}", e.getMessage());
+            return new PreparedImage(imageBytes, mimeType);
+        }
+    }
+
+    /**
+     * 图片内容的hash，相同的扫描件得到相同的hash
+     */
+    public static String hash(byte[] imageBytes) {
+        return DigestUtils.md5DigestAsHex(imageBytes);
+    }
+
+    /**
+     * 影响识别结果的预处理参数，作为识别结果缓存key的一部分，参数调整后不再复用之前的识别结果
+     */
+    public String settings() {
+        return "max-size=" + maxSize + ",quality=" + quality;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 预处理后的图片
+     *
+     * @param bytes    图片内容
+     * @param mimeType 图片类型
+     */
+    public record PreparedImage(byte[] bytes, MimeType mimeType) {
+    }
+}
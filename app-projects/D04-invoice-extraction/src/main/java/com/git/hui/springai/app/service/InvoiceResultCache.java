@@ -0,0 +1,138 @@
+package com.git.hui.springai.app.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 发票识别结果缓存，key 为发票图片的hash
+ * <p>
+ * 结果以json文件的形式保存在缓存目录中（每张发票一个文件），重启后依然有效；内存中只保留最近访问的 MEMORY_SIZE 条结果。
+ * 不配置缓存目录时只缓存在内存中
+ * <p>
+ * InvoiceInfo 是可变对象，写入与查询时都复制一份，调用方修改返回的结果不会影响缓存中的内容
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Slf4j
+@Component
+public class InvoiceResultCache {
+    private static final int MEMORY_SIZE = 1000;
+
+    private final Path dir;
+
+    /**
+     * 最近访问的识别结果
+     */
+    private final Map<String, InvoiceInfo> memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, InvoiceInfo> eldest) {
+            return size() > MEMORY_SIZE;
+        }
+    });
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public InvoiceResultCache(@Value("${invoice.cache.dir:}") String dir) throws IOException {
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        if (StringUtils.hasText(dir)) {
+            this.dir = Paths.get(dir);
+            Files.createDirectories(this.dir);
+            log.info("发票识别结果缓存目录: {}", this.dir.toAbsolutePath());
+        } else {
+            this.dir = null;
+        }
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key 图片hash + 识别选项
+     * @return 缓存的识别结果的副本，未命中返回null
+     */
+    public InvoiceInfo get(String key) {
+        InvoiceInfo info = memory.get(key);
+        if (info == null) {
+            info = load(key);
+            if (info != null) {
+                memory.put(key, info);
+            }
+        }
+        if (info == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return copy(info);
+    }
+
+    public void put(String key, InvoiceInfo info) {
+        if (info == null) {
+            return;
+        }
+        memory.put(key, copy(info));
+        if (dir == null) {
+            return;
+        }
+        try {
+            // 先写临时文件再重命名，避免进程中断时留下不完整的json
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            objectMapper.writeValue(tmp.toFile(), info);
+            Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存发票识别结果缓存失败: {}", key, e);
+        }
+    }
+
+    private InvoiceInfo load(String key) {
+        if (dir == null) {
+            return null;
+        }
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), InvoiceInfo.class);
+        } catch (IOException e) {
+            log.warn("读取发票识别结果缓存失败: {}", file, e);
+            return null;
+        }
+    }
+
+    private InvoiceInfo copy(InvoiceInfo info) {
+        return info == null ? null : objectMapper.convertValue(info, InvoiceInfo.class);
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key + ".json");
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -1,18 +1,81 @@
 package com.git.hui.springai.app.service;
 
+import com.git.hui.springai.app.entity.invoice.BaseInvoiceInfo;
+import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.entity.invoice.InvoiceItem;
+import com.git.hui.springai.app.entity.invoice.PartyInfo;
 import lombok.Data;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
+/**
+ * 发票字段校验
+ * <p>
+ * 校验规则全部在本地执行，提取完成后直接对 InvoiceInfo 进行校验，不需要大模型再发起一次工具调用；
+ * 同时保留 validateInvoiceFields 工具，供需要由大模型自行校验的场景使用
+ */
 @Component
 public class InvoiceValidationService {
+
+    /**
+     * 发票代码：10位（纸质普票）或12位（电子发票、专票）数字；全电发票没有发票代码
+     */
+    private static final Pattern INVOICE_CODE = Pattern.compile("\\d{10}|\\d{12}");
+
+    /**
+     * 发票号码：8位数字，全电发票为20位数字
+     */
+    private static final Pattern INVOICE_NUMBER = Pattern.compile("\\d{8}|\\d{20}");
+
+    /**
+     * 纳税人识别号：15~20位数字或大写字母（统一社会信用代码为18位）
+     */
+    private static final Pattern TAX_ID = Pattern.compile("[0-9A-Z]{15,20}");
+
+    /**
+     * 金额的允许误差：1分
+     */
+    private static final BigDecimal AMOUNT_TOLERANCE = new BigDecimal("0.01");
+
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    /**
+     * 校验规则，按顺序执行，每条规则只追加错误，不中断后续规则
+     */
+    private static final List<ValidationRule> RULES = List.of(
+            InvoiceValidationService::checkCodes,
+            InvoiceValidationService::checkParties,
+            InvoiceValidationService::checkIssueDate,
+            InvoiceValidationService::checkTotal,
+            InvoiceValidationService::checkTaxRate,
+            InvoiceValidationService::checkItems
+    );
+
+    /**
+     * 校验提取出的发票信息
+     *
+     * @param invoice 提取结果，为 InvoiceInfo 时同时校验商品明细
+     * @return 校验结果
+     */
+    public ValidationResult validate(BaseInvoiceInfo invoice) {
+        List<ValidationError> errors = new ArrayList<>();
+        for (ValidationRule rule : RULES) {
+            rule.check(invoice, errors);
+        }
+        return ValidationResult.of(errors);
+    }
+
     @Tool(
             name = "validateInvoiceFields",
             description = "验证发票字段的合法性和一致性"
@@ -25,48 +88,222 @@ public class InvoiceValidationService {
             @ToolParam(description = "税额") BigDecimal taxAmount,
             @ToolParam(description = "价税合计") BigDecimal totalAmount
     ) {
-        ValidationResult result = new ValidationResult();
+        BaseInvoiceInfo invoice = new BaseInvoiceInfo();
+        invoice.setInvoiceCode(invoiceCode);
+        invoice.setInvoiceNumber(invoiceNumber);
+        invoice.setAmountWithoutTax(amountWithoutTax);
+        invoice.setTaxAmount(taxAmount);
+        invoice.setTotalAmount(totalAmount);
+
         List<ValidationError> errors = new ArrayList<>();
+        if (issueDate != null) {
+            try {
+                invoice.setIssueDate(LocalDate.parse(issueDate));
+            } catch (Exception e) {
+                errors.add(new ValidationError("issueDate", "开票日期格式错误"));
+            }
+        }
+        checkCodes(invoice, errors);
+        checkIssueDate(invoice, errors);
+        checkTotal(invoice, errors);
+        return ValidationResult.of(errors);
+    }
 
-        // 1. 验证发票代码格式（12位数字）
-        if (invoiceCode != null && !invoiceCode.matches("\\d{12}")) {
-            errors.add(new ValidationError("invoiceCode", "发票代码必须是12位数字"));
+    /**
+     * 发票代码、发票号码格式
+     */
+    private static void checkCodes(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        if (StringUtils.hasText(invoice.getInvoiceCode()) && !INVOICE_CODE.matcher(invoice.getInvoiceCode()).matches()) {
+            errors.add(new ValidationError("invoiceCode", "发票代码必须是10位或12位数字"));
         }
+        if (StringUtils.hasText(invoice.getInvoiceNumber()) && !INVOICE_NUMBER.matcher(invoice.getInvoiceNumber()).matches()) {
+            errors.add(new ValidationError("invoiceNumber", "发票号码必须是8位或20位数字"));
+        }
+    }
 
-        // 2. 验证发票号码格式（8位数字）
-        if (invoiceNumber != null && !invoiceNumber.matches("\\d{8}")) {
-            errors.add(new ValidationError("invoiceNumber", "发票号码必须是8位数字"));
+    /**
+     * 购销双方的纳税人识别号格式，个人购买方可以没有识别号
+     */
+    private static void checkParties(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        checkTaxId("seller.taxId", invoice.getSeller(), errors);
+        checkTaxId("buyer.taxId", invoice.getBuyer(), errors);
+    }
+
+    private static void checkTaxId(String field, PartyInfo party, List<ValidationError> errors) {
+        if (party != null && StringUtils.hasText(party.taxId()) && !TAX_ID.matcher(party.taxId()).matches()) {
+            errors.add(new ValidationError(field, "纳税人识别号必须是15~20位数字或大写字母"));
         }
+    }
 
-        // 3. 验证日期格式
-        if (issueDate != null) {
-            try {
-                LocalDate.parse(issueDate);
-            } catch (Exception e) {
-                errors.add(new ValidationError("issueDate", "开票日期格式错误"));
+    /**
+     * 开票日期不能晚于当前日期
+     */
+    private static void checkIssueDate(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        if (invoice.getIssueDate() != null && invoice.getIssueDate().isAfter(LocalDate.now())) {
+            errors.add(new ValidationError("issueDate", "开票日期不能晚于当前日期"));
+        }
+    }
+
+    /**
+     * 不含税金额 + 税额 = 价税合计
+     */
+    private static void checkTotal(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        BigDecimal amountWithoutTax = invoice.getAmountWithoutTax(), taxAmount = invoice.getTaxAmount(), totalAmount = invoice.getTotalAmount();
+        if (amountWithoutTax != null && taxAmount != null && totalAmount != null
+                && !approxEquals(totalAmount, amountWithoutTax.add(taxAmount), AMOUNT_TOLERANCE)) {
+            errors.add(new ValidationError("amounts",
+                    String.format("金额计算不一致: 不含税(%.2f) + 税额(%.2f) ≠ 合计(%.2f)",
+                            amountWithoutTax, taxAmount, totalAmount)));
+        }
+    }
+
+    /**
+     * 税额 = 不含税金额 × 税率；税额按商品行分别四舍五入，每行允许1分的误差
+     * <p>
+     * 商品行的税率不同时（如13%的货物与6%的服务开在同一张发票上），发票上识别出的税率只是其中一种，改为按各行的金额与税率计算税额
+     */
+    private static void checkTaxRate(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        if (invoice.getAmountWithoutTax() == null || invoice.getTaxAmount() == null) {
+            return;
+        }
+        BigDecimal tolerance = AMOUNT_TOLERANCE.multiply(BigDecimal.valueOf(Math.max(1, itemSize(invoice))));
+        List<InvoiceItem> items = invoice instanceof InvoiceInfo info && info.getItems() != null ? info.getItems() : List.of();
+        if (hasMixedRates(items)) {
+            BigDecimal expected = itemTax(items);
+            if (expected != null && !approxEquals(invoice.getTaxAmount(), expected, tolerance)) {
+                errors.add(new ValidationError("taxRate",
+                        String.format("税率不一致: 按商品行税率计算的税额(%.2f) ≠ 税额(%.2f)", expected, invoice.getTaxAmount())));
             }
+            return;
         }
 
-        // 4. 验证金额关系
-        if (amountWithoutTax != null && taxAmount != null && totalAmount != null) {
-            BigDecimal calculatedTotal = amountWithoutTax.add(taxAmount);
-            BigDecimal diff = totalAmount.subtract(calculatedTotal).abs();
+        BigDecimal rate = normalizeRate(invoice.getTaxRate());
+        if (rate == null) {
+            return;
+        }
+        BigDecimal expected = invoice.getAmountWithoutTax().multiply(rate);
+        if (!approxEquals(invoice.getTaxAmount(), expected, tolerance)) {
+            errors.add(new ValidationError("taxRate",
+                    String.format("税率不一致: 不含税(%.2f) × 税率(%s) = %.2f ≠ 税额(%.2f)",
+                            invoice.getAmountWithoutTax(), rate.stripTrailingZeros().toPlainString(), expected, invoice.getTaxAmount())));
+        }
+    }
 
-            if (diff.compareTo(new BigDecimal("0.01")) > 0) {
-                errors.add(new ValidationError("amounts",
-                        String.format("金额计算不一致: 不含税(%.2f) + 税额(%.2f) ≠ 合计(%.2f)",
-                                amountWithoutTax, taxAmount, totalAmount)));
+    /**
+     * 商品行中是否存在不同的税率
+     */
+    private static boolean hasMixedRates(List<InvoiceItem> items) {
+        BigDecimal first = null;
+        for (InvoiceItem item : items) {
+            BigDecimal rate = normalizeRate(item.taxRate());
+            if (rate == null) {
+                continue;
+            }
+            if (first == null) {
+                first = rate;
+            } else if (first.compareTo(rate) != 0) {
+                return true;
             }
         }
+        return false;
+    }
 
-        // 5. 验证纳税人识别号（15-20位）
-        // 这里可以添加更复杂的验证逻辑
+    /**
+     * 按各行的金额与税率计算的税额合计，明细不完整时返回null
+     */
+    private static BigDecimal itemTax(List<InvoiceItem> items) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (InvoiceItem item : items) {
+            BigDecimal rate = normalizeRate(item.taxRate());
+            if (rate == null || item.amount() == null) {
+                return null;
+            }
+            sum = sum.add(item.amount().multiply(rate));
+        }
+        return sum;
+    }
+
+    /**
+     * 商品明细：每行的金额、税额与价税合计，以及所有行的合计与发票金额一致
+     */
+    private static void checkItems(BaseInvoiceInfo invoice, List<ValidationError> errors) {
+        if (!(invoice instanceof InvoiceInfo info) || CollectionUtils.isEmpty(info.getItems())) {
+            return;
+        }
+        List<InvoiceItem> items = info.getItems();
+        if (info.getItemCount() != null && info.getItemCount() != items.size()) {
+            errors.add(new ValidationError("items",
+                    String.format("商品行数不一致: 识别出 %d 行，明细 %d 行", info.getItemCount(), items.size())));
+        }
 
-        result.setErrors(errors);
-        result.setValid(errors.isEmpty());
-        result.setValidationTime(LocalDateTime.now());
+        for (int i = 0; i < items.size(); i++) {
+            InvoiceItem item = items.get(i);
+            String field = "items[" + i + "]";
+            if (item.quantity() != null && item.unitPrice() != null && item.amount() != null
+                    && !approxEquals(item.amount(), item.quantity().multiply(item.unitPrice()), AMOUNT_TOLERANCE)) {
+                errors.add(new ValidationError(field + ".amount",
+                        String.format("%s 金额不一致: 数量(%s) × 单价(%s) ≠ 金额(%.2f)",
+                                item.itemName(), item.quantity().toPlainString(), item.unitPrice().toPlainString(), item.amount())));
+            }
+            BigDecimal rate = normalizeRate(item.taxRate());
+            if (rate != null && item.amount() != null && item.taxAmount() != null
+                    && !approxEquals(item.taxAmount(), item.amount().multiply(rate), AMOUNT_TOLERANCE)) {
+                errors.add(new ValidationError(field + ".taxAmount",
+                        String.format("%s 税额不一致: 金额(%.2f) × 税率(%s) ≠ 税额(%.2f)",
+                                item.itemName(), item.amount(), rate.stripTrailingZeros().toPlainString(), item.taxAmount())));
+            }
+        }
 
-        return result;
+        BigDecimal tolerance = AMOUNT_TOLERANCE.multiply(BigDecimal.valueOf(items.size()));
+        checkItemSum("amountWithoutTax", "金额", items, InvoiceItem::amount, invoice.getAmountWithoutTax(), tolerance, errors);
+        checkItemSum("taxAmount", "税额", items, InvoiceItem::taxAmount, invoice.getTaxAmount(), tolerance, errors);
+    }
+
+    private static void checkItemSum(String field, String name, List<InvoiceItem> items, Function<InvoiceItem, BigDecimal> getter,
+                                     BigDecimal expected, BigDecimal tolerance, List<ValidationError> errors) {
+        if (expected == null) {
+            return;
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        for (InvoiceItem item : items) {
+            BigDecimal value = getter.apply(item);
+            if (value == null) {
+                // 明细不完整，无法校验合计
+                return;
+            }
+            sum = sum.add(value);
+        }
+        if (!approxEquals(sum, expected, tolerance)) {
+            errors.add(new ValidationError(field,
+                    String.format("商品明细%s合计(%.2f) ≠ 发票%s(%.2f)", name, sum, name, expected)));
+        }
+    }
+
+    private static int itemSize(BaseInvoiceInfo invoice) {
+        return invoice instanceof InvoiceInfo info && info.getItems() != null ? info.getItems().size() : 0;
+    }
+
+    /**
+     * 税率统一为小数形式，兼容大模型返回 13 或 13% 对应的数值；
+     * 小数形式的税率不会达到1（即100%），大于等于1的都按百分数处理，返回 1 表示的是1%
+     */
+    static BigDecimal normalizeRate(BigDecimal rate) {
+        if (rate == null) {
+            return null;
+        }
+        return rate.compareTo(BigDecimal.ONE) >= 0 ? rate.divide(HUNDRED) : rate;
+    }
+
+    private static boolean approxEquals(BigDecimal actual, BigDecimal expected, BigDecimal tolerance) {
+        return actual.subtract(expected).abs().compareTo(tolerance) <= 0;
+    }
+
+    /**
+     * 单条校验规则
+     */
+    @FunctionalInterface
+    public interface ValidationRule {
+        void check(BaseInvoiceInfo invoice, List<ValidationError> errors);
     }
 
     @Data
@@ -74,8 +311,16 @@ public class InvoiceValidationService {
         private boolean valid;
         private List<ValidationError> errors;
         private LocalDateTime validationTime;
+
+        public static ValidationResult of(List<ValidationError> errors) {
+            ValidationResult result = new ValidationResult();
+            result.setErrors(errors);
+            result.setValid(errors.isEmpty());
+            result.setValidationTime(LocalDateTime.now());
+            return result;
+        }
     }
 
     public record ValidationError(String field, String message) {
     }
-}
\ No newline at end of file
+}
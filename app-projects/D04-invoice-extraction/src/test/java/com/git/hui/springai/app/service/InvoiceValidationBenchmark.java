@@ -0,0 +1,115 @@
+package com.git.hui.springai.app.service;
+
+import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.entity.invoice.InvoiceItem;
+import com.git.hui.springai.app.entity.invoice.PartyInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单张发票本地校验的耗时：
+ * <ul>
+ *     <li>stringMatches: 原有的 validateInvoiceFields 写法，每次通过 String#matches 重新编译正则</li>
+ *     <li>toolFields: 预编译正则后的 validateInvoiceFields，只校验基础字段</li>
+ *     <li>validate: 完整的本地校验，包括纳税人识别号、税率以及商品明细合计</li>
+ * </ul>
+ * 直接运行 main 方法即可；作为对比，一次大模型工具调用的往返耗时在秒级
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceValidationBenchmark {
+
+    private static final BigDecimal RATE = new BigDecimal("0.13");
+
+    @Param({"5", "50"})
+    private int items;
+
+    private InvoiceValidationService service;
+
+    private InvoiceInfo invoice;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        service = new InvoiceValidationService();
+
+        List<InvoiceItem> list = new ArrayList<>(items);
+        BigDecimal amount = BigDecimal.ZERO, tax = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            BigDecimal quantity = BigDecimal.valueOf(i + 1);
+            BigDecimal unitPrice = new BigDecimal("12.50");
+            BigDecimal itemAmount = quantity.multiply(unitPrice);
+            BigDecimal itemTax = itemAmount.multiply(RATE).setScale(2, RoundingMode.HALF_UP);
+            list.add(new InvoiceItem("商品" + i, "规格", "个", quantity, unitPrice, itemAmount, RATE, itemTax, itemAmount.add(itemTax)));
+            amount = amount.add(itemAmount);
+            tax = tax.add(itemTax);
+        }
+
+        invoice = new InvoiceInfo();
+        invoice.setInvoiceCode("044031900111");
+        invoice.setInvoiceNumber("12345678");
+        invoice.setIssueDate(LocalDate.of(2026, 1, 15));
+        invoice.setSeller(new PartyInfo("销售方", "91440300MA5XXXXX0A", null, null, null, null));
+        invoice.setBuyer(new PartyInfo("购买方", "91110108MA0XXXXX1B", null, null, null, null));
+        invoice.setAmountWithoutTax(amount);
+        invoice.setTaxAmount(tax);
+        invoice.setTotalAmount(amount.add(tax));
+        invoice.setTaxRate(RATE);
+        invoice.setItemCount(items);
+        invoice.setItems(list);
+
+        if (!service.validate(invoice).isValid()) {
+            throw new IllegalStateException("测试发票未通过校验: " + service.validate(invoice).getErrors());
+        }
+    }
+
+    @Benchmark
+    public boolean stringMatches() {
+        boolean valid = invoice.getInvoiceCode().matches("\\d{12}");
+        valid &= invoice.getInvoiceNumber().matches("\\d{8}");
+        valid &= LocalDate.parse(invoice.getIssueDate().toString()) != null;
+        BigDecimal diff = invoice.getTotalAmount().subtract(invoice.getAmountWithoutTax().add(invoice.getTaxAmount())).abs();
+        return valid && diff.compareTo(new BigDecimal("0.01")) <= 0;
+    }
+
+    @Benchmark
+    public boolean toolFields() {
+        return service.validateInvoice(invoice.getInvoiceCode(), invoice.getInvoiceNumber(), invoice.getIssueDate().toString(),
+                invoice.getAmountWithoutTax(), invoice.getTaxAmount(), invoice.getTotalAmount()).isValid();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return service.validate(invoice).isValid();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InvoiceValidationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
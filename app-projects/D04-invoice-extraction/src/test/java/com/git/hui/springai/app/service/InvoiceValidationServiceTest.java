@@ -0,0 +1,153 @@
+package com.git.hui.springai.app.service;
+
+import com.git.hui.springai.app.entity.invoice.InvoiceInfo;
+import com.git.hui.springai.app.entity.invoice.InvoiceItem;
+import com.git.hui.springai.app.entity.invoice.PartyInfo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 发票字段校验：税率（大模型返回的税率可能是小数形式0.03，也可能是百分数形式3）、混合税率、商品明细合计、编码格式
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class InvoiceValidationServiceTest {
+
+    private final InvoiceValidationService service = new InvoiceValidationService();
+
+    @Test
+    public void testNormalizeRate() {
+        assertEquals(0, new BigDecimal("0.01").compareTo(InvoiceValidationService.normalizeRate(BigDecimal.ONE)));
+        assertEquals(0, new BigDecimal("0.01").compareTo(InvoiceValidationService.normalizeRate(new BigDecimal("1.00"))));
+        assertEquals(0, new BigDecimal("0.01").compareTo(InvoiceValidationService.normalizeRate(new BigDecimal("0.01"))));
+        assertEquals(0, new BigDecimal("0.03").compareTo(InvoiceValidationService.normalizeRate(new BigDecimal("3"))));
+        assertEquals(0, new BigDecimal("0.03").compareTo(InvoiceValidationService.normalizeRate(new BigDecimal("0.03"))));
+        assertEquals(0, new BigDecimal("0.13").compareTo(InvoiceValidationService.normalizeRate(new BigDecimal("13"))));
+        assertEquals(0, BigDecimal.ZERO.compareTo(InvoiceValidationService.normalizeRate(BigDecimal.ZERO)));
+        assertNull(InvoiceValidationService.normalizeRate(null));
+    }
+
+    @Test
+    public void testOnePercentRate() {
+        // 小规模纳税人减按1%征收：100 × 1% = 1
+        for (String rate : List.of("1", "0.01")) {
+            InvoiceInfo invoice = invoice(new BigDecimal(rate), "100.00", "1.00");
+            assertTrue(taxErrors(invoice).isEmpty(), "税率 " + rate + " 应按1%校验通过: " + taxErrors(invoice));
+        }
+        // 按100%计算的税额不能通过校验
+        assertFalse(taxErrors(invoice(BigDecimal.ONE, "100.00", "100.00")).isEmpty());
+    }
+
+    @Test
+    public void testThreePercentRate() {
+        for (String rate : List.of("3", "0.03")) {
+            InvoiceInfo invoice = invoice(new BigDecimal(rate), "200.00", "6.00");
+            assertTrue(taxErrors(invoice).isEmpty(), "税率 " + rate + " 应按3%校验通过: " + taxErrors(invoice));
+        }
+        assertFalse(taxErrors(invoice(new BigDecimal("3"), "200.00", "2.00")).isEmpty());
+    }
+
+    @Test
+    public void testMixedRates() {
+        // 13%的货物与6%的服务开在同一张发票上，发票税率只识别出了13%
+        InvoiceInfo invoice = mixedRateInvoice("19.00");
+        assertTrue(taxErrors(invoice).isEmpty(), "混合税率应按商品行税率校验通过: " + taxErrors(invoice));
+
+        // 税额与按各行税率计算的结果不一致
+        assertEquals(List.of("taxRate", "taxAmount"), fields(mixedRateInvoice("26.00")));
+    }
+
+    @Test
+    public void testItemSum() {
+        InvoiceInfo invoice = invoice(new BigDecimal("13"), "100.00", "13.00");
+        assertTrue(service.validate(invoice).getErrors().isEmpty(), service.validate(invoice).getErrors().toString());
+
+        // 发票金额与商品明细合计不一致
+        invoice.setAmountWithoutTax(new BigDecimal("200.00"));
+        invoice.setTaxAmount(new BigDecimal("26.00"));
+        invoice.setTotalAmount(new BigDecimal("226.00"));
+        assertEquals(List.of("amountWithoutTax", "taxAmount"), fields(invoice));
+    }
+
+    @Test
+    public void testItemCount() {
+        InvoiceInfo invoice = invoice(new BigDecimal("13"), "100.00", "13.00");
+        invoice.setItemCount(1);
+        assertTrue(fields(invoice).isEmpty());
+
+        invoice.setItemCount(2);
+        assertEquals(List.of("items"), fields(invoice));
+    }
+
+    @Test
+    public void testCodePatterns() {
+        InvoiceInfo invoice = invoice(new BigDecimal("13"), "100.00", "13.00");
+        for (String code : List.of("1100191130", "011001900111")) {
+            invoice.setInvoiceCode(code);
+            assertTrue(fields(invoice).isEmpty(), code);
+        }
+        for (String number : List.of("12345678", "24112000000012345678")) {
+            invoice.setInvoiceNumber(number);
+            assertTrue(fields(invoice).isEmpty(), number);
+        }
+        invoice.setSeller(party("91110108MA01ABCD2X"));
+        invoice.setBuyer(party("110108123456789"));
+        assertTrue(fields(invoice).isEmpty());
+
+        invoice.setInvoiceCode("11001911");
+        invoice.setInvoiceNumber("1234567A");
+        invoice.setSeller(party("91110108ma01abcd2x"));
+        invoice.setBuyer(party("1101081234"));
+        assertEquals(List.of("invoiceCode", "invoiceNumber", "seller.taxId", "buyer.taxId"), fields(invoice));
+    }
+
+    private List<String> fields(InvoiceInfo invoice) {
+        return service.validate(invoice).getErrors().stream().map(InvoiceValidationService.ValidationError::field).toList();
+    }
+
+    private static PartyInfo party(String taxId) {
+        return new PartyInfo("测试公司", taxId, null, null, null, null);
+    }
+
+    /**
+     * 货物100元（13%，税额13元） + 服务100元（6%，税额6元），发票税率识别为13%
+     */
+    private static InvoiceInfo mixedRateInvoice(String tax) {
+        InvoiceInfo invoice = new InvoiceInfo();
+        BigDecimal taxAmount = new BigDecimal(tax);
+        invoice.setAmountWithoutTax(new BigDecimal("200.00"));
+        invoice.setTaxAmount(taxAmount);
+        invoice.setTotalAmount(new BigDecimal("200.00").add(taxAmount));
+        invoice.setTaxRate(new BigDecimal("13"));
+        invoice.setItems(List.of(
+                new InvoiceItem("办公设备", null, "台", BigDecimal.ONE, new BigDecimal("100.00"),
+                        new BigDecimal("100.00"), new BigDecimal("13"), new BigDecimal("13.00"), new BigDecimal("113.00")),
+                new InvoiceItem("技术服务费", null, "次", BigDecimal.ONE, new BigDecimal("100.00"),
+                        new BigDecimal("100.00"), new BigDecimal("6"), new BigDecimal("6.00"), new BigDecimal("106.00"))));
+        return invoice;
+    }
+
+    private List<InvoiceValidationService.ValidationError> taxErrors(InvoiceInfo invoice) {
+        return service.validate(invoice).getErrors().stream()
+                .filter(error -> error.field().equals("taxRate") || error.field().endsWith(".taxAmount"))
+                .toList();
+    }
+
+    private static InvoiceInfo invoice(BigDecimal rate, String amount, String tax) {
+        BigDecimal amountWithoutTax = new BigDecimal(amount);
+        BigDecimal taxAmount = new BigDecimal(tax);
+        InvoiceInfo invoice = new InvoiceInfo();
+        invoice.setAmountWithoutTax(amountWithoutTax);
+        invoice.setTaxAmount(taxAmount);
+        invoice.setTotalAmount(amountWithoutTax.add(taxAmount));
+        invoice.setTaxRate(rate);
+        invoice.setItems(List.of(new InvoiceItem("技术服务费", null, "次", BigDecimal.ONE, amountWithoutTax,
+                amountWithoutTax, rate, taxAmount, amountWithoutTax.add(taxAmount))));
+        return invoice;
+    }
+}
@@ -4,9 +4,13 @@ import com.git.hui.springai.app.vectorstore.TextBasedVectorStore;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
 
 /**
  * @author YiHui
@@ -14,9 +18,26 @@ import org.springframework.context.annotation.Bean;
  */
 @SpringBootApplication
 public class D05Application {
+    /**
+     * 基于文本匹配的向量库
+     *
+     * @param segmentDir       二进制持久化段目录，为空时只保存在内存中
+     * @param searchMode       检索方式
+     * @param quantizationMode 量化方式
+     * @return
+     */
     @Bean
-    public VectorStore vectorStore() {
-        return TextBasedVectorStore.builder().build();
+    public VectorStore vectorStore(@Value("${rag.vector-store.segment-dir:}") String segmentDir,
+                                   @Value("${rag.vector-store.search-mode:INVERTED_INDEX}") TextBasedVectorStore.SearchMode searchMode,
+                                   @Value("${rag.vector-store.quantization-mode:SPARSE_HASHED}") TextBasedVectorStore.QuantizationMode quantizationMode) {
+        TextBasedVectorStore vectorStore = TextBasedVectorStore.builder()
+                .searchMode(searchMode)
+                .quantizationMode(quantizationMode)
+                .build();
+        if (StringUtils.hasText(segmentDir)) {
+            vectorStore.openSegment(new File(segmentDir));
+        }
+        return vectorStore;
     }
 
     /**
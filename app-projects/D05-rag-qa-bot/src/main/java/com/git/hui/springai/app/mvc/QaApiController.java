@@ -1,9 +1,14 @@
 package com.git.hui.springai.app.mvc;
 
+import com.git.hui.springai.app.qa.IngestJob;
+import com.git.hui.springai.app.qa.IngestionPipeline;
 import com.git.hui.springai.app.qa.QaBoltService;
+import com.git.hui.springai.app.qa.RetrievalCache;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
@@ -19,9 +24,14 @@ import java.util.Collection;
 @RestController
 @RequestMapping("/api")
 public class QaApiController {
+    private static final String INGEST_JOB_HEADER = "X-Ingest-Job-Id";
+
     @Autowired
     private QaBoltService qaBolt;
 
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
     /**
      * 问答对话 - GET版本（用于非文件上传场景）
      *
@@ -47,11 +57,50 @@ public class QaApiController {
     @PostMapping(path = "/chat/{chatId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<String> qaPost(@PathVariable("chatId") String chatId,
                                @RequestParam("question") String question,
-                               @RequestParam(value = "files", required = false) Collection<MultipartFile> files) {
+                               @RequestParam(value = "files", required = false) Collection<MultipartFile> files,
+                               HttpServletResponse response) {
         if (files == null) {
             files = java.util.Collections.emptyList();
             log.info("no files uploaded");
         }
-        return qaBolt.ask(chatId, question, files);
+        // 附件异步导入，通过响应头返回导入任务id，前端可以据此查询导入进度
+        IngestJob job = qaBolt.ingest(chatId, files);
+        response.setHeader(INGEST_JOB_HEADER, job.getJobId());
+        return qaBolt.ask(chatId, question, job);
+    }
+
+    /**
+     * 只上传附件到知识库，不发起对话
+     *
+     * @param chatId
+     * @param files
+     * @return 导入任务进度
+     */
+    @PostMapping(path = "/ingest/{chatId}")
+    public IngestJob.Status ingest(@PathVariable("chatId") String chatId,
+                                   @RequestParam("files") Collection<MultipartFile> files) {
+        return qaBolt.ingest(chatId, files).toStatus();
+    }
+
+    /**
+     * 查询附件导入进度
+     *
+     * @param jobId 导入任务id
+     * @return
+     */
+    @GetMapping(path = "/ingest/{jobId}")
+    public ResponseEntity<IngestJob.Status> ingestStatus(@PathVariable("jobId") String jobId) {
+        IngestJob job = ingestionPipeline.getJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.toStatus());
+    }
+
+    /**
+     * 检索缓存命中率，用于评估缓存容量
+     *
+     * @return
+     */
+    @GetMapping(path = "/cache/stats")
+    public RetrievalCache.Stats cacheStats() {
+        return qaBolt.cacheStats();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package com.git.hui.springai.app.qa;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 附件导入任务，记录 解析 -> 分片 -> 量化入库 各阶段的进度
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class IngestJob {
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    @Getter
+    private final String jobId;
+    @Getter
+    private final String chatId;
+    @Getter
+    private final int totalFiles;
+    @Getter
+    private final long createTime = System.currentTimeMillis();
+
+    private final AtomicInteger parsedFiles = new AtomicInteger();
+    private final AtomicInteger chunkedFiles = new AtomicInteger();
+    private final AtomicInteger indexedFiles = new AtomicInteger();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    private final AtomicInteger chunks = new AtomicInteger();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    /**
+     * 所有文件处理完成（成功或失败）时完成
+     */
+    @Getter
+    private final CompletableFuture<IngestJob> completion = new CompletableFuture<>();
+
+    public IngestJob(String jobId, String chatId, int totalFiles) {
+        this.jobId = jobId;
+        this.chatId = chatId;
+        this.totalFiles = totalFiles;
+        if (totalFiles == 0) {
+            completion.complete(this);
+        }
+    }
+
+    void parsed() {
+        parsedFiles.incrementAndGet();
+    }
+
+    void chunked(int chunkCount) {
+        chunkedFiles.incrementAndGet();
+        chunks.addAndGet(chunkCount);
+    }
+
+    void indexed() {
+        indexedFiles.incrementAndGet();
+        tryComplete();
+    }
+
+    void failed(String fileName, Throwable e) {
+        failedFiles.incrementAndGet();
+        errors.add(fileName + ": " + e.getMessage());
+        tryComplete();
+    }
+
+    private void tryComplete() {
+        if (indexedFiles.get() + failedFiles.get() >= totalFiles) {
+            completion.complete(this);
+        }
+    }
+
+    public State getState() {
+        if (!completion.isDone()) {
+            return State.RUNNING;
+        }
+        return failedFiles.get() > 0 ? State.FAILED : State.COMPLETED;
+    }
+
+    public Status toStatus() {
+        return new Status(jobId, chatId, getState(), totalFiles, parsedFiles.get(), chunkedFiles.get(), indexedFiles.get(),
+                failedFiles.get(), chunks.get(), List.copyOf(errors));
+    }
+
+    /**
+     * 任务进度
+     */
+    public record Status(String jobId, String chatId, State state, int totalFiles, int parsedFiles, int chunkedFiles,
+                         int indexedFiles, int failedFiles, int chunks, List<String> errors) {
+    }
+}
@@ -0,0 +1,242 @@
+package com.git.hui.springai.app.qa;
+
+import com.git.hui.springai.app.vectorstore.DocumentChunker;
+import com.git.hui.springai.app.vectorstore.TextBasedVectorStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
+import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeType;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.thymeleaf.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 附件异步导入流水线：解析 -> 分片 -> 量化入库
+ * <p>
+ * 每个阶段使用独立的有界线程池，多个文件在解析阶段并行处理；阶段之间通过有界队列衔接，
+ * 下游队列满时由上游线程直接执行下游任务(CallerRunsPolicy)，形成背压，避免大量上传时堆积解析结果
+ * <p>
+ * 入口的解析阶段不能让请求线程执行解析：提交前按文件数申请准入名额，名额不足时整个请求直接拒绝(503)，
+ * 名额数与解析队列长度相同，已准入的任务不会被解析线程池拒绝
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Slf4j
+@Service
+public class IngestionPipeline {
+    /**
+     * 已结束的任务保留时长，过期后不再能查询进度
+     */
+    private static final long FINISHED_JOB_TTL = TimeUnit.MINUTES.toMillis(30);
+
+    private final VectorStore vectorStore;
+
+    private final ThreadPoolExecutor parseExecutor;
+    private final ThreadPoolExecutor chunkExecutor;
+    private final ThreadPoolExecutor indexExecutor;
+
+    /**
+     * 解析阶段的准入名额：已提交、尚未解析完成的文件数
+     */
+    private final Semaphore parsePermits;
+
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionPipeline(VectorStore vectorStore,
+                             @Value("${rag.ingest.parse-threads:0}") int parseThreads,
+                             @Value("${rag.ingest.index-threads:2}") int indexThreads,
+                             @Value("${rag.ingest.queue-size:16}") int queueSize) {
+        this.vectorStore = vectorStore;
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.parseExecutor = newExecutor("ingest-parse", parseThreads > 0 ? parseThreads : cores, queueSize, new ThreadPoolExecutor.AbortPolicy());
+        this.chunkExecutor = newExecutor("ingest-chunk", 1, queueSize, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.indexExecutor = newExecutor("ingest-index", indexThreads, queueSize, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.parsePermits = new Semaphore(queueSize);
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads, int queueSize, RejectedExecutionHandler handler) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, handler);
+    }
+
+    /**
+     * 提交导入任务；上传文件的内容在请求线程中读取（请求结束后临时文件会被清理），解析、分片、量化都在流水线中异步完成
+     *
+     * @param chatId 对话id
+     * @param files  上传的文件
+     * @return 导入任务
+     * @throws ResponseStatusException 待解析的文件过多时返回503，由调用方稍后重试
+     */
+    public IngestJob submit(String chatId, Collection<MultipartFile> files) {
+        evictFinishedJobs();
+        if (!parsePermits.tryAcquire(files.size())) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many files are being ingested, please retry later");
+        }
+        try {
+            return doSubmit(chatId, files);
+        } catch (RuntimeException e) {
+            parsePermits.release(files.size());
+            throw e;
+        }
+    }
+
+    private IngestJob doSubmit(String chatId, Collection<MultipartFile> files) {
+
+        List<UploadedFile> uploads = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            try {
+                String name = StringUtils.isEmpty(file.getOriginalFilename()) ? file.getName() : file.getOriginalFilename();
+                uploads.add(new UploadedFile(name, file.getContentType(), file.getBytes()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        IngestJob job = new IngestJob(UUID.randomUUID().toString().replace("-", ""), chatId, uploads.size());
+        jobs.put(job.getJobId(), job);
+        uploads.forEach(upload -> parseExecutor.execute(() -> {
+            try {
+                parse(job, upload);
+            } finally {
+                parsePermits.release();
+            }
+        }));
+        return job;
+    }
+
+    public IngestJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    private void evictFinishedJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.getCompletion().isDone() && now - job.getCreateTime() > FINISHED_JOB_TTL);
+    }
+
+    /**
+     * 解析阶段：pdf按页解析，文本类使用Tika解析，图片当前不支持直接跳过
+     */
+    private void parse(IngestJob job, UploadedFile file) {
+        try {
+            var data = new ByteArrayResource(file.bytes());
+            // 计算hash值、避免重复保存到向量库中
+            var md5 = calculateHash(job.getChatId(), file.bytes());
+            MimeType mime = MimeType.valueOf(file.contentType());
+            List<Document> documents;
+            if (mime.equalsTypeAndSubtype(MediaType.APPLICATION_PDF)) {
+                PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(data,
+                        PdfDocumentReaderConfig.builder()
+                                .withPageTopMargin(0)
+                                .withPageExtractedTextFormatter(ExtractedTextFormatter.builder()
+                                        .withNumberOfTopTextLinesToDelete(0)
+                                        .build())
+                                .withPagesPerDocument(1)
+                                .build());
+                documents = pdfReader.read();
+                documents.forEach(document -> {
+                    document.getMetadata().put("md5", md5);
+                    if (document.getMetadata().containsKey("file_name") && document.getMetadata().get("file_name") == null) {
+                        document.getMetadata().put("file_name", file.name());
+                    }
+                });
+            } else if ("text".equalsIgnoreCase(mime.getType())) {
+                // Apache Tika: PDF, DOC/DOCX, PPT/PPTX, and HTML
+                documents = new TikaDocumentReader(data).read();
+                documents.forEach(document -> document.getMetadata().put("md5", md5));
+            } else {
+                // image；现在的聊天机器人不支持图片，所以这里不做处理
+                documents = List.of();
+            }
+            job.parsed();
+            chunkExecutor.execute(() -> chunk(job, file, documents));
+        } catch (Exception e) {
+            log.error("parse file {} error", file.name(), e);
+            job.failed(file.name(), e);
+        }
+    }
+
+    /**
+     * 分片阶段
+     */
+    private void chunk(IngestJob job, UploadedFile file, List<Document> documents) {
+        try {
+            List<Document> chunks = DocumentChunker.DEFAULT_CHUNKER.chunkDocuments(documents);
+            job.chunked(chunks.size());
+            indexExecutor.execute(() -> index(job, file, chunks));
+        } catch (Exception e) {
+            log.error("chunk file {} error", file.name(), e);
+            job.failed(file.name(), e);
+        }
+    }
+
+    /**
+     * 量化入库阶段；同一个文件的分片一次性写入，保证按md5去重的判断以文件为粒度
+     */
+    private void index(IngestJob job, UploadedFile file, List<Document> chunks) {
+        try {
+            if (!chunks.isEmpty()) {
+                // 分片阶段已经完成分片，写入时不再重复分片
+                if (vectorStore instanceof TextBasedVectorStore textBasedVectorStore) {
+                    textBasedVectorStore.addChunks(chunks);
+                } else {
+                    vectorStore.add(chunks);
+                }
+            }
+            job.indexed();
+            log.info("ingest file {} finished, chunks = {}", file.name(), chunks.size());
+        } catch (Exception e) {
+            log.error("index file {} error", file.name(), e);
+            job.failed(file.name(), e);
+        }
+    }
+
+    private String calculateHash(String chatId, byte[] bytes) {
+        // 计算hash值、避免重复保存
+        var md5 = DigestUtils.md5DigestAsHex(bytes);
+        if (!StringUtils.isEmpty(chatId)) {
+            md5 = chatId + "_" + md5;
+        }
+        return md5;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdown();
+        chunkExecutor.shutdown();
+        indexExecutor.shutdown();
+    }
+
+    record UploadedFile(String name, String contentType, byte[] bytes) {
+    }
+}
@@ -6,35 +6,22 @@ import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.prompt.PromptTemplate;
-import org.springframework.ai.content.Media;
-import org.springframework.ai.document.Document;
 import org.springframework.ai.model.ModelOptionsUtils;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
 import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
-import org.springframework.ai.reader.ExtractedTextFormatter;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
 import org.springframework.ai.template.st.StTemplateRenderer;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.util.DigestUtils;
-import org.springframework.util.MimeType;
 import org.springframework.web.multipart.MultipartFile;
-import org.thymeleaf.util.StringUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 /**
  * @author YiHui
@@ -46,14 +33,22 @@ public class QaBoltService {
     private final ChatMemory chatMemory;
 
     private final VectorStore vectorStore;
+
+    private final IngestionPipeline ingestionPipeline;
+
+    private final RetrievalCache retrievalCache;
     /**
      * 提示语
      */
     @Value("classpath:/prompts/qa-prompts.pt")
     private Resource boltPrompts;
 
-    public QaBoltService(ChatClient.Builder builder, VectorStore vectorStore, ChatMemory chatMemory) {
-        this.vectorStore = vectorStore;
+    public QaBoltService(ChatClient.Builder builder, VectorStore vectorStore, ChatMemory chatMemory,
+                         IngestionPipeline ingestionPipeline, RetrievalCache retrievalCache) {
+        // 检索走缓存，相同的问题短时间内重复提问时不再重复检索
+        this.vectorStore = retrievalCache.caching(vectorStore);
+        this.ingestionPipeline = ingestionPipeline;
+        this.retrievalCache = retrievalCache;
         this.chatMemory = chatMemory;
         this.chatClient = builder.defaultAdvisors(
                 // 记录日志
@@ -63,7 +58,8 @@ public class QaBoltService {
                 // RAG https://docs.spring.io/spring-ai/reference/api/retrieval-augmented-generation.html#_pre_retrieval
                 RetrievalAugmentationAdvisor.builder()
                         .queryTransformers(
-                                RewriteQueryTransformer.builder().chatClientBuilder(builder.build().mutate()).build()
+                                // 问题改写需要额外调用一次大模型，改写结果同样缓存
+                                retrievalCache.rewriting(RewriteQueryTransformer.builder().chatClientBuilder(builder.build().mutate()).build())
                         )
                         .queryAugmenter(
                                 ContextualQueryAugmenter.builder().allowEmptyContext(true).build()
@@ -71,7 +67,7 @@ public class QaBoltService {
                         .documentRetriever(
                                 VectorStoreDocumentRetriever.builder()
                                         .similarityThreshold(0.50)
-                                        .vectorStore(vectorStore)
+                                        .vectorStore(this.vectorStore)
                                         .build()
                         )
                         .build()
@@ -87,9 +83,34 @@ public class QaBoltService {
      * @return
      */
     public Flux<String> ask(String chatId, String question, Collection<MultipartFile> files) {
-        // 将附件保存到向量库
-        processFiles(chatId, files);
+        return ask(chatId, question, ingest(chatId, files));
+    }
+
+    /**
+     * 将附件提交到异步导入流水线，解析、分片、量化入库都不占用请求线程
+     *
+     * @param chatId 对话id
+     * @param files  用户上传的文件
+     * @return 导入任务，可以通过 /api/ingest/{jobId} 查询进度
+     */
+    public IngestJob ingest(String chatId, Collection<MultipartFile> files) {
+        return ingestionPipeline.submit(chatId, files);
+    }
+
+    /**
+     * 问答；请求线程立即返回，附件导入完成后再发起检索增强的对话，保证本次上传的附件可以被检索到
+     *
+     * @param chatId    对话id，用于存储上下文信息
+     * @param question  问题
+     * @param ingestJob 附件导入任务
+     * @return
+     */
+    public Flux<String> ask(String chatId, String question, IngestJob ingestJob) {
+        return Mono.fromFuture(ingestJob.getCompletion())
+                .flatMapMany(job -> doAsk(chatId, question));
+    }
 
+    private Flux<String> doAsk(String chatId, String question) {
         // 自定义的提示词模板，替换默认的检索参考资料的提示词模板
         // 其中 <query> 对应的是用户的提问 question
         // <question_answer_context> 对应的是增强检索的document，即检索到的参考资料
@@ -124,71 +145,10 @@ public class QaBoltService {
         return requestSpec.stream().content().map(s -> s.replaceAll("\n", "<br/>"));
     }
 
-    private static final String ATTACHMENT_TEMPLATE =
-            """
-                    <attachment filename="%s">
-                            %s
-                    </attachment>
-                    """;
-
-    private ProceedInfo processFiles(String chatId, Collection<MultipartFile> files) {
-        StringBuilder context = new StringBuilder("\n\n");
-        List<Media> mediaList = new ArrayList<>();
-        files.forEach(file -> {
-            try {
-                var data = new ByteArrayResource(file.getBytes());
-                // 计算hash值、避免重复保存到向量库中
-                var md5 = calculateHash(chatId, file.getBytes());
-                MimeType mime = MimeType.valueOf(file.getContentType());
-                if (mime.equalsTypeAndSubtype(MediaType.APPLICATION_PDF)) {
-                    // pdf
-                    PagePdfDocumentReader pdfReader = new PagePdfDocumentReader(data,
-                            PdfDocumentReaderConfig.builder()
-                                    .withPageTopMargin(0)
-                                    .withPageExtractedTextFormatter(ExtractedTextFormatter.builder()
-                                            .withNumberOfTopTextLinesToDelete(0)
-                                            .build())
-                                    .withPagesPerDocument(1)
-                                    .build());
-                    List<Document> documents = pdfReader.read();
-                    documents.forEach(document -> {
-                        document.getMetadata().put("md5", md5);
-                        if (document.getMetadata().containsKey("file_name") && document.getMetadata().get("file_name") == null) {
-                            document.getMetadata().put("file_name", file.getName());
-                        }
-                    });
-                    vectorStore.add(documents);
-
-                    var content = String.join("\n", documents.stream().map(Document::getText).toList());
-                    context.append(String.format(ATTACHMENT_TEMPLATE, file.getName(), content));
-                } else if ("text".equalsIgnoreCase(mime.getType())) {
-                    // Apache Tika: PDF, DOC/DOCX, PPT/PPTX, and HTML （所以上面的pdf其实也可以用下面这个来实现）
-                    List<Document> documents = new TikaDocumentReader(data).read();
-                    documents.forEach(document -> document.getMetadata().put("md5", md5));
-                    vectorStore.add(documents);
-
-                    var content = String.join("\n", documents.stream().map(Document::getText).toList());
-                    context.append(String.format(ATTACHMENT_TEMPLATE, file.getName(), content));
-                } else if ("image".equalsIgnoreCase(mime.getType())) {
-                    // image；现在的聊天机器人不支持图片，所以这里不做处理
-                    mediaList.add(new Media(mime, data));
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-        return new ProceedInfo(context.toString(), mediaList);
-    }
-
-    private String calculateHash(String chatId, byte[] bytes) {
-        // 计算hash值、避免重复保存
-        var md5 = DigestUtils.md5DigestAsHex(bytes);
-        if (!StringUtils.isEmpty(chatId)) {
-            md5 = chatId + "_" + md5;
-        }
-        return md5;
-    }
-
-    record ProceedInfo(String content, List<Media> mediaList) {
+    /**
+     * 检索缓存的命中情况
+     */
+    public RetrievalCache.Stats cacheStats() {
+        return retrievalCache.stats();
     }
 }
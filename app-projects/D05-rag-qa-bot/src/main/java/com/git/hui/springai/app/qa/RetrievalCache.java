@@ -0,0 +1,279 @@
+package com.git.hui.springai.app.qa;
+
+import com.git.hui.springai.app.vectorstore.TextBasedVectorStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 热点问题的检索缓存
+ * <p>
+ * 缓存两类结果，均按 规范化后的问题 作为key：
+ * <ul>
+ *     <li>问题改写：RewriteQueryTransformer 每次都要额外调用一次大模型，改写结果只与问题本身有关</li>
+ *     <li>检索结果：key 中还包含过滤条件、topK、相似度阈值；向量库新增/删除文档后全部失效</li>
+ * </ul>
+ * 两类缓存都按容量(LRU)与过期时间淘汰，命中率可以通过 /api/cache/stats 查看，存在 MeterRegistry 时同时注册为监控指标
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Component
+public class RetrievalCache {
+
+    private final Region<String> rewrites;
+
+    private final Region<List<Document>> documents;
+
+    /**
+     * 向量库的版本号，文档变更时递增；检索期间发生变更的结果不写入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public RetrievalCache(VectorStore vectorStore,
+                          ObjectProvider<MeterRegistry> meterRegistry,
+                          @Value("${rag.retrieval-cache.max-size:1000}") int maxSize,
+                          @Value("${rag.retrieval-cache.ttl:10m}") Duration ttl) {
+        this.rewrites = new Region<>("rewrite", maxSize, ttl.toMillis());
+        this.documents = new Region<>("documents", maxSize, ttl.toMillis());
+        if (vectorStore instanceof TextBasedVectorStore textBasedVectorStore) {
+            // 导入流水线直接写入向量库，通过监听器感知文档变更
+            textBasedVectorStore.addChangeListener(this::invalidate);
+        }
+        meterRegistry.ifAvailable(registry -> {
+            rewrites.bindTo(registry);
+            documents.bindTo(registry);
+        });
+    }
+
+    /**
+     * 带缓存的问题改写
+     *
+     * @param delegate 实际的改写实现，如 RewriteQueryTransformer
+     * @return 先查缓存的改写器
+     */
+    public QueryTransformer rewriting(QueryTransformer delegate) {
+        return query -> {
+            String text = rewrites.get(normalize(query.text()), () -> delegate.transform(query).text(), () -> true);
+            return query.mutate().text(text).build();
+        };
+    }
+
+    /**
+     * 带缓存的向量库；检索走缓存，写入直接转发给原向量库并使缓存失效
+     *
+     * @param delegate 原向量库
+     * @return 包装后的向量库
+     */
+    public VectorStore caching(VectorStore delegate) {
+        return new CachingVectorStore(delegate);
+    }
+
+    /**
+     * 向量库中的文档发生变化，清空检索结果缓存；问题改写与文档无关，不受影响
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        documents.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(rewrites.stats(), documents.stats());
+    }
+
+    private List<Document> search(VectorStore delegate, SearchRequest request) {
+        String key = normalize(request.getQuery()) + "|" + Optional.ofNullable(request.getFilterExpression()).map(Filter.Expression::toString).orElse("")
+                + "|" + request.getTopK() + "|" + request.getSimilarityThreshold();
+        long current = generation.get();
+        return documents.get(key, () -> List.copyOf(delegate.similaritySearch(request)), () -> generation.get() == current);
+    }
+
+    /**
+     * 问题规范化：去掉首尾空白与结尾的标点，合并连续空白，英文统一小写
+     */
+    static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(query.length());
+        boolean space = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = builder.length() > 0;
+                continue;
+            }
+            if (space) {
+                builder.append(' ');
+                space = false;
+            }
+            builder.append(Character.toLowerCase(c));
+        }
+        int end = builder.length();
+        while (end > 0 && "?？。.!！~～".indexOf(builder.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        builder.setLength(end);
+        return builder.toString();
+    }
+
+    /**
+     * 缓存区：访问顺序的LinkedHashMap实现LRU，条目带写入时间实现过期
+     */
+    private static class Region<V> {
+        private final String name;
+        private final int maxSize;
+        private final long ttlMillis;
+        private final Map<String, Entry<V>> entries;
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Region(String name, int maxSize, long ttlMillis) {
+            this.name = name;
+            this.maxSize = maxSize;
+            this.ttlMillis = ttlMillis;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                    if (size() > Region.this.maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * 查询缓存，未命中时加载；加载过程不持有锁，同一个key并发未命中时可能重复加载
+         *
+         * @param key      缓存key
+         * @param loader   未命中时的加载逻辑
+         * @param storable 加载完成后判断结果是否可以写入缓存
+         */
+        V get(String key, Supplier<V> loader, BooleanSupplier storable) {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                Entry<V> entry = entries.get(key);
+                if (entry != null) {
+                    if (now - entry.createTime() <= ttlMillis) {
+                        hits.increment();
+                        return entry.value();
+                    }
+                    entries.remove(key);
+                    evictions.increment();
+                }
+            }
+            misses.increment();
+            V value = loader.get();
+            if (value != null) {
+                synchronized (this) {
+                    // 与clear使用同一把锁，失效之后不会再写入失效前加载的结果
+                    if (storable.getAsBoolean()) {
+                        entries.put(key, new Entry<>(value, now));
+                    }
+                }
+            }
+            return value;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        RegionStats stats() {
+            long hit = hits.sum(), miss = misses.sum();
+            return new RegionStats(size(), hit, miss, evictions.sum(), hit + miss == 0 ? 0 : (double) hit / (hit + miss));
+        }
+
+        void bindTo(MeterRegistry registry) {
+            FunctionCounter.builder("rag.retrieval.cache.hits", hits, LongAdder::sum).tag("cache", name).register(registry);
+            FunctionCounter.builder("rag.retrieval.cache.misses", misses, LongAdder::sum).tag("cache", name).register(registry);
+            FunctionCounter.builder("rag.retrieval.cache.evictions", evictions, LongAdder::sum).tag("cache", name).register(registry);
+            Gauge.builder("rag.retrieval.cache.size", this, Region::size).tag("cache", name).register(registry);
+        }
+    }
+
+    private record Entry<V>(V value, long createTime) {
+    }
+
+    /**
+     * 单个缓存区的统计
+     */
+    public record RegionStats(int size, long hits, long misses, long evictions, double hitRate) {
+    }
+
+    /**
+     * 缓存统计
+     */
+    public record Stats(RegionStats rewrite, RegionStats documents) {
+    }
+
+    /**
+     * 检索走缓存的向量库包装
+     */
+    private class CachingVectorStore implements VectorStore {
+        private final VectorStore delegate;
+
+        CachingVectorStore(VectorStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void add(List<Document> documents) {
+            delegate.add(documents);
+            invalidate();
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            delegate.delete(idList);
+            invalidate();
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+            delegate.delete(filterExpression);
+            invalidate();
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return search(delegate, request);
+        }
+
+        @Override
+        public <T> Optional<T> getNativeClient() {
+            return delegate.getNativeClient();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 内容去重登记表
+ * <p>
+ * 记录已导入文件的hash（文档元数据中的md5）以及每个分片文本的hash：
+ * <ul>
+ *     <li>文件级：重复上传的文件直接跳过，不再分片与量化</li>
+ *     <li>分片级：同一个文件中内容完全相同的分片（如每页重复的页眉、声明）只保存一份；分片hash以文件hash为范围，
+ *     不同文件之间即使有相同的分片也各自保存，保证按 md5、file_name 过滤时每个文件的分片都能查到，删除某个文件的分片也不会影响其他文件</li>
+ * </ul>
+ * 查询先经过布隆过滤器，绝大多数未导入过的内容无需访问hash集合；hash集合保证没有误判。
+ * 绑定持久化段之后，新增/删除的记录以追加日志的形式写入段目录下的 dedup.log，重启时直接加载，无需解码全部文档
+ */
+public class DedupRegistry implements Closeable {
+
+    private static final String FILE_PREFIX = "F ";
+    private static final String CHUNK_PREFIX = "C ";
+    private static final String REMOVE_CHUNK_PREFIX = "-C ";
+
+    private final BloomFilter bloomFilter = new BloomFilter(1 << 23, 5);
+
+    private final Set<String> fileHashes = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> chunkHashes = ConcurrentHashMap.newKeySet();
+
+    private Writer log;
+
+    /**
+     * 分片文本的hash
+     *
+     * @param fileHash 分片所属文件的hash（文档元数据中的md5），没有时所有未标记文件的分片共用一个范围
+     * @param text     分片文本
+     */
+    public static String chunkHash(String fileHash, String text) {
+        String scope = fileHash == null ? "" : fileHash;
+        return DigestUtils.md5DigestAsHex((scope + '\n' + text.trim()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean containsFile(String hash) {
+        return hash != null && bloomFilter.mightContain(FILE_PREFIX + hash) && fileHashes.contains(hash);
+    }
+
+    public void addFile(String hash) {
+        if (hash != null && fileHashes.add(hash)) {
+            bloomFilter.put(FILE_PREFIX + hash);
+            append(FILE_PREFIX + hash);
+        }
+    }
+
+    public boolean containsChunk(String hash) {
+        return bloomFilter.mightContain(CHUNK_PREFIX + hash) && chunkHashes.contains(hash);
+    }
+
+    /**
+     * 登记分片
+     *
+     * @return 分片此前未登记过时返回true
+     */
+    public boolean addChunk(String hash) {
+        if (containsChunk(hash) || !chunkHashes.add(hash)) {
+            return false;
+        }
+        bloomFilter.put(CHUNK_PREFIX + hash);
+        append(CHUNK_PREFIX + hash);
+        return true;
+    }
+
+    /**
+     * 分片被删除后允许重新导入；布隆过滤器不支持删除，由hash集合兜底
+     */
+    public void removeChunk(String hash) {
+        if (chunkHashes.remove(hash)) {
+            append(REMOVE_CHUNK_PREFIX + hash);
+        }
+    }
+
+    public void clear() {
+        fileHashes.clear();
+        chunkHashes.clear();
+        bloomFilter.clear();
+    }
+
+    /**
+     * 绑定追加日志：加载日志中已有的记录，并将当前内存中、日志里还没有的记录补写进去
+     *
+     * @param logFile 日志文件
+     */
+    public synchronized void attach(File logFile) {
+        Set<String> pendingFiles = new HashSet<>(fileHashes);
+        Set<String> pendingChunks = new HashSet<>(chunkHashes);
+        try {
+            if (logFile.exists()) {
+                try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        replay(line, pendingFiles, pendingChunks);
+                    }
+                }
+            }
+            this.log = Files.newBufferedWriter(logFile.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            pendingFiles.forEach(hash -> append(FILE_PREFIX + hash));
+            pendingChunks.forEach(hash -> append(CHUNK_PREFIX + hash));
+            this.log.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to attach dedup log: " + logFile, e);
+        }
+    }
+
+    private void replay(String line, Set<String> pendingFiles, Set<String> pendingChunks) {
+        if (line.startsWith(FILE_PREFIX)) {
+            String hash = line.substring(FILE_PREFIX.length());
+            fileHashes.add(hash);
+            bloomFilter.put(FILE_PREFIX + hash);
+            pendingFiles.remove(hash);
+        } else if (line.startsWith(CHUNK_PREFIX)) {
+            String hash = line.substring(CHUNK_PREFIX.length());
+            chunkHashes.add(hash);
+            bloomFilter.put(CHUNK_PREFIX + hash);
+            pendingChunks.remove(hash);
+        } else if (line.startsWith(REMOVE_CHUNK_PREFIX)) {
+            chunkHashes.remove(line.substring(REMOVE_CHUNK_PREFIX.length()));
+        }
+    }
+
+    private synchronized void append(String line) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.write(line);
+            log.write('\n');
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write dedup log", e);
+        }
+    }
+
+    /**
+     * 刷新追加日志，每批文档写入完成后调用
+     */
+    public synchronized void flush() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to flush dedup log", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * 线程安全的布隆过滤器，使用double hashing生成k个槽位
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final int size;
+        private final int hashes;
+
+        BloomFilter(int size, int hashes) {
+            this.bits = new AtomicLongArray(size >>> 6);
+            this.size = size;
+            this.hashes = hashes;
+        }
+
+        void put(String value) {
+            long hash = hash64(value);
+            int h1 = (int) hash, h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, size);
+                long mask = 1L << bit;
+                int index = bit >>> 6;
+                long old;
+                while (((old = bits.get(index)) & mask) == 0 && !bits.compareAndSet(index, old, old | mask)) {
+                    // CAS失败时重试
+                }
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash64(value);
+            int h1 = (int) hash, h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(h1 + i * h2, size);
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0);
+            }
+        }
+
+        /**
+         * FNV-1a 64位hash，再做一次murmur3的fmix64扰动
+         */
+        private static long hash64(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb93e53b8ecd3L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
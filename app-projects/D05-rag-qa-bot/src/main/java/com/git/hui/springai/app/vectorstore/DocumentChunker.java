@@ -2,33 +2,76 @@ package com.git.hui.springai.app.vectorstore;
 
 import org.springframework.ai.document.Document;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 文档分块工具类
  * 将长文档分割成较小的块，以便更好地进行向量化和检索
+ * <p>
+ * 分块过程只顺序扫描一遍文本，逐字符识别句子边界（中英文句号、问号、感叹号以及空行），分块按需惰性生成；
+ * 任意时刻只保留当前块与当前句子，因此可以直接对 {@link Reader} 分块，超大的文档也只占用常量内存。
+ * 块大小既可以按字符数计算，也可以按估算的token数计算；扫描按码点进行，扩展区汉字、emoji 等代理对不会被拆开，也只计算一次
+ * <p>
+ * 注意：T01-agentic-skills-simple-design 中的 com.git.hui.springai.app.demo.DocumentChunker 与本类是同一份实现（只有包名不同），修改时需要同步
  */
 public class DocumentChunker {
-    
+
+    /**
+     * 块大小的计量单位
+     */
+    public enum SizeUnit {
+        /**
+         * 字符数
+         */
+        CHARS,
+        /**
+         * 估算的token数：中日韩文字按1个token计，其他字符按4个字符1个token计
+         */
+        TOKENS
+    }
+
+    /**
+     * 估算token数时，每个token拆成4份计算，避免浮点运算
+     */
+    private static final int TOKEN_SCALE = 4;
+
     private final int maxChunkSize;
     private final int overlapSize;
+    private final SizeUnit sizeUnit;
 
     public static DocumentChunker DEFAULT_CHUNKER = new DocumentChunker();
-    
+
     public DocumentChunker() {
         this(500, 50); // 默认值：最大块大小500个字符，重叠50个字符
     }
-    
+
     public DocumentChunker(int maxChunkSize, int overlapSize) {
+        this(maxChunkSize, overlapSize, SizeUnit.CHARS);
+    }
+
+    public DocumentChunker(int maxChunkSize, int overlapSize, SizeUnit sizeUnit) {
         this.maxChunkSize = maxChunkSize;
         this.overlapSize = overlapSize;
+        this.sizeUnit = sizeUnit;
     }
-    
+
     /**
      * 将文档分割成块
-     * 
+     *
      * @param document 输入文档
      * @return 分割后的文档块列表
      */
@@ -37,128 +80,303 @@ public class DocumentChunker {
         if (content == null || content.trim().isEmpty()) {
             return List.of(document);
         }
-        
-        List<String> chunks = splitText(content);
-        List<Document> chunkedDocuments = new ArrayList<>();
-        
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunk = chunks.get(i);
-            String chunkId = document.getId() + "_chunk_" + i;
-            
+
+        List<Document> chunkedDocuments = stream(document).collect(Collectors.toList());
+        chunkedDocuments.forEach(chunkDoc -> chunkDoc.getMetadata().put("total_chunks", chunkedDocuments.size()));
+        return chunkedDocuments;
+    }
+
+    /**
+     * 惰性分块；块的总数在遍历结束前未知，因此流中的块不包含 total_chunks 元数据
+     *
+     * @param document 输入文档
+     * @return 文档块流
+     */
+    public Stream<Document> stream(Document document) {
+        String content = document.getText();
+        if (content == null || content.trim().isEmpty()) {
+            return Stream.of(document);
+        }
+        return toDocuments(document.getId(), document.getMetadata(), split(content));
+    }
+
+    /**
+     * 直接对字符流分块，适用于从大文件中边读边分块的场景；流关闭时同时关闭reader
+     *
+     * @param documentId 原始文档id
+     * @param reader     文本内容
+     * @param metadata   原始文档的元数据，每个块都会保留一份
+     * @return 文档块流
+     */
+    public Stream<Document> stream(String documentId, Reader reader, Map<String, Object> metadata) {
+        return toDocuments(documentId, metadata, split(reader)).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Stream<Document> toDocuments(String documentId, Map<String, Object> metadata, Stream<String> chunks) {
+        AtomicInteger index = new AtomicInteger();
+        return chunks.map(chunk -> {
+            int i = index.getAndIncrement();
             // 创建新的文档块，保留原始文档的元数据
-            Document chunkDoc = new Document(chunkId, chunk, new java.util.HashMap<>(document.getMetadata()));
-            
+            Document chunkDoc = new Document(documentId + "_chunk_" + i, chunk, new HashMap<>(metadata));
             // 添加块相关的元数据
             chunkDoc.getMetadata().put("chunk_index", i);
-            chunkDoc.getMetadata().put("total_chunks", chunks.size());
-            chunkDoc.getMetadata().put("original_document_id", document.getId());
-            
-            chunkedDocuments.add(chunkDoc);
-        }
-        
-        return chunkedDocuments;
+            chunkDoc.getMetadata().put("original_document_id", documentId);
+            return chunkDoc;
+        });
     }
-    
+
     /**
      * 将文本分割成块
-     * 
+     *
      * @param text 输入文本
-     * @return 分割后的文本块列表
+     * @return 分割后的文本块流
      */
-    private List<String> splitText(String text) {
-        List<String> chunks = new ArrayList<>();
-        
-        // 按多种分隔符分割，优先在语义边界处分割（包括中文句号、问号、感叹号等）
-        String[] sentences = text.split("(?<=。)|(?<=！)|(?<=!)|(?<=？)|(?<=\\?)|(?<=\\n\\n)");
-        
-        StringBuilder currentChunk = new StringBuilder();
-        
-        for (String sentence : sentences) {
-            // 跳过空句子
-            if (sentence.trim().isEmpty()) {
-                continue;
+    public Stream<String> split(CharSequence text) {
+        return toStream(new ChunkIterator(text, null));
+    }
+
+    /**
+     * 将字符流分割成块
+     *
+     * @param reader 输入文本
+     * @return 分割后的文本块流
+     */
+    public Stream<String> split(Reader reader) {
+        return toStream(new ChunkIterator(null, reader));
+    }
+
+    private static Stream<String> toStream(Iterator<String> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 单个码点的大小；按token计量时返回的是token数的 {@link #TOKEN_SCALE} 倍
+     */
+    private int cost(int codePoint) {
+        if (sizeUnit == SizeUnit.CHARS) {
+            return 1;
+        }
+        return isCjk(codePoint) ? TOKEN_SCALE : 1;
+    }
+
+    private int limit(int size) {
+        return sizeUnit == SizeUnit.CHARS ? size : size * TOKEN_SCALE;
+    }
+
+    private static boolean isCjk(int c) {
+        return (c >= '\u4e00' && c <= '\u9fff')    // 中日韩统一表意文字
+                || (c >= '\u3400' && c <= '\u4dbf') // 扩展A
+                || (c >= '\u3000' && c <= '\u30ff') // 中文标点、日文假名
+                || (c >= '\uac00' && c <= '\ud7af') // 韩文
+                || (c >= '\uff00' && c <= '\uffef') // 全角字符
+                || (c >= 0x20000 && c <= 0x3ffff);  // 扩展B及之后的汉字（第2、3辅助平面）
+    }
+
+    /**
+     * 句子边界：中英文句号、问号、感叹号，以及连续两个换行（段落）
+     */
+    private static boolean isBoundary(int c, int prev) {
+        return c == '。' || c == '！' || c == '!' || c == '？' || c == '?' || (c == '\n' && prev == '\n');
+    }
+
+    /**
+     * 单遍扫描的分块迭代器
+     */
+    private class ChunkIterator implements Iterator<String> {
+        private final CharSequence text;
+        private final Reader reader;
+        private final char[] buffer;
+        private int position;
+        private int limit;
+        private boolean eof;
+        /**
+         * 高代理项之后读到的不是低代理项时暂存该字符，下次读取时返回
+         */
+        private int pending = -1;
+
+        private final int maxCost = limit(maxChunkSize);
+        private final int overlapCost = limit(overlapSize);
+
+        private final StringBuilder sentence = new StringBuilder();
+        private int sentenceCost;
+        private int prev;
+
+        private StringBuilder chunk = new StringBuilder();
+        private int chunkCost;
+        /**
+         * 当前块中除重叠部分之外是否已有新内容
+         */
+        private boolean fresh;
+
+        private String next;
+
+        ChunkIterator(CharSequence text, Reader reader) {
+            this.text = text;
+            this.reader = reader;
+            this.buffer = reader == null ? null : new char[8192];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = computeNext();
             }
-            
-            // 如果当前块加上新句子不超过最大大小，就添加到当前块
-            if (currentChunk.length() + sentence.length() <= maxChunkSize) {
-                if (currentChunk.length() > 0) {
-                    currentChunk.append(sentence);
-                } else {
-                    currentChunk.append(sentence);
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        private int read() {
+            if (text != null) {
+                return position < text.length() ? text.charAt(position++) : -1;
+            }
+            if (position == limit) {
+                if (eof) {
+                    return -1;
                 }
-            } else {
-                // 如果当前块为空，但是单个句子太长，需要强制分割
-                if (currentChunk.length() == 0) {
-                    List<String> subChunks = forceSplit(sentence, maxChunkSize);
-                    for (int i = 0; i < subChunks.size(); i++) {
-                        String subChunk = subChunks.get(i);
-                        // 如果不是最后一个子块，添加到当前块并保存
-                        if (i < subChunks.size() - 1) {
-                            chunks.add(subChunk);
-                        } else {
-                            currentChunk.append(subChunk);
-                        }
-                    }
-                } else {
-                    // 保存当前块
-                    chunks.add(currentChunk.toString());
-                    // 开始新块，包含重叠部分
-                    currentChunk = new StringBuilder();
-                    
-                    // 添加重叠部分，如果句子长度大于重叠大小，则只取末尾部分
-                    if (sentence.length() > overlapSize) {
-                        String overlap = sentence.substring(Math.max(0, sentence.length() - overlapSize));
-                        currentChunk.append(overlap);
-                        currentChunk.append(sentence);
-                    } else {
-                        currentChunk.append(sentence);
+                try {
+                    limit = reader.read(buffer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                position = 0;
+                if (limit <= 0) {
+                    eof = true;
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        /**
+         * 读取下一个码点，代理对合并为一个码点；不成对的代理项原样返回
+         */
+        private int readCodePoint() {
+            int high = pending >= 0 ? pending : read();
+            pending = -1;
+            if (high < 0 || !Character.isHighSurrogate((char) high)) {
+                return high;
+            }
+            int low = read();
+            if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                return Character.toCodePoint((char) high, (char) low);
+            }
+            pending = low;
+            return high;
+        }
+
+        /**
+         * 读取下一个句子；没有边界的超长句子在达到块大小时强制切断
+         *
+         * @return 读到句子时返回true，句子内容保存在 sentence 中；读完时返回false
+         */
+        private boolean nextSentence() {
+            sentence.setLength(0);
+            sentenceCost = 0;
+            int c;
+            while ((c = readCodePoint()) >= 0) {
+                sentence.appendCodePoint(c);
+                sentenceCost += cost(c);
+                boolean boundary = isBoundary(c, prev);
+                prev = c;
+                if (boundary || sentenceCost >= maxCost) {
+                    return true;
+                }
+            }
+            return sentence.length() > 0;
+        }
+
+        private String computeNext() {
+            while (nextSentence()) {
+                // 跳过空句子
+                if (isBlank(sentence)) {
+                    continue;
+                }
+
+                // 如果当前块加上新句子不超过最大大小，就添加到当前块
+                if (!fresh || chunkCost + sentenceCost <= maxCost) {
+                    if (!fresh && chunkCost + sentenceCost > maxCost) {
+                        // 重叠部分放不下新句子时丢弃重叠部分
+                        chunk.setLength(0);
+                        chunkCost = 0;
                     }
+                    chunk.append(sentence);
+                    chunkCost += sentenceCost;
+                    fresh = true;
+                    continue;
                 }
+
+                // 保存当前块，开始新块，以当前块的末尾作为重叠部分
+                String result = chunk.toString();
+                startChunk(result, Math.min(overlapCost, maxCost - sentenceCost));
+                chunk.append(sentence);
+                chunkCost += sentenceCost;
+                fresh = true;
+                return result;
             }
+
+            // 添加最后一个块
+            if (fresh) {
+                fresh = false;
+                return chunk.toString();
+            }
+            return null;
         }
-        
-        // 添加最后一个块
-        if (currentChunk.length() > 0) {
-            chunks.add(currentChunk.toString());
+
+        private void startChunk(String previous, int overlap) {
+            int start = previous.length();
+            int cost = 0;
+            while (start > 0) {
+                int c = Character.codePointBefore(previous, start);
+                if (cost + cost(c) > overlap) {
+                    break;
+                }
+                cost += cost(c);
+                start -= Character.charCount(c);
+            }
+            chunk = new StringBuilder(Math.max(16, previous.length()));
+            chunk.append(previous, start, previous.length());
+            chunkCost = cost;
         }
-        
-        return chunks;
-    }
-    
-    /**
-     * 强制将长文本分割成指定大小的块
-     * 
-     * @param text 输入文本
-     * @param maxSize 最大块大小
-     * @return 分割后的文本块列表
-     */
-    private List<String> forceSplit(String text, int maxSize) {
-        List<String> chunks = new ArrayList<>();
-        
-        int start = 0;
-        while (start < text.length()) {
-            int end = Math.min(start + maxSize, text.length());
-            String chunk = text.substring(start, end);
-            chunks.add(chunk);
-            start = end;
+
+        private boolean isBlank(CharSequence seq) {
+            for (int i = 0; i < seq.length(); i++) {
+                if (!Character.isWhitespace(seq.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
         }
-        
-        return chunks;
     }
-    
+
     /**
      * 将多个文档分别分割成块
-     * 
+     *
      * @param documents 输入文档列表
      * @return 分割后的文档块列表
      */
     public List<Document> chunkDocuments(List<Document> documents) {
         List<Document> allChunks = new ArrayList<>();
-        
+
         for (Document document : documents) {
             allChunks.addAll(chunkDocument(document));
         }
-        
+
         return allChunks;
     }
-}
\ No newline at end of file
+}
@@ -44,6 +44,29 @@ public class DocumentQuantizer {
         return generateFixedLengthVector(wordFreq, 128);
     }
 
+    /**
+     * 统计文本分词后的词频，供倒排索引、BM25打分等需要保留词语本身的场景使用
+     *
+     * @param text 输入文本
+     * @return 词 -> 词频
+     */
+    public static Map<String, Integer> termFrequency(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return Map.of();
+        }
+        return countWordFrequency(preprocessText(text));
+    }
+
+    /**
+     * 将文本转换为基于特征哈希的稀疏向量，只保留非零的 (termId, weight) 对
+     *
+     * @param text 输入文本
+     * @return 紧凑编码的稀疏向量，见 {@link SparseVector}
+     */
+    public static float[] quantizeSparse(String text) {
+        return SparseVector.of(termFrequency(text));
+    }
+
     /**
      * 将文档转换为数值向量
      *
@@ -214,6 +237,17 @@ public class DocumentQuantizer {
         return dotProduct / (normA * normB);
     }
 
+    /**
+     * 计算两个稀疏向量之间的余弦相似度；稀疏向量生成时已归一化，只需一次稀疏点积
+     *
+     * @param vectorA 紧凑编码的稀疏向量
+     * @param vectorB 紧凑编码的稀疏向量
+     * @return 相似度值 [0, 1]
+     */
+    public static double calculateSparseSimilarity(float[] vectorA, float[] vectorB) {
+        return SparseVector.dot(vectorA, vectorB);
+    }
+
     /**
      * 量化查询文本
      *
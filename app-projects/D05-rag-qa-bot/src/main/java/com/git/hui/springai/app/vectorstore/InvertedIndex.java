@@ -0,0 +1,190 @@
+package com.git.hui.springai.app.vectorstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 基于HanLP分词结果的倒排索引
+ * 维护 词 -> (文档id -> 词频) 的倒排表，查询时只访问与问题存在公共词的文档，并使用BM25打分
+ */
+public class InvertedIndex {
+
+    /**
+     * BM25 词频饱和参数
+     */
+    private static final double K1 = 1.2;
+    /**
+     * BM25 文档长度归一化参数
+     */
+    private static final double B = 0.75;
+
+    /**
+     * 倒排表：词 -> (文档id -> 词频)
+     */
+    private final Map<String, Map<String, Integer>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 正排信息：文档id -> 该文档包含的词，删除文档时用于清理倒排表
+     */
+    private final Map<String, String[]> docTerms = new ConcurrentHashMap<>();
+
+    /**
+     * 文档id -> 文档长度（分词后的词数）
+     */
+    private final Map<String, Integer> docLength = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * 将文档加入索引，已存在的同id文档会先被移除
+     *
+     * @param id   文档id
+     * @param text 文档内容
+     */
+    public void add(String id, String text) {
+        add(id, DocumentQuantizer.termFrequency(text));
+    }
+
+    /**
+     * 将文档加入索引，已存在的同id文档会先被移除
+     *
+     * @param id            文档id
+     * @param termFrequency 文档的词频统计
+     */
+    public void add(String id, Map<String, Integer> termFrequency) {
+        remove(id);
+        if (termFrequency.isEmpty()) {
+            return;
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : termFrequency.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>()).put(id, entry.getValue());
+            length += entry.getValue();
+        }
+        docTerms.put(id, termFrequency.keySet().toArray(String[]::new));
+        docLength.put(id, length);
+        totalLength.addAndGet(length);
+    }
+
+    /**
+     * 从索引中移除文档
+     *
+     * @param id 文档id
+     */
+    public void remove(String id) {
+        String[] terms = docTerms.remove(id);
+        if (terms == null) {
+            return;
+        }
+
+        for (String term : terms) {
+            postings.computeIfPresent(term, (k, docs) -> {
+                docs.remove(id);
+                return docs.isEmpty() ? null : docs;
+            });
+        }
+        Integer length = docLength.remove(id);
+        if (length != null) {
+            totalLength.addAndGet(-length);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        docTerms.clear();
+        docLength.clear();
+        totalLength.set(0);
+    }
+
+    public int size() {
+        return docLength.size();
+    }
+
+    /**
+     * BM25检索
+     * <p>
+     * 只遍历查询词对应的倒排表累加得分，再通过容量为topK的小顶堆保留得分最高的文档，
+     * 返回的得分为 BM25得分 / 查询词idf之和（只统计在库中出现过的查询词），即查询词在一篇平均长度文档中各出现一次时得分为1，
+     * 上限截断为1，以便和余弦相似度一样使用 [0, 1] 区间的相似度阈值
+     *
+     * @param query     查询文本
+     * @param accept    文档过滤条件（元数据过滤等）
+     * @param topK      返回的最大文档数
+     * @param threshold 相似度阈值
+     * @return 按得分从高到低排列的命中结果
+     */
+    public List<Hit> search(String query, Predicate<String> accept, int topK, double threshold) {
+        Map<String, Integer> queryTerms = DocumentQuantizer.termFrequency(query);
+        int docCount = docLength.size();
+        if (queryTerms.isEmpty() || docCount == 0 || topK <= 0) {
+            return List.of();
+        }
+
+        double avgLength = Math.max(1.0, (double) totalLength.get() / docCount);
+        Map<String, Double> scores = new HashMap<>();
+        double idfSum = 0;
+        for (String term : queryTerms.keySet()) {
+            Map<String, Integer> docs = postings.get(term);
+            if (docs == null || docs.isEmpty()) {
+                continue;
+            }
+
+            double idf = Math.log(1 + (docCount - docs.size() + 0.5) / (docs.size() + 0.5));
+            idfSum += idf;
+            for (Map.Entry<String, Integer> entry : docs.entrySet()) {
+                int tf = entry.getValue();
+                int length = docLength.getOrDefault(entry.getKey(), 0);
+                double tfNorm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+                scores.merge(entry.getKey(), idf * tfNorm, Double::sum);
+            }
+        }
+        if (scores.isEmpty()) {
+            return List.of();
+        }
+
+        // 小顶堆按原始BM25得分排序，归一化截断只影响对外暴露的得分
+        PriorityQueue<Map.Entry<String, Double>> heap = new PriorityQueue<>(Math.min(topK, scores.size()) + 1, Map.Entry.comparingByValue());
+        double minScore = threshold * idfSum;
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            if (entry.getValue() < minScore) {
+                continue;
+            }
+            if (heap.size() >= topK && heap.peek().getValue() >= entry.getValue()) {
+                // 堆已满且当前得分不高于堆顶，无需再做过滤判断
+                continue;
+            }
+            if (!accept.test(entry.getKey())) {
+                continue;
+            }
+            heap.offer(entry);
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            Map.Entry<String, Double> entry = heap.poll();
+            result.add(new Hit(entry.getKey(), Math.min(1.0, entry.getValue() / idfSum)));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 检索命中的文档
+     *
+     * @param id    文档id
+     * @param score 归一化后的BM25得分
+     */
+    public record Hit(String id, double score) {
+    }
+}
@@ -0,0 +1,240 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 元数据过滤条件
+ * <p>
+ * 将 {@link Filter.Expression} 一次性编译为普通的Java谓词，不再对每个文档执行 SpEL 的表达式转换、解析与求值；
+ * 编译结果按表达式缓存，相同的过滤条件在多次检索之间复用。
+ * 对于命中二级索引字段的 等值/IN 条件，还可以通过 {@link #candidates(MetadataIndex)} 直接得到候选文档，跳过不匹配的文档
+ */
+public final class MetadataFilter {
+
+    /**
+     * 编译结果缓存的上限，超过后整体清空，避免动态拼接的过滤条件导致缓存无限增长
+     */
+    private static final int MAX_CACHE_SIZE = 256;
+
+    private static final Map<Filter.Expression, MetadataFilter> CACHE = new ConcurrentHashMap<>();
+
+    private static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+    private static final MetadataFilter ACCEPT_ALL = new MetadataFilter(null, metadata -> true);
+
+    private final Filter.Expression expression;
+
+    private final Predicate<Map<String, Object>> predicate;
+
+    private MetadataFilter(Filter.Expression expression, Predicate<Map<String, Object>> predicate) {
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * 获取编译后的过滤条件
+     *
+     * @param expression 过滤表达式，为null时不过滤
+     * @return 编译后的过滤条件
+     */
+    public static MetadataFilter of(Filter.Expression expression) {
+        if (expression == null) {
+            return ACCEPT_ALL;
+        }
+        MetadataFilter filter = CACHE.get(expression);
+        if (filter == null) {
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            filter = CACHE.computeIfAbsent(expression, e -> new MetadataFilter(e, compile(e)));
+        }
+        return filter;
+    }
+
+    public boolean test(Map<String, Object> metadata) {
+        return predicate.test(metadata);
+    }
+
+    /**
+     * 根据二级索引计算满足过滤条件的候选文档
+     *
+     * @param index 元数据二级索引
+     * @return 候选文档id；过滤条件无法通过索引收敛时返回null，表示需要逐个文档判断
+     */
+    public Set<String> candidates(MetadataIndex index) {
+        return expression == null ? null : candidates(expression, index);
+    }
+
+    private static Set<String> candidates(Filter.Expression expression, MetadataIndex index) {
+        switch (expression.type()) {
+            case EQ -> {
+                String key = key(expression.left());
+                return index.isIndexed(key) ? index.ids(key, ((Filter.Value) expression.right()).value()) : null;
+            }
+            case IN -> {
+                String key = key(expression.left());
+                if (!index.isIndexed(key)) {
+                    return null;
+                }
+                Set<String> result = new HashSet<>();
+                for (Object value : values(((Filter.Value) expression.right()).value())) {
+                    result.addAll(index.ids(key, value));
+                }
+                return result;
+            }
+            case AND -> {
+                Set<String> left = candidates(operand(expression.left()), index);
+                Set<String> right = candidates(operand(expression.right()), index);
+                if (left == null || right == null) {
+                    return left == null ? right : left;
+                }
+                Set<String> small = left.size() <= right.size() ? left : right;
+                Set<String> large = small == left ? right : left;
+                Set<String> result = new HashSet<>();
+                for (String id : small) {
+                    if (large.contains(id)) {
+                        result.add(id);
+                    }
+                }
+                return result;
+            }
+            case OR -> {
+                Set<String> left = candidates(operand(expression.left()), index);
+                Set<String> right = candidates(operand(expression.right()), index);
+                if (left == null || right == null) {
+                    return null;
+                }
+                Set<String> result = new HashSet<>(left);
+                result.addAll(right);
+                return result;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 将过滤表达式编译为谓词，语义与 SimpleVectorStore 基于 SpEL 的实现保持一致
+     */
+    static Predicate<Map<String, Object>> compile(Filter.Expression expression) {
+        Filter.ExpressionType type = expression.type();
+        switch (type) {
+            case AND -> {
+                Predicate<Map<String, Object>> left = compile(operand(expression.left()));
+                Predicate<Map<String, Object>> right = compile(operand(expression.right()));
+                return left.and(right);
+            }
+            case OR -> {
+                Predicate<Map<String, Object>> left = compile(operand(expression.left()));
+                Predicate<Map<String, Object>> right = compile(operand(expression.right()));
+                return left.or(right);
+            }
+            case NOT -> {
+                return compile(operand(expression.left())).negate();
+            }
+            case ISNULL -> {
+                String key = key(expression.left());
+                return metadata -> metadata.get(key) == null;
+            }
+            case ISNOTNULL -> {
+                String key = key(expression.left());
+                return metadata -> metadata.get(key) != null;
+            }
+            default -> {
+                // 比较运算：左侧为字段，右侧为值
+                String key = key(expression.left());
+                Object value = ((Filter.Value) expression.right()).value();
+                return switch (type) {
+                    case EQ -> metadata -> valueEquals(metadata.get(key), value);
+                    case NE -> metadata -> !valueEquals(metadata.get(key), value);
+                    case GT -> metadata -> compare(metadata.get(key), value) > 0;
+                    case GTE -> metadata -> compare(metadata.get(key), value) >= 0;
+                    case LT -> metadata -> {
+                        int result = compare(metadata.get(key), value);
+                        return result < 0 && result != INCOMPARABLE;
+                    };
+                    case LTE -> metadata -> {
+                        int result = compare(metadata.get(key), value);
+                        return result <= 0 && result != INCOMPARABLE;
+                    };
+                    case IN -> {
+                        Collection<?> values = values(value);
+                        yield metadata -> contains(values, metadata.get(key));
+                    }
+                    case NIN -> {
+                        Collection<?> values = values(value);
+                        yield metadata -> !contains(values, metadata.get(key));
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported filter expression type: " + type);
+                };
+            }
+        }
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        if (operand instanceof Filter.Expression expression) {
+            return expression;
+        }
+        throw new IllegalArgumentException("Expected filter expression but got: " + operand);
+    }
+
+    /**
+     * 字段名，兼容文本表达式中带引号的写法
+     */
+    private static String key(Filter.Operand operand) {
+        String key = ((Filter.Key) operand).key();
+        if (key.length() >= 2 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\""))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+
+    private static Collection<?> values(Object value) {
+        return value instanceof Collection<?> collection ? collection : Set.of(value);
+    }
+
+    private static boolean contains(Collection<?> values, Object actual) {
+        for (Object value : values) {
+            if (valueEquals(actual, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected);
+    }
+
+    /**
+     * 比较字段值与期望值，无法比较（字段缺失或类型不一致）时返回 INCOMPARABLE，此时所有比较运算都不成立
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return INCOMPARABLE;
+        }
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        if (actual instanceof Comparable a && actual.getClass().isInstance(expected)) {
+            return Integer.signum(a.compareTo(expected));
+        }
+        return INCOMPARABLE;
+    }
+}
@@ -0,0 +1,91 @@
+package com.git.hui.springai.app.vectorstore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 元数据二级哈希索引：字段 -> 字段值 -> 文档id集合
+ * 只对常用于过滤的字段（如 md5、file_name）建立索引，带过滤条件的检索可以直接定位候选文档
+ * <p>
+ * 字段值的相等语义与 {@link MetadataFilter} 保持一致：数值按 double 比较（2024 与 2024.0 相等），其余类型按 equals 比较（数值 2024 与字符串 "2024" 不相等）
+ */
+public class MetadataIndex {
+
+    /**
+     * 字段 -> (字段值 -> 文档id集合)
+     */
+    private final Map<String, Map<Object, Set<String>>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * 文档id -> (字段 -> 字段值)，用于更新、删除文档时清理旧的索引项
+     */
+    private final Map<String, Map<String, Object>> entries = new ConcurrentHashMap<>();
+
+    public MetadataIndex(Set<String> keys) {
+        keys.forEach(key -> indexes.put(key, new ConcurrentHashMap<>()));
+    }
+
+    public boolean isIndexed(String key) {
+        return indexes.containsKey(key);
+    }
+
+    /**
+     * 添加文档的索引项；文档已存在时先清理旧的索引项
+     */
+    public void add(String id, Map<String, Object> metadata) {
+        entries.compute(id, (k, old) -> {
+            unindex(id, old);
+            Map<String, Object> values = new HashMap<>();
+            indexes.forEach((key, index) -> {
+                Object value = indexValue(metadata.get(key));
+                if (value != null) {
+                    index.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet()).add(id);
+                    values.put(key, value);
+                }
+            });
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    public void remove(String id) {
+        entries.computeIfPresent(id, (k, old) -> {
+            unindex(id, old);
+            return null;
+        });
+    }
+
+    private void unindex(String id, Map<String, Object> values) {
+        if (values == null) {
+            return;
+        }
+        values.forEach((key, value) -> indexes.get(key).computeIfPresent(value, (v, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        }));
+    }
+
+    public void clear() {
+        entries.clear();
+        indexes.values().forEach(Map::clear);
+    }
+
+    /**
+     * 字段值等于指定值的文档id
+     */
+    public Set<String> ids(String key, Object value) {
+        Map<Object, Set<String>> values = indexes.get(key);
+        if (values == null || value == null) {
+            return Set.of();
+        }
+        return values.getOrDefault(indexValue(value), Set.of());
+    }
+
+    /**
+     * 数值统一转换为 Double：Double#equals 与 {@link MetadataFilter#valueEquals(Object, Object)} 中的 Double#compare 语义一致
+     */
+    private static Object indexValue(Object value) {
+        return value instanceof Number number ? Double.valueOf(number.doubleValue()) : value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 向量相似度计算内核
+ * <p>
+ * 向量在写入向量库时就归一化为单位向量，查询向量同样只归一化一次，检索时余弦相似度退化为一次点积，
+ * 不再需要 {@link DocumentQuantizer#calculateCosineSimilarity(float[], float[])} 中的数组拷贝与逐元素 Math.pow。
+ * <p>
+ * SIMD实现 VectorizedSimilarityKernel 基于孵化中的向量API，只在 simd profile 下编译（mvn -Psimd），默认构建只有标量实现；
+ * 使用 simd profile 构建、启动参数 -Drag.similarity.simd=true 且同时通过 --add-modules jdk.incubator.vector 引入了向量API时，
+ * 点积使用SIMD实现，否则使用标量实现
+ */
+public final class SimilarityKernel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityKernel.class);
+
+    public static final String SIMD_PROPERTY = "rag.similarity.simd";
+
+    private static final String SIMD_KERNEL_CLASS = "com.git.hui.springai.app.vectorstore.VectorizedSimilarityKernel";
+
+    /**
+     * SIMD点积实现，未开启或不可用时为null
+     */
+    private static final DotProduct SIMD_KERNEL = detectSimd();
+
+    private SimilarityKernel() {
+    }
+
+    private static DotProduct detectSimd() {
+        if (!Boolean.getBoolean(SIMD_PROPERTY)) {
+            return null;
+        }
+        try {
+            DotProduct kernel = (DotProduct) Class.forName(SIMD_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+            kernel.dot(new float[]{1f}, new float[]{1f});
+            logger.info("SIMD similarity kernel enabled, species = {}", kernel);
+            return kernel;
+        } catch (Throwable e) {
+            // 未使用 simd profile 构建时抛出 ClassNotFoundException，未添加 --add-modules jdk.incubator.vector 时抛出 NoClassDefFoundError
+            logger.warn("SIMD similarity kernel unavailable, fallback to scalar implementation: {}", e.toString());
+            return null;
+        }
+    }
+
+    public static boolean isSimdEnabled() {
+        return SIMD_KERNEL != null;
+    }
+
+    /**
+     * 原地归一化为单位向量，零向量保持不变
+     *
+     * @param vector 输入向量
+     * @return 归一化后的同一个数组
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0 || Math.abs(norm - 1.0) < 1e-6) {
+            return vector;
+        }
+
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    /**
+     * 单位向量的余弦相似度，即点积；长度不一致时只计算公共部分
+     *
+     * @param a 单位向量
+     * @param b 单位向量
+     * @return 相似度
+     */
+    public static double dot(float[] a, float[] b) {
+        if (a == null || b == null) {
+            return 0.0;
+        }
+        return SIMD_KERNEL != null ? SIMD_KERNEL.dot(a, b) : scalarDot(a, b);
+    }
+
+    /**
+     * 标量点积，4路展开以减少循环依赖，便于JIT自动向量化
+     */
+    static double scalarDot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = length & ~3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 点积实现，SIMD实现单独编译，通过该接口与默认构建解耦
+     */
+    interface DotProduct {
+        double dot(float[] a, float[] b);
+    }
+}
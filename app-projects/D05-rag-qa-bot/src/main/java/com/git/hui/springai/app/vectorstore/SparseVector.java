@@ -0,0 +1,102 @@
+package com.git.hui.springai.app.vectorstore;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 基于特征哈希(feature hashing)的稀疏向量
+ * 只保存非零的 (termId, weight) 对，termId 由词语哈希到 [0, DIMENSION) 得到，同一个词在所有文档中落在同一个槽位，
+ * 因此两个向量的点积比较的是相同词语的权重，而不是按词频排序后位置相同的无关词语
+ * <p>
+ * 为了复用 {@link org.springframework.ai.vectorstore.SimpleVectorStoreContent} 的 float[] embedding 字段进行存储与持久化，
+ * 稀疏向量以 [termId0, weight0, termId1, weight1, ...] 的紧凑格式编码到 float[] 中；
+ * termId 小于 2^24，可以被 float 精确表示
+ */
+public final class SparseVector {
+
+    /**
+     * 哈希空间大小，2^20
+     */
+    public static final int DIMENSION = 1 << 20;
+
+    private static final float[] EMPTY = new float[0];
+
+    private SparseVector() {
+    }
+
+    /**
+     * 根据词频生成L2归一化的稀疏向量，权重采用 1 + ln(tf) 的次线性词频
+     *
+     * @param termFrequency 词频统计
+     * @return 紧凑编码的稀疏向量，termId升序
+     */
+    public static float[] of(Map<String, Integer> termFrequency) {
+        if (termFrequency.isEmpty()) {
+            return EMPTY;
+        }
+
+        // 哈希冲突的词语权重直接累加
+        TreeMap<Integer, Float> weights = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : termFrequency.entrySet()) {
+            float weight = (float) (1 + Math.log(entry.getValue()));
+            weights.merge(termId(entry.getKey()), weight, Float::sum);
+        }
+
+        double norm = 0;
+        for (float weight : weights.values()) {
+            norm += weight * weight;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] packed = new float[weights.size() * 2];
+        int i = 0;
+        for (Map.Entry<Integer, Float> entry : weights.entrySet()) {
+            packed[i++] = entry.getKey();
+            packed[i++] = (float) (entry.getValue() / norm);
+        }
+        return packed;
+    }
+
+    /**
+     * 稀疏向量点积，对两个按termId升序的向量做归并，时间复杂度为两者非零项数之和
+     * 由于向量在生成时已经归一化，点积即为余弦相似度
+     *
+     * @param a 紧凑编码的稀疏向量
+     * @param b 紧凑编码的稀疏向量
+     * @return 点积
+     */
+    public static double dot(float[] a, float[] b) {
+        if (a == null || b == null) {
+            return 0.0;
+        }
+
+        double dot = 0;
+        int i = 0, j = 0;
+        while (i < a.length && j < b.length) {
+            float ta = a[i], tb = b[j];
+            if (ta == tb) {
+                dot += a[i + 1] * b[j + 1];
+                i += 2;
+                j += 2;
+            } else if (ta < tb) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return dot;
+    }
+
+    /**
+     * 词语 -> termId，对String#hashCode做一次murmur3的fmix32扰动，减少中文短词哈希值聚集带来的冲突
+     */
+    static int termId(String term) {
+        int h = term.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (DIMENSION - 1);
+    }
+}
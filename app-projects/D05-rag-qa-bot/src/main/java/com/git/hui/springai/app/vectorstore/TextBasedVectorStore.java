@@ -2,6 +2,7 @@ package com.git.hui.springai.app.vectorstore;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -18,19 +19,15 @@ import org.springframework.ai.util.JacksonUtils;
 import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.SimpleVectorStoreContent;
-import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
-import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
 import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
 import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
 import org.springframework.core.io.Resource;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.CollectionUtils;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -41,11 +38,13 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 
 /**
@@ -55,19 +54,66 @@ import java.util.function.Predicate;
 public class TextBasedVectorStore extends AbstractObservationVectorStore {
 
     private static final Logger logger = LoggerFactory.getLogger(TextBasedVectorStore.class);
+    /**
+     * 持久化文件中的字段：保存时的量化模式与全部文档
+     */
+    private static final String QUANTIZATION_MODE_FIELD = "quantizationMode";
+    private static final String DOCUMENTS_FIELD = "documents";
+
     private final ObjectMapper objectMapper = ((JsonMapper.Builder) JsonMapper.builder().addModules(JacksonUtils.instantiateAvailableModules())).build();
-    private final ExpressionParser expressionParser = new SpelExpressionParser();
-    private final FilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
     @Getter
     protected Map<String, SimpleVectorStoreContent> store = new ConcurrentHashMap();
 
     /**
-     * 已经存储到向量库的document
+     * 已经存储到向量库的文件(md5)与分片(文本hash)，用于导入时去重
+     */
+    private final DedupRegistry dedupRegistry = new DedupRegistry();
+
+    /**
+     * 基于分词结果的倒排索引，用于 {@link SearchMode#INVERTED_INDEX} 检索模式
+     */
+    private final InvertedIndex invertedIndex = new InvertedIndex();
+
+    /**
+     * 检索使用的向量：文档id -> 写入时已归一化的向量
+     * SimpleVectorStoreContent#getEmbedding 每次调用都会拷贝数组，全量扫描时直接使用这里的引用，避免逐个文档的数组拷贝
+     */
+    private final Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+
+    /**
+     * 元数据二级索引，带过滤条件的检索可以直接定位候选文档
      */
-    private Set<String> persistMd5 = new CopyOnWriteArraySet<>();
+    private final MetadataIndex metadataIndex;
+
+    /**
+     * 二进制持久化段，打开后新增的文档会直接追加到段文件中
+     */
+    private volatile VectorSegment segment;
+
+    /**
+     * 持久化段中已有的文档是否已经加入倒排索引与元数据索引，索引构建完成前检索退化为全量扫描
+     */
+    private volatile boolean segmentIndexed = true;
+
+    /**
+     * 为持久化段构建索引的后台线程，关闭持久化段时等待其退出
+     */
+    private volatile Thread segmentIndexer;
+
+    private final SearchMode searchMode;
+
+    private final QuantizationMode quantizationMode;
+
+    /**
+     * 文档变更监听器，新增、删除、加载文档之后回调，用于让检索结果缓存失效
+     */
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
 
     protected TextBasedVectorStore(TextBasedVectorStoreBuilder builder) {
         super(builder);
+        this.searchMode = builder.searchMode;
+        this.quantizationMode = builder.quantizationMode;
+        this.metadataIndex = new MetadataIndex(builder.indexedMetadataKeys);
     }
 
     public static TextBasedVectorStoreBuilder builder() {
@@ -85,42 +131,92 @@ public class TextBasedVectorStore extends AbstractObservationVectorStore {
     }
 
     /**
-     * 添加文档到向量数据库
+     * 添加文档到向量数据库，文档先分片再写入
      *
      * @param documents
      */
     @Override
     public void doAdd(List<Document> documents) {
-        if (CollectionUtils.isEmpty(documents)) {
+        List<Document> mutableDocuments = filterAddedFiles(documents);
+        if (CollectionUtils.isEmpty(mutableDocuments)) {
+            return;
+        }
+
+        // 文档分片
+        List<Document> chunkers = DocumentChunker.DEFAULT_CHUNKER.chunkDocuments(mutableDocuments);
+        saveChunks(mutableDocuments, chunkers);
+    }
+
+    /**
+     * 添加已经分片好的文档，直接写入、不再分片（如导入流水线中分片与入库在不同阶段完成）
+     *
+     * @param chunks 分片后的文档，同一个文件的分片需要一次性写入，保证按md5去重的判断以文件为粒度
+     */
+    public void addChunks(List<Document> chunks) {
+        List<Document> mutableChunks = filterAddedFiles(chunks);
+        if (CollectionUtils.isEmpty(mutableChunks)) {
             return;
         }
+        saveChunks(mutableChunks, mutableChunks);
+    }
+
+    /**
+     * 过滤掉已经导入过的文件
+     */
+    private List<Document> filterAddedFiles(List<Document> documents) {
+        if (CollectionUtils.isEmpty(documents)) {
+            return List.of();
+        }
 
         // 创建一个新的可变列表副本，避免对不可变列表进行操作
         List<Document> mutableDocuments = new ArrayList<>();
         for (Document document : documents) {
             // 过滤掉重复的文档，避免二次写入，浪费空间
-            if (!persistMd5.contains((String) document.getMetadata().get("md5"))) {
+            if (!dedupRegistry.containsFile((String) document.getMetadata().get("md5"))) {
                 mutableDocuments.add(document);
             }
         }
+        return mutableDocuments;
+    }
 
-        if (CollectionUtils.isEmpty(mutableDocuments)) {
-            return;
-        }
-
-        // 文档分片
-        List<Document> chunkers = DocumentChunker.DEFAULT_CHUNKER.chunkDocuments(mutableDocuments);
+    /**
+     * 量化并写入分片
+     *
+     * @param documents 分片对应的原始文档，写入完成后登记为已导入的文件
+     * @param chunkers  分片
+     */
+    private void saveChunks(List<Document> documents, List<Document> chunkers) {
         // 存储本地向量库
         chunkers.forEach(document -> {
+            // 同一个文件中与已有分片内容完全相同时只保留一份
+            String chunkHash = DedupRegistry.chunkHash((String) document.getMetadata().get("md5"), document.getText());
+            if (dedupRegistry.containsChunk(chunkHash)) {
+                logger.info("skip duplicate chunk, document id = {}", document.getId());
+                return;
+            }
             logger.info("quantizeDocument for document id = {}", document.getId());
-            float[] embedding = DocumentQuantizer.quantizeDocument(document);
+            float[] embedding = this.quantize(document.getText());
             if (embedding.length == 0) {
                 return;
             }
+            // 量化成功、确定写入之后再登记，没有写入的分片之后仍可以重新导入
+            if (!dedupRegistry.addChunk(chunkHash)) {
+                logger.info("skip duplicate chunk, document id = {}", document.getId());
+                return;
+            }
             SimpleVectorStoreContent storeContent = new SimpleVectorStoreContent(document.getId(), document.getText(), document.getMetadata(), embedding);
             this.store.put(document.getId(), storeContent);
+            this.embeddings.put(document.getId(), embedding);
+            this.invertedIndex.add(document.getId(), document.getText());
+            this.metadataIndex.add(document.getId(), document.getMetadata());
+            VectorSegment current = this.segment;
+            if (current != null) {
+                current.append(document.getId(), document.getText(), document.getMetadata(), embedding);
+            }
         });
-        mutableDocuments.forEach(document -> persistMd5.add((String) document.getMetadata().get("md5")));
+        documents.forEach(document -> dedupRegistry.addFile((String) document.getMetadata().get("md5")));
+        dedupRegistry.flush();
+        fireChanged();
     }
 
     public void doDelete(List<String> idList) {
@@ -128,8 +224,33 @@ public class TextBasedVectorStore extends AbstractObservationVectorStore {
 
         while (var2.hasNext()) {
             String id = (String) var2.next();
+            SimpleVectorStoreContent content = this.findContent(id);
+            this.metadataIndex.remove(id);
+            if (content != null) {
+                this.dedupRegistry.removeChunk(DedupRegistry.chunkHash((String) content.getMetadata().get("md5"), content.getText()));
+            }
             this.store.remove(id);
+            this.embeddings.remove(id);
+            this.invertedIndex.remove(id);
+            VectorSegment current = this.segment;
+            if (current != null) {
+                current.delete(id);
+            }
         }
+        fireChanged();
+    }
+
+    /**
+     * 注册文档变更监听器
+     *
+     * @param listener 新增、删除、加载文档之后的回调
+     */
+    public void addChangeListener(Runnable listener) {
+        this.changeListeners.add(listener);
+    }
+
+    private void fireChanged() {
+        this.changeListeners.forEach(Runnable::run);
     }
 
     /**
@@ -140,24 +261,132 @@ public class TextBasedVectorStore extends AbstractObservationVectorStore {
      */
     @Override
     public List<Document> doSimilaritySearch(SearchRequest request) {
+        if (searchMode == SearchMode.INVERTED_INDEX) {
+            return this.invertedIndexSearch(request);
+        }
+        return this.fullScanSearch(request);
+    }
+
+    /**
+     * 倒排索引检索：只对与问题存在公共词的文档进行BM25打分，并用有界小顶堆保留topK
+     *
+     * @param request
+     * @return
+     */
+    private List<Document> invertedIndexSearch(SearchRequest request) {
+        if (!segmentIndexed) {
+            return this.fullScanSearch(request);
+        }
+
+        Predicate<SimpleVectorStoreContent> documentFilterPredicate = this.doFilterPredicate(request);
+        Set<String> candidates = MetadataFilter.of(request.getFilterExpression()).candidates(this.metadataIndex);
+        List<InvertedIndex.Hit> hits = this.invertedIndex.search(request.getQuery(), id -> {
+            if (candidates != null && !candidates.contains(id)) {
+                return false;
+            }
+            SimpleVectorStoreContent content = this.findContent(id);
+            return content != null && documentFilterPredicate.test(content);
+        }, request.getTopK(), request.getSimilarityThreshold());
+
+        List<Document> result = new ArrayList<>(hits.size());
+        for (InvertedIndex.Hit hit : hits) {
+            SimpleVectorStoreContent content = this.findContent(hit.id());
+            if (content != null) {
+                logger.info("Document score: {} - {}", hit.id(), hit.score());
+                result.add(content.toDocument(hit.score()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 全量扫描检索：对库中每个文档计算余弦相似度，作为倒排索引检索的兜底方案
+     *
+     * @param request
+     * @return
+     */
+    private List<Document> fullScanSearch(SearchRequest request) {
         Predicate<SimpleVectorStoreContent> documentFilterPredicate = this.doFilterPredicate(request);
         final float[] userQueryEmbedding = this.getUserQueryEmbedding(request.getQuery());
-        return this.store.values().stream().filter(documentFilterPredicate).map((content) -> {
-            return content.toDocument(DocumentQuantizer.calculateCosineSimilarity(userQueryEmbedding, content.getEmbedding()));
+        Set<String> candidates = this.segmentIndexed ? MetadataFilter.of(request.getFilterExpression()).candidates(this.metadataIndex) : null;
+        if (candidates != null) {
+            return this.candidateSearch(request, candidates, documentFilterPredicate, userQueryEmbedding);
+        }
+
+        List<Document> result = this.store.values().stream().filter(documentFilterPredicate).map((content) -> {
+            return content.toDocument(this.similarity(userQueryEmbedding, this.embeddings.get(content.getId())));
         }).filter((document) -> {
             logger.info("Document score: {} - {}", document.getId(), document.getScore());
             return document.getScore() >= request.getSimilarityThreshold();
         }).sorted(Comparator.comparing(Document::getScore).reversed()).limit((long) request.getTopK()).toList();
+
+        VectorSegment current = this.segment;
+        if (current == null || current.mappedRows() == 0) {
+            return result;
+        }
+
+        // 持久化段中的文档直接在映射区上计算相似度，只解码命中的文档
+        IntPredicate rowPredicate = request.hasFilterExpression() ? row -> documentFilterPredicate.test(current.content(row)) : row -> true;
+        List<Document> merged = new ArrayList<>(result);
+        for (Map.Entry<Integer, Double> hit : current.search(userQueryEmbedding, quantizationMode == QuantizationMode.SPARSE_HASHED,
+                request.getTopK(), request.getSimilarityThreshold(), rowPredicate)) {
+            merged.add(current.content(hit.getKey()).toDocument(hit.getValue()));
+        }
+        merged.sort(Comparator.comparing(Document::getScore).reversed());
+        return merged.size() > request.getTopK() ? merged.subList(0, request.getTopK()) : merged;
     }
 
+    /**
+     * 过滤条件可以通过元数据索引收敛时，只对候选文档计算相似度
+     */
+    private List<Document> candidateSearch(SearchRequest request, Set<String> candidates,
+                                           Predicate<SimpleVectorStoreContent> documentFilterPredicate, float[] userQueryEmbedding) {
+        VectorSegment current = this.segment;
+        List<Document> result = new ArrayList<>();
+        for (String id : candidates) {
+            SimpleVectorStoreContent content = this.store.get(id);
+            double score;
+            if (content != null) {
+                score = this.similarity(userQueryEmbedding, this.embeddings.get(id));
+            } else {
+                Integer row = current == null ? null : current.mappedRow(id);
+                if (row == null) {
+                    continue;
+                }
+                score = current.similarity(row, userQueryEmbedding, quantizationMode == QuantizationMode.SPARSE_HASHED);
+                if (score < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                content = current.content(row);
+            }
+            if (score >= request.getSimilarityThreshold() && documentFilterPredicate.test(content)) {
+                result.add(content.toDocument(score));
+            }
+        }
+        result.sort(Comparator.comparing(Document::getScore).reversed());
+        return result.size() > request.getTopK() ? result.subList(0, request.getTopK()) : result;
+    }
+
+    private SimpleVectorStoreContent findContent(String id) {
+        SimpleVectorStoreContent content = this.store.get(id);
+        if (content == null) {
+            VectorSegment current = this.segment;
+            if (current != null) {
+                content = current.content(id);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 过滤条件按表达式编译一次并缓存，逐个文档判断时不再经过 SpEL
+     */
     private Predicate<SimpleVectorStoreContent> doFilterPredicate(SearchRequest request) {
-        return request.hasFilterExpression() ? (document) -> {
-            StandardEvaluationContext context = new StandardEvaluationContext();
-            context.setVariable("metadata", document.getMetadata());
-            return (Boolean) this.expressionParser.parseExpression(this.filterExpressionConverter.convertExpression(request.getFilterExpression())).getValue(context, Boolean.class);
-        } : (document) -> {
-            return true;
-        };
+        if (!request.hasFilterExpression()) {
+            return (document) -> true;
+        }
+        MetadataFilter filter = MetadataFilter.of(request.getFilterExpression());
+        return (document) -> filter.test(document.getMetadata());
     }
 
     public void save(File file) {
@@ -221,53 +450,253 @@ public class TextBasedVectorStore extends AbstractObservationVectorStore {
     }
 
     public void load(File file) {
-        TypeReference<HashMap<String, SimpleVectorStoreContent>> typeRef = new TypeReference<HashMap<String, SimpleVectorStoreContent>>() {
-        };
-
         try {
-            this.store = (Map) this.objectMapper.readValue(file, typeRef);
+            this.load(this.objectMapper.readTree(file));
         } catch (IOException var4) {
             throw new RuntimeException(var4);
         }
     }
 
     public void load(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            this.load(this.objectMapper.readTree(in));
+        } catch (IOException var4) {
+            throw new RuntimeException(var4);
+        }
+    }
+
+    /**
+     * 解析持久化文件：文件中记录了保存时的量化模式；没有记录的旧版本文件只有文档映射，其中的向量均为稠密向量。
+     * 与当前量化模式不一致时，根据文档原文重新量化，避免把稠密向量当作稀疏向量解析
+     */
+    private void load(JsonNode root) {
         TypeReference<HashMap<String, SimpleVectorStoreContent>> typeRef = new TypeReference<HashMap<String, SimpleVectorStoreContent>>() {
         };
+        QuantizationMode storedMode = QuantizationMode.DENSE_TOP_FREQUENCY;
+        JsonNode documents = root;
+        if (root.path(QUANTIZATION_MODE_FIELD).isTextual() && root.path(DOCUMENTS_FIELD).isObject()) {
+            storedMode = QuantizationMode.valueOf(root.get(QUANTIZATION_MODE_FIELD).asText());
+            documents = root.get(DOCUMENTS_FIELD);
+        }
+        this.store = (Map) this.objectMapper.convertValue(documents, typeRef);
+        if (storedMode != quantizationMode) {
+            logger.warn("Vector store file was saved with {} quantization, re-quantizing {} documents with {}",
+                    storedMode, this.store.size(), quantizationMode);
+            this.store.replaceAll((id, content) -> new SimpleVectorStoreContent(content.getId(), content.getText(),
+                    content.getMetadata(), this.quantize(content.getText())));
+        }
+        this.rebuildIndex();
+    }
+
+    /**
+     * 从持久化文件加载后，根据store中的内容重建倒排索引、去重登记表与检索向量；旧版本持久化的稠密向量未归一化，这里统一归一化
+     */
+    private void rebuildIndex() {
+        this.invertedIndex.clear();
+        this.metadataIndex.clear();
+        this.embeddings.clear();
+        this.dedupRegistry.clear();
+        this.store.values().forEach(content -> {
+            this.dedupRegistry.addFile((String) content.getMetadata().get("md5"));
+            this.dedupRegistry.addChunk(DedupRegistry.chunkHash((String) content.getMetadata().get("md5"), content.getText()));
+            float[] embedding = content.getEmbedding();
+            if (quantizationMode == QuantizationMode.DENSE_TOP_FREQUENCY) {
+                SimilarityKernel.normalize(embedding);
+            }
+            this.embeddings.put(content.getId(), embedding);
+            this.invertedIndex.add(content.getId(), content.getText());
+            this.metadataIndex.add(content.getId(), content.getMetadata());
+        });
+        fireChanged();
+    }
+
+    /**
+     * 打开（不存在时创建）二进制持久化段
+     * <p>
+     * 段中已有的文档通过内存映射直接参与检索，无需解析整个文件，重启时几乎可以立即提供服务；
+     * 当前内存中的文档以及之后新增的文档都会追加写入段文件。段中已有文档的元数据索引（以及倒排索引模式下的倒排表）在后台线程中构建，
+     * 构建完成之前检索退化为映射区上的全量扫描。去重登记表以追加日志的形式保存在段目录下的 dedup.log 中，打开时直接加载
+     *
+     * @param dir 段目录
+     */
+    public void openSegment(File dir) {
+        VectorSegment opened = VectorSegment.open(dir, quantizationMode);
+        logger.info("Open vector segment {} with {} mapped documents", dir, opened.mappedRows());
+        this.dedupRegistry.attach(new File(dir, "dedup.log"));
+        this.store.values().forEach(content -> opened.append(content.getId(), content.getText(), content.getMetadata(), this.embeddings.get(content.getId())));
+        this.segment = opened;
+
+        if (opened.mappedRows() > 0) {
+            this.segmentIndexed = false;
+            Thread indexer = new Thread(() -> {
+                long start = System.currentTimeMillis();
+                for (int row : opened.liveMappedRows()) {
+                    if (this.segment != opened) {
+                        logger.info("Vector segment {} closed before indexing finished", dir);
+                        return;
+                    }
+                    SimpleVectorStoreContent content = opened.content(row);
+                    this.metadataIndex.add(content.getId(), content.getMetadata());
+                    // 兼容没有 dedup.log 的旧段：已登记的记录不会重复写入日志
+                    this.dedupRegistry.addFile((String) content.getMetadata().get("md5"));
+                    this.dedupRegistry.addChunk(DedupRegistry.chunkHash((String) content.getMetadata().get("md5"), content.getText()));
+                    if (searchMode == SearchMode.INVERTED_INDEX) {
+                        this.invertedIndex.add(content.getId(), content.getText());
+                    }
+                }
+                this.dedupRegistry.flush();
+                this.segmentIndexed = true;
+                logger.info("Vector segment {} indexed, cost {}ms", dir, System.currentTimeMillis() - start);
+            }, "vector-segment-indexer");
+            indexer.setDaemon(true);
+            this.segmentIndexer = indexer;
+            indexer.start();
+        }
+    }
 
+    /**
+     * 关闭持久化段，将已追加的数据刷盘
+     */
+    public void close() {
+        VectorSegment current = this.segment;
+        if (current == null) {
+            return;
+        }
+        this.segment = null;
+        awaitSegmentIndexer();
         try {
-            this.store = (Map) this.objectMapper.readValue(resource.getInputStream(), typeRef);
-        } catch (IOException var4) {
-            throw new RuntimeException(var4);
+            this.dedupRegistry.close();
+            current.close();
+        } catch (IOException e) {
+            logger.error("IOException occurred while closing vector segment.", e);
+        }
+    }
+
+    /**
+     * 等待后台索引线程退出：segment 置空后索引线程在处理完当前行后即退出，之后才能安全地关闭去重日志与段文件
+     */
+    private void awaitSegmentIndexer() {
+        Thread indexer = this.segmentIndexer;
+        if (indexer == null) {
+            return;
+        }
+        this.segmentIndexer = null;
+        try {
+            indexer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     private String getVectorDbAsJson() {
         ObjectWriter objectWriter = this.objectMapper.writerWithDefaultPrettyPrinter();
 
+        // 持久化段中映射的文档也一并导出
+        Map<String, SimpleVectorStoreContent> all = new LinkedHashMap<>();
+        VectorSegment current = this.segment;
+        if (current != null) {
+            current.liveMappedRows().forEach(row -> {
+                SimpleVectorStoreContent content = current.content(row);
+                all.put(content.getId(), content);
+            });
+        }
+        all.putAll(this.store);
+
+        // 记录量化模式，加载时据此判断向量格式
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put(QUANTIZATION_MODE_FIELD, quantizationMode.name());
+        root.put(DOCUMENTS_FIELD, all);
         try {
-            return objectWriter.writeValueAsString(this.store);
+            return objectWriter.writeValueAsString(root);
         } catch (JsonProcessingException var3) {
             throw new RuntimeException("Error serializing documentMap to JSON.", var3);
         }
     }
 
     private float[] getUserQueryEmbedding(String query) {
-        return DocumentQuantizer.quantizeQuery(query);
+        return this.quantize(query);
+    }
+
+    /**
+     * 量化文本；稠密向量在写入时即归一化为单位向量，检索时只需一次点积
+     */
+    private float[] quantize(String text) {
+        return quantizationMode == QuantizationMode.SPARSE_HASHED
+                ? DocumentQuantizer.quantizeSparse(text)
+                : SimilarityKernel.normalize(DocumentQuantizer.quantizeText(text));
+    }
+
+    private double similarity(float[] query, float[] embedding) {
+        return quantizationMode == QuantizationMode.SPARSE_HASHED
+                ? DocumentQuantizer.calculateSparseSimilarity(query, embedding)
+                : SimilarityKernel.dot(query, embedding);
     }
 
     public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
         return VectorStoreObservationContext.builder(VectorStoreProvider.SIMPLE.value(), operationName)
-                .dimensions(getUserQueryEmbedding("Test String").length)
+                .dimensions(quantizationMode == QuantizationMode.SPARSE_HASHED ? SparseVector.DIMENSION : getUserQueryEmbedding("Test String").length)
                 .collectionName("in-memory-map")
                 .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
     }
 
+    /**
+     * 检索模式
+     */
+    public enum SearchMode {
+        /**
+         * 倒排索引 + BM25 打分，只访问与问题存在公共词的文档
+         */
+        INVERTED_INDEX,
+        /**
+         * 全量扫描，逐个文档计算余弦相似度
+         */
+        FULL_SCAN
+    }
+
+    /**
+     * 文档量化模式，决定存入 embedding 的向量格式。持久化文件中记录了保存时的模式，加载到其他模式的向量库时按原文重新量化；
+     * 二进制持久化段的模式不一致时直接拒绝打开
+     */
+    public enum QuantizationMode {
+        /**
+         * 基于特征哈希的稀疏向量，只保存非零的 (termId, weight) 对，相同词语落在相同槽位
+         */
+        SPARSE_HASHED,
+        /**
+         * 按词频排序后取前128个词频组成的定长向量（槽位不对应具体词语，仅保留用于兼容）
+         */
+        DENSE_TOP_FREQUENCY
+    }
+
     public static final class TextBasedVectorStoreBuilder extends AbstractVectorStoreBuilder<TextBasedVectorStoreBuilder> {
+        private SearchMode searchMode = SearchMode.FULL_SCAN;
+
+        private QuantizationMode quantizationMode = QuantizationMode.DENSE_TOP_FREQUENCY;
+
+        /**
+         * 建立二级索引的元数据字段
+         */
+        private Set<String> indexedMetadataKeys = Set.of("md5", "file_name");
+
         private TextBasedVectorStoreBuilder(EmbeddingModel embeddingModel) {
             super(embeddingModel);
         }
 
+        public TextBasedVectorStoreBuilder searchMode(SearchMode searchMode) {
+            this.searchMode = searchMode;
+            return this;
+        }
+
+        public TextBasedVectorStoreBuilder quantizationMode(QuantizationMode quantizationMode) {
+            this.quantizationMode = quantizationMode;
+            return this;
+        }
+
+        public TextBasedVectorStoreBuilder indexedMetadataKeys(Set<String> indexedMetadataKeys) {
+            this.indexedMetadataKeys = indexedMetadataKeys;
+            return this;
+        }
+
         public TextBasedVectorStore build() {
             return new TextBasedVectorStore(this);
         }
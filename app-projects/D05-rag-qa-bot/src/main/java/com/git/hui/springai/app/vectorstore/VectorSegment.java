@@ -0,0 +1,366 @@
+package com.git.hui.springai.app.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.ai.util.JacksonUtils;
+import org.springframework.ai.vectorstore.SimpleVectorStoreContent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * 向量库的二进制持久化段，目录下包含三个只追加写入的文件：
+ * <ul>
+ *     <li>index.bin: 16字节文件头(magic, version, 量化模式, 保留) + 每个文档一行32字节的定长索引
+ *     (data偏移 long, data长度 int, 向量偏移 long, 向量长度 int, 删除标记 int, 保留 int)</li>
+ *     <li>vectors.bin: 小端序的float向量块，稠密向量每行定长，稀疏向量按紧凑编码变长存储</li>
+ *     <li>data.bin: 按索引偏移定位的文档记录 (id, 文本, 元数据json)</li>
+ * </ul>
+ * 打开时通过 {@link FileChannel#map} 映射已有内容，检索直接在映射区上计算相似度，只有命中的文档才会解码文本与元数据；
+ * 之后新增的文档直接追加到文件末尾，无需重写整个文件。单个文件的映射区不超过2GB
+ */
+public class VectorSegment implements Closeable {
+
+    private static final int MAGIC = 0x54425653;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ROW_SIZE = 32;
+    private static final int FLAGS_OFFSET = 24;
+    private static final int DELETED = 1;
+
+    private static final ObjectMapper OBJECT_MAPPER = ((JsonMapper.Builder) JsonMapper.builder().addModules(JacksonUtils.instantiateAvailableModules())).build();
+    private static final TypeReference<HashMap<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final FileChannel indexChannel;
+    private final FileChannel vectorChannel;
+    private final FileChannel dataChannel;
+
+    private final ByteBuffer indexBuffer;
+    private final FloatBuffer vectorBuffer;
+    private final ByteBuffer dataBuffer;
+
+    /**
+     * 打开时已映射到内存中的行数，之后追加的文档不在映射区内
+     */
+    private final int mappedRows;
+
+    /**
+     * 文档id -> 行号，包含映射区内与之后追加的所有有效文档
+     */
+    private final Map<String, Integer> rows = new ConcurrentHashMap<>();
+
+    /**
+     * 已删除的行；写时复制，删除时复制一份再替换，检索时直接读取当前引用，不需要加锁
+     */
+    private volatile BitSet deleted;
+
+    private int totalRows;
+
+    private VectorSegment(Path dir, TextBasedVectorStore.QuantizationMode mode) throws IOException {
+        Files.createDirectories(dir);
+        this.indexChannel = open(dir.resolve("index.bin"));
+        this.vectorChannel = open(dir.resolve("vectors.bin"));
+        this.dataChannel = open(dir.resolve("data.bin"));
+
+        if (indexChannel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(mode.ordinal()).putInt(0).flip();
+            indexChannel.write(header, 0);
+        }
+
+        this.indexBuffer = map(indexChannel);
+        if (indexBuffer.getInt(0) != MAGIC || indexBuffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("Unsupported vector segment file: " + dir);
+        }
+        if (indexBuffer.getInt(8) != mode.ordinal()) {
+            throw new IllegalStateException("Vector segment " + dir + " was written with quantization mode "
+                    + TextBasedVectorStore.QuantizationMode.values()[indexBuffer.getInt(8)] + ", but store uses " + mode);
+        }
+        this.vectorBuffer = map(vectorChannel).asFloatBuffer();
+        this.dataBuffer = map(dataChannel);
+
+        // 丢弃异常退出时写了一半的行
+        this.mappedRows = (indexBuffer.capacity() - HEADER_SIZE) / ROW_SIZE;
+        this.totalRows = mappedRows;
+        BitSet deletedRows = new BitSet(mappedRows);
+        for (int row = 0; row < mappedRows; row++) {
+            if ((indexBuffer.getInt(rowOffset(row) + FLAGS_OFFSET) & DELETED) != 0) {
+                deletedRows.set(row);
+            } else {
+                rows.put(readId(row), row);
+            }
+        }
+        this.deleted = deletedRows;
+    }
+
+    /**
+     * 打开（不存在时创建）目录下的持久化段
+     *
+     * @param dir  段目录
+     * @param mode 向量库的量化模式，必须与段写入时一致
+     * @return 持久化段
+     */
+    public static VectorSegment open(File dir, TextBasedVectorStore.QuantizationMode mode) {
+        try {
+            return new VectorSegment(dir.toPath(), mode);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open vector segment: " + dir, e);
+        }
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static ByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Vector segment file exceeds 2GB: " + size);
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int rowOffset(int row) {
+        return HEADER_SIZE + row * ROW_SIZE;
+    }
+
+    public int mappedRows() {
+        return mappedRows;
+    }
+
+    /**
+     * 文档在映射区内的行号，不存在或不在映射区内时返回null
+     */
+    public Integer mappedRow(String id) {
+        Integer row = rows.get(id);
+        return row == null || row >= mappedRows ? null : row;
+    }
+
+    /**
+     * 映射区内的行是否有效（未删除，且未被之后追加的同id文档覆盖）
+     */
+    public boolean isLive(int row) {
+        return !deleted.get(row);
+    }
+
+    private String readId(int row) {
+        ByteBuffer data = dataBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position((int) indexBuffer.getLong(rowOffset(row)));
+        return readString(data);
+    }
+
+    private static String readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解码映射区内某一行的文档
+     */
+    public SimpleVectorStoreContent content(int row) {
+        int offset = rowOffset(row);
+        ByteBuffer data = dataBuffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        data.position((int) indexBuffer.getLong(offset));
+        String id = readString(data);
+        String text = readString(data);
+        String metadataJson = readString(data);
+
+        float[] embedding = new float[indexBuffer.getInt(offset + 20)];
+        vectorBuffer.get((int) (indexBuffer.getLong(offset + 12) / Float.BYTES), embedding);
+        try {
+            return new SimpleVectorStoreContent(id, text, OBJECT_MAPPER.readValue(metadataJson, METADATA_TYPE), embedding);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode metadata of document: " + id, e);
+        }
+    }
+
+    /**
+     * 根据id解码映射区内的文档，不存在或不在映射区内时返回null
+     */
+    public SimpleVectorStoreContent content(String id) {
+        Integer row = mappedRow(id);
+        return row == null ? null : content(row);
+    }
+
+    /**
+     * 直接在映射区上计算查询向量与某一行向量的点积，向量在写入时已归一化
+     */
+    public double similarity(int row, float[] query, boolean sparse) {
+        int offset = rowOffset(row);
+        int start = (int) (indexBuffer.getLong(offset + 12) / Float.BYTES);
+        int length = indexBuffer.getInt(offset + 20);
+        return sparse ? sparseDot(start, length, query) : denseDot(start, length, query);
+    }
+
+    private double denseDot(int start, int length, float[] query) {
+        int n = Math.min(length, query.length);
+        float sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += vectorBuffer.get(start + i) * query[i];
+        }
+        return sum;
+    }
+
+    private double sparseDot(int start, int length, float[] query) {
+        double dot = 0;
+        int i = 0, j = 0;
+        while (i < length && j < query.length) {
+            float ta = vectorBuffer.get(start + i), tb = query[j];
+            if (ta == tb) {
+                dot += vectorBuffer.get(start + i + 1) * query[j + 1];
+                i += 2;
+                j += 2;
+            } else if (ta < tb) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return dot;
+    }
+
+    /**
+     * 在映射区上做全量扫描，用有界小顶堆保留得分最高的topK行，过滤条件只对可能进入结果的行求值
+     *
+     * @param query     查询向量
+     * @param sparse    是否为稀疏向量
+     * @param topK      返回的最大行数
+     * @param threshold 相似度阈值
+     * @param accept    行过滤条件
+     * @return 行号与得分，得分从高到低
+     */
+    public List<Map.Entry<Integer, Double>> search(float[] query, boolean sparse, int topK, double threshold, IntPredicate accept) {
+        PriorityQueue<Map.Entry<Integer, Double>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        // 整个扫描过程使用同一份删除标记
+        BitSet deletedRows = this.deleted;
+        for (int row = 0; row < mappedRows && topK > 0; row++) {
+            if (deletedRows.get(row)) {
+                continue;
+            }
+            double score = similarity(row, query, sparse);
+            if (score < threshold || heap.size() >= topK && heap.peek().getValue() >= score) {
+                continue;
+            }
+            if (!accept.test(row)) {
+                continue;
+            }
+            heap.offer(Map.entry(row, score));
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<Integer, Double>> result = new ArrayList<>(heap);
+        result.sort(Map.Entry.<Integer, Double>comparingByValue().reversed());
+        return result;
+    }
+
+    /**
+     * 追加文档到段文件末尾，同id的旧文档会被标记为删除
+     */
+    public synchronized void append(String id, String text, Map<String, Object> metadata, float[] embedding) {
+        try {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+            byte[] metadataBytes = OBJECT_MAPPER.writeValueAsBytes(metadata);
+            ByteBuffer data = ByteBuffer.allocate(12 + idBytes.length + textBytes.length + metadataBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            data.putInt(idBytes.length).put(idBytes).putInt(textBytes.length).put(textBytes).putInt(metadataBytes.length).put(metadataBytes).flip();
+            long dataOffset = dataChannel.size();
+            writeFully(dataChannel, data, dataOffset);
+
+            ByteBuffer vector = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            vector.asFloatBuffer().put(embedding);
+            long vectorOffset = vectorChannel.size();
+            writeFully(vectorChannel, vector, vectorOffset);
+
+            // 索引行最后写入，保证索引行存在时对应的数据已经落盘
+            ByteBuffer index = ByteBuffer.allocate(ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            index.putLong(dataOffset).putInt(data.capacity()).putLong(vectorOffset).putInt(embedding.length).putInt(0).putInt(0).flip();
+            int row = totalRows++;
+            writeFully(indexChannel, index, rowOffset(row));
+
+            Integer old = rows.put(id, row);
+            if (old != null) {
+                markDeleted(old);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append document to vector segment: " + id, e);
+        }
+    }
+
+    /**
+     * 删除文档，只在索引行上写入删除标记
+     */
+    public synchronized void delete(String id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return;
+        }
+        try {
+            markDeleted(row);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete document from vector segment: " + id, e);
+        }
+    }
+
+    private void markDeleted(int row) throws IOException {
+        ByteBuffer flags = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, DELETED);
+        writeFully(indexChannel, flags, rowOffset(row) + FLAGS_OFFSET);
+        // 只在 append/delete 的同步块内调用，写线程之间不会相互覆盖
+        BitSet copy = (BitSet) deleted.clone();
+        copy.set(row);
+        this.deleted = copy;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * 映射区内所有有效文档的行号，按行号升序
+     */
+    public List<Integer> liveMappedRows() {
+        List<Integer> result = new ArrayList<>(rows.size());
+        for (int row : rows.values()) {
+            if (row < mappedRows) {
+                result.add(row);
+            }
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        indexChannel.force(true);
+        vectorChannel.force(true);
+        dataChannel.force(true);
+        indexChannel.close();
+        vectorChannel.close();
+        dataChannel.close();
+    }
+}
@@ -0,0 +1,41 @@
+package com.git.hui.springai.app.vectorstore;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 jdk.incubator.vector 的SIMD点积实现
+ * <p>
+ * 只在 simd profile 下编译（mvn -Psimd），默认构建不包含该类，也就不需要引入孵化模块；
+ * 运行时需要添加 --add-modules jdk.incubator.vector，由 {@link SimilarityKernel} 反射加载后间接调用
+ */
+final class VectorizedSimilarityKernel implements SimilarityKernel.DotProduct {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorizedSimilarityKernel() {
+    }
+
+    @Override
+    public String toString() {
+        return SPECIES.toString();
+    }
+
+    @Override
+    public double dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -100,6 +100,33 @@ public class ChineseTextProcessorTest {
         }
     }
     
+    @Test
+    public void testStreamingChunkByTokens() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("第").append(i).append("段：Deep Learning 深度学习在图像识别中有广泛应用。\n\n");
+        }
+
+        // 按估算的token数分块，直接从Reader中边读边分块
+        DocumentChunker chunker = new DocumentChunker(64, 8, DocumentChunker.SizeUnit.TOKENS);
+        List<Document> chunks;
+        try (java.util.stream.Stream<Document> stream = chunker.stream("big_doc", new java.io.StringReader(text.toString()), Map.of("md5", "big"))) {
+            chunks = stream.toList();
+        }
+
+        assertTrue(chunks.size() > 10);
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            assertEquals(i, chunk.getMetadata().get("chunk_index"));
+            assertEquals("big", chunk.getMetadata().get("md5"));
+            long cjk = chunk.getText().chars().filter(c -> c >= '\u4e00' && c <= '\u9fff' || c >= '\uff00').count();
+            assertTrue(cjk + (chunk.getText().length() - cjk) / 4.0 <= 64, "块大小不应超过64个token");
+        }
+        assertTrue(chunks.get(chunks.size() - 1).getText().contains("第199段"));
+        // 与字符串分块结果一致
+        assertEquals(chunks.stream().map(Document::getText).toList(), chunker.split(text).toList());
+    }
+
     @Test
     public void testEnglishChineseMixedText() {
         String mixedText = "Machine Learning 机器学习是AI的核心技术。Deep Learning 深度学习在图像识别中有广泛应用。";
@@ -0,0 +1,46 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分块的大小计算与代理对处理
+ * <p>
+ * T01 中的 DocumentChunker 是同一份实现，修改分块逻辑时两边需要同步
+ */
+public class DocumentChunkerTest {
+
+    /**
+     * 扩展B区汉字 𠀀(U+20000)，UTF-16 中占两个char
+     */
+    private static final String EXT_B = new String(Character.toChars(0x20000));
+
+    @Test
+    public void testSurrogatePairCountedOnce() {
+        String text = EXT_B.repeat(25);
+        DocumentChunker chunker = new DocumentChunker(10, 0, DocumentChunker.SizeUnit.TOKENS);
+        for (List<String> chunks : List.of(chunker.split(text).toList(), chunker.split(new StringReader(text)).toList())) {
+            // 每个扩展区汉字按1个token计算，而不是两个代理项各算1个
+            assertEquals(List.of(EXT_B.repeat(10), EXT_B.repeat(10), EXT_B.repeat(5)), chunks);
+        }
+
+        // 按字符数计量时同样按码点计算，强制切断与重叠都不会拆开代理对
+        List<String> chunks = new DocumentChunker(7, 3).split("ab" + EXT_B.repeat(10) + "。").toList();
+        for (String chunk : chunks) {
+            assertFalse(Character.isLowSurrogate(chunk.charAt(0)), chunk);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)), chunk);
+            assertTrue(chunk.codePointCount(0, chunk.length()) <= 7, chunk);
+        }
+    }
+
+    @Test
+    public void testUnpairedSurrogateKept() {
+        String text = "\ud840你好\udc00。";
+        assertEquals(List.of(text), new DocumentChunker(10, 0).split(text).toList());
+        assertEquals(List.of(text), new DocumentChunker(10, 0).split(new StringReader(text)).toList());
+    }
+}
@@ -0,0 +1,96 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量扫描时相似度计算的耗时对比：
+ * <ul>
+ *     <li>baseline: 原有的 DocumentQuantizer#calculateCosineSimilarity，每次拷贝数组并重新计算两个向量的模</li>
+ *     <li>scalar: 预归一化后的标量点积</li>
+ *     <li>simd: 预归一化后基于 jdk.incubator.vector 的点积，需要使用 simd profile 构建（mvn -Psimd），否则退化为标量实现</li>
+ * </ul>
+ * 直接运行 main 方法即可，1M 个128维向量约占用 512MB 内存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-D" + SimilarityKernel.SIMD_PROPERTY + "=true", "-Xmx2g"})
+public class SimilarityKernelBenchmark {
+
+    private static final int DIMENSION = 128;
+
+    @Param({"10000", "100000", "1000000"})
+    private int chunks;
+
+    private float[][] store;
+
+    private float[] query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        store = new float[chunks][];
+        for (int i = 0; i < chunks; i++) {
+            store[i] = randomVector(random);
+        }
+        query = randomVector(random);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = random.nextInt(5);
+        }
+        return SimilarityKernel.normalize(vector);
+    }
+
+    @Benchmark
+    public double baseline() {
+        double sum = 0;
+        for (float[] vector : store) {
+            sum += DocumentQuantizer.calculateCosineSimilarity(query, vector);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double scalar() {
+        double sum = 0;
+        for (float[] vector : store) {
+            sum += SimilarityKernel.scalarDot(query, vector);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double simd() {
+        double sum = 0;
+        for (float[] vector : store) {
+            sum += SimilarityKernel.dot(query, vector);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SimilarityKernelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
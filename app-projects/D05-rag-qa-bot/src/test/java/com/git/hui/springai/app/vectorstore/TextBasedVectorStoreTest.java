@@ -0,0 +1,271 @@
+package com.git.hui.springai.app.vectorstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextBasedVectorStoreTest {
+
+    /**
+     * 与 D05Application 中的配置一致：倒排索引 + 稀疏向量
+     */
+    private static TextBasedVectorStore.TextBasedVectorStoreBuilder sparseBuilder() {
+        return TextBasedVectorStore.builder()
+                .searchMode(TextBasedVectorStore.SearchMode.INVERTED_INDEX)
+                .quantizationMode(TextBasedVectorStore.QuantizationMode.SPARSE_HASHED);
+    }
+
+    private static List<Document> corpus() {
+        return List.of(
+                new Document("ai", "人工智能是计算机科学的重要分支，机器学习是人工智能的核心技术。", Map.of("md5", "ai")),
+                new Document("car", "汽车制造工艺流程包括冲压、焊装、涂装和总装四大工艺。", Map.of("md5", "car")),
+                new Document("food", "湖北武汉的热干面是非常有名的早餐美食。", Map.of("md5", "food"))
+        );
+    }
+
+    @Test
+    public void testInvertedIndexSearch() {
+        TextBasedVectorStore store = sparseBuilder().build();
+        store.add(corpus());
+
+        List<Document> result = store.similaritySearch(SearchRequest.builder().query("机器学习和人工智能").topK(3).build());
+        System.out.println("倒排索引检索结果: " + result.stream().map(d -> d.getId() + ":" + d.getScore()).toList());
+
+        // 只有共享词语的文档才会被召回
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).getId().startsWith("ai"));
+        assertTrue(result.get(0).getScore() > 0 && result.get(0).getScore() <= 1.0);
+
+        // 删除之后倒排表同步清理
+        store.delete(List.of(result.get(0).getId()));
+        assertTrue(store.similaritySearch(SearchRequest.builder().query("机器学习和人工智能").topK(3).build()).isEmpty());
+    }
+
+    @Test
+    public void testInvertedIndexTopK() {
+        InvertedIndex index = new InvertedIndex();
+        index.add("1", "人工智能 人工智能 人工智能 机器学习");
+        index.add("2", "人工智能 汽车");
+        index.add("3", "汽车 工艺");
+
+        List<InvertedIndex.Hit> hits = index.search("人工智能", id -> true, 1, 0);
+        assertEquals(1, hits.size());
+        assertEquals("1", hits.get(0).id());
+
+        // 过滤条件作用于候选文档
+        hits = index.search("人工智能", id -> !"1".equals(id), 3, 0);
+        assertEquals(List.of("2"), hits.stream().map(InvertedIndex.Hit::id).toList());
+    }
+
+    @Test
+    public void testFullScanFallback() {
+        TextBasedVectorStore store = sparseBuilder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN).build();
+        store.add(corpus());
+
+        List<Document> result = store.similaritySearch(SearchRequest.builder().query("机器学习和人工智能").topK(3).build());
+        System.out.println("全量扫描检索结果: " + result.stream().map(d -> d.getId() + ":" + d.getScore()).toList());
+        assertFalse(result.isEmpty());
+    }
+
+    @Test
+    public void testSparseVectorSimilarity() {
+        float[] vec1 = DocumentQuantizer.quantizeSparse("人工智能技术在医疗领域的应用");
+        float[] vec2 = DocumentQuantizer.quantizeSparse("人工智能在医疗中的应用");
+        float[] vec3 = DocumentQuantizer.quantizeSparse("汽车制造工艺流程");
+
+        // 只保存非零项，且自身相似度为1
+        assertEquals(0, vec1.length % 2);
+        assertEquals(1.0, DocumentQuantizer.calculateSparseSimilarity(vec1, vec1), 1e-5);
+
+        double similarity12 = DocumentQuantizer.calculateSparseSimilarity(vec1, vec2);
+        double similarity13 = DocumentQuantizer.calculateSparseSimilarity(vec1, vec3);
+        System.out.println("稀疏向量相似度: " + similarity12 + " / " + similarity13);
+        assertTrue(similarity12 > 0.5);
+        assertEquals(0.0, similarity13, 1e-5);
+    }
+
+    @Test
+    public void testSimilarityKernel() {
+        float[] vec1 = DocumentQuantizer.quantizeText("人工智能技术在医疗领域的应用，人工智能");
+        float[] vec2 = DocumentQuantizer.quantizeText("人工智能在医疗中的应用");
+        double expected = DocumentQuantizer.calculateCosineSimilarity(vec1, vec2);
+
+        // 预归一化之后，点积与原有的余弦相似度一致
+        double actual = SimilarityKernel.dot(SimilarityKernel.normalize(vec1.clone()), SimilarityKernel.normalize(vec2.clone()));
+        assertEquals(expected, actual, 1e-5);
+        assertEquals(0.0, SimilarityKernel.dot(new float[3], SimilarityKernel.normalize(new float[3])), 1e-9);
+    }
+
+    @Test
+    public void testSegmentPersistence(@TempDir Path dir) {
+        TextBasedVectorStore store = sparseBuilder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN).build();
+        store.openSegment(dir.toFile());
+        store.add(corpus());
+        String carId = store.similaritySearch(SearchRequest.builder().query("汽车制造工艺").topK(1).build()).get(0).getId();
+        store.delete(List.of(carId));
+        store.close();
+
+        // 重启后通过内存映射加载，已删除的文档不再返回
+        TextBasedVectorStore reopened = sparseBuilder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN).build();
+        reopened.openSegment(dir.toFile());
+        assertTrue(reopened.getStore().isEmpty());
+
+        List<Document> result = reopened.similaritySearch(SearchRequest.builder().query("机器学习和人工智能").topK(3).similarityThreshold(0.1).build());
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).getId().startsWith("ai"));
+        assertEquals("ai", result.get(0).getMetadata().get("md5"));
+        assertTrue(reopened.similaritySearch(SearchRequest.builder().query("汽车制造工艺").topK(3).similarityThreshold(0.1).build()).isEmpty());
+
+        // 新增的文档追加写入段文件
+        reopened.add(List.of(new Document("bridge", "南京市长江大桥非常壮观", Map.of("md5", "bridge"))));
+        reopened.close();
+        TextBasedVectorStore third = sparseBuilder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN).build();
+        third.openSegment(dir.toFile());
+        assertEquals(1, third.similaritySearch(SearchRequest.builder().query("长江大桥").topK(3).similarityThreshold(0.1).build()).size());
+        third.close();
+    }
+
+    @Test
+    public void testMetadataFilter() {
+        for (TextBasedVectorStore.SearchMode mode : TextBasedVectorStore.SearchMode.values()) {
+            TextBasedVectorStore store = sparseBuilder().searchMode(mode).build();
+            store.add(corpus());
+            store.add(List.of(new Document("ai2", "人工智能在医疗领域的应用越来越广泛。", Map.of("md5", "ai2", "page", 3))));
+
+            // 命中二级索引的等值条件
+            List<Document> result = store.similaritySearch(SearchRequest.builder().query("人工智能").topK(3).similarityThreshold(0.1).filterExpression("md5 == 'ai2'").build());
+            assertEquals(List.of("ai2"), result.stream().map(d -> (String) d.getMetadata().get("md5")).toList());
+
+            // 无法走索引的条件，逐个文档判断
+            result = store.similaritySearch(SearchRequest.builder().query("人工智能").topK(3).similarityThreshold(0.1).filterExpression("page >= 3 || md5 in ['car']").build());
+            assertEquals(List.of("ai2"), result.stream().map(d -> (String) d.getMetadata().get("md5")).toList());
+
+            result = store.similaritySearch(SearchRequest.builder().query("人工智能").topK(3).similarityThreshold(0.1).filterExpression("md5 in ['ai', 'ai2'] && NOT (page == 3)").build());
+            assertEquals(List.of("ai"), result.stream().map(d -> (String) d.getMetadata().get("md5")).toList());
+        }
+    }
+
+    @Test
+    public void testMetadataIndex() {
+        MetadataIndex index = new MetadataIndex(Set.of("year"));
+        index.add("d1", Map.of("year", 2024));
+        index.add("d2", Map.of("year", "2024"));
+        // 数值按 double 比较，与字符串不相等
+        assertEquals(Set.of("d1"), index.ids("year", 2024.0));
+        assertEquals(Set.of("d1"), index.ids("year", 2024L));
+        assertEquals(Set.of("d2"), index.ids("year", "2024"));
+
+        // 重新添加时清理旧的索引项
+        index.add("d1", Map.of("year", 2025));
+        assertTrue(index.ids("year", 2024).isEmpty());
+        assertEquals(Set.of("d1"), index.ids("year", 2025));
+        index.add("d1", Map.of());
+        assertTrue(index.ids("year", 2025).isEmpty());
+
+        index.remove("d2");
+        assertTrue(index.ids("year", "2024").isEmpty());
+
+        // 持久化后数值可能以 2024.0 读回，过滤条件中的 2024 仍能命中索引
+        TextBasedVectorStore store = sparseBuilder().indexedMetadataKeys(Set.of("md5", "year")).build();
+        store.add(List.of(new Document("ai", "人工智能在医疗领域的应用越来越广泛。", Map.of("md5", "ai", "year", 2024.0))));
+        List<Document> result = store.similaritySearch(SearchRequest.builder().query("人工智能").topK(3).similarityThreshold(0.1).filterExpression("year == 2024").build());
+        assertEquals(List.of("ai"), result.stream().map(d -> (String) d.getMetadata().get("md5")).toList());
+    }
+
+    @Test
+    public void testDedupRegistry(@TempDir Path dir) {
+        TextBasedVectorStore store = sparseBuilder().build();
+        store.openSegment(dir.toFile());
+        store.add(corpus());
+        // 同一个文件中内容完全相同的分片只保存一份
+        store.add(List.of(new Document("dup1", "每一页都重复的版权声明。", Map.of("md5", "dup")),
+                new Document("dup2", "每一页都重复的版权声明。", Map.of("md5", "dup"))));
+        assertEquals(4, store.getStore().size());
+        // 不同文件中相同的分片各自保存，按 md5 过滤时都能查到
+        store.add(List.of(new Document("ai-copy", "人工智能是计算机科学的重要分支，机器学习是人工智能的核心技术。", Map.of("md5", "ai-copy"))));
+        assertEquals(5, store.getStore().size());
+        List<Document> result = store.similaritySearch(SearchRequest.builder().query("人工智能").topK(3).filterExpression("md5 == 'ai-copy'").build());
+        assertEquals(List.of("ai-copy"), result.stream().map(d -> (String) d.getMetadata().get("md5")).toList());
+        store.close();
+
+        // 重启后已导入的文件直接跳过，不会重新分片量化
+        TextBasedVectorStore reopened = sparseBuilder().build();
+        reopened.openSegment(dir.toFile());
+        reopened.add(List.of(new Document("food2", "同一个文件重新上传", Map.of("md5", "food"))));
+        assertTrue(reopened.getStore().isEmpty());
+
+        // 删除某个文件的分片，不影响其他文件中相同内容的分片
+        reopened.delete(List.of(idOf(reopened, "ai-copy")));
+        reopened.add(List.of(new Document("ai3", "人工智能是计算机科学的重要分支，机器学习是人工智能的核心技术。", Map.of("md5", "ai3"))));
+        assertEquals(1, reopened.getStore().size());
+        reopened.close();
+    }
+
+    @Test
+    public void testDedupAfterDelete() {
+        TextBasedVectorStore store = sparseBuilder().build();
+        store.add(List.of(new Document("a1", "汽车制造工艺流程包括冲压、焊装、涂装和总装四大工艺。", Map.of())));
+        store.add(List.of(new Document("a2", "汽车制造工艺流程包括冲压、焊装、涂装和总装四大工艺。", Map.of())));
+        assertEquals(1, store.getStore().size());
+
+        // 删除后允许重新导入相同内容的分片
+        store.delete(List.copyOf(store.getStore().keySet()));
+        store.add(List.of(new Document("a3", "汽车制造工艺流程包括冲压、焊装、涂装和总装四大工艺。", Map.of())));
+        assertEquals(1, store.getStore().size());
+    }
+
+    @Test
+    public void testAddChunks() {
+        TextBasedVectorStore store = sparseBuilder().build();
+        DocumentChunker chunker = new DocumentChunker(10, 0);
+        List<Document> chunks = chunker.chunkDocument(new Document("doc", "第一句话比较长一些。第二句话也比较长。", Map.of("md5", "doc")));
+        assertEquals(2, chunks.size());
+
+        // 已分片的文档直接写入，不再按默认分片器重新分片
+        store.addChunks(chunks);
+        assertEquals(Set.of("doc_chunk_0", "doc_chunk_1"), store.getStore().keySet());
+
+        // 同一个文件的分片再次写入时按md5去重
+        store.addChunks(chunker.chunkDocument(new Document("doc2", "第一句话比较长一些。第二句话也比较长。", Map.of("md5", "doc"))));
+        assertEquals(2, store.getStore().size());
+    }
+
+    private static String idOf(TextBasedVectorStore store, String md5) {
+        return store.similaritySearch(SearchRequest.builder().query("人工智能").topK(10).similarityThreshold(0).filterExpression("md5 == '" + md5 + "'").build())
+                .get(0).getId();
+    }
+
+    @Test
+    public void testLoadWithDifferentQuantizationMode(@TempDir Path dir) throws Exception {
+        TextBasedVectorStore dense = TextBasedVectorStore.builder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN)
+                .quantizationMode(TextBasedVectorStore.QuantizationMode.DENSE_TOP_FREQUENCY).build();
+        dense.add(corpus());
+        File saved = dir.resolve("dense.json").toFile();
+        dense.save(saved);
+
+        // 旧版本的持久化文件只有文档映射，没有记录量化模式
+        String json = Files.readString(saved.toPath(), StandardCharsets.UTF_8);
+        String legacy = new com.fasterxml.jackson.databind.ObjectMapper().readTree(json).get("documents").toString();
+        File legacyFile = dir.resolve("legacy.json").toFile();
+        Files.writeString(legacyFile.toPath(), legacy, StandardCharsets.UTF_8);
+
+        for (File file : List.of(saved, legacyFile)) {
+            TextBasedVectorStore sparse = sparseBuilder().searchMode(TextBasedVectorStore.SearchMode.FULL_SCAN).build();
+            sparse.load(file);
+            List<Document> result = sparse.similaritySearch(SearchRequest.builder().query("汽车制造工艺").topK(1).build());
+            assertEquals("car", result.get(0).getMetadata().get("md5"));
+            assertTrue(result.get(0).getScore() > 0.1);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.git.hui.springai.app.context;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有容量上限的对话记忆
+ * <p>
+ * 替代所有对话共用、只按条数截断且永不释放的 MessageWindowChatMemory：
+ * <ul>
+ *     <li>单个对话按估算的token数截断，超出预算时从最早的一轮对话开始丢弃，保证剩余的历史从一条用户消息开始，不会留下孤立的工具调用结果</li>
+ *     <li>所有对话的总token数、对话数有上限，超出时淘汰最久未访问的对话(LRU)</li>
+ *     <li>超过空闲时间未访问的对话直接淘汰</li>
+ * </ul>
+ * 当前驻留的对话数、token数与估算的内存占用可以通过 /api/memory/stats 查看，存在 MeterRegistry 时同时注册为监控指标
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Component
+public class BoundedChatMemory implements ChatMemory {
+    private static final Logger log = LoggerFactory.getLogger(BoundedChatMemory.class);
+
+    /**
+     * 每条消息的固定开销：token数按角色、分隔符估算，字节数按消息对象本身估算
+     */
+    private static final int MESSAGE_TOKENS = 4;
+    private static final int MESSAGE_BYTES = 64;
+
+    /**
+     * 按访问顺序排列的对话，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Conversation> conversations = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final int maxConversations;
+
+    private final long maxTotalTokens;
+
+    private final int maxTokensPerConversation;
+
+    private final long idleTimeout;
+
+    private long totalTokens;
+
+    private long totalBytes;
+
+    private final LongAdder idleEvictions = new LongAdder();
+
+    private final LongAdder capacityEvictions = new LongAdder();
+
+    private final LongAdder trimmedMessages = new LongAdder();
+
+    public BoundedChatMemory(ObjectProvider<MeterRegistry> meterRegistry,
+                             @Value("${chat.memory.max-conversations:1000}") int maxConversations,
+                             @Value("${chat.memory.max-total-tokens:2000000}") long maxTotalTokens,
+                             @Value("${chat.memory.max-tokens-per-conversation:8000}") int maxTokensPerConversation,
+                             @Value("${chat.memory.idle-timeout:30m}") Duration idleTimeout) {
+        this.maxConversations = maxConversations;
+        this.maxTotalTokens = maxTotalTokens;
+        this.maxTokensPerConversation = maxTokensPerConversation;
+        this.idleTimeout = idleTimeout.toMillis();
+        meterRegistry.ifAvailable(this::bindTo);
+    }
+
+    @Override
+    public synchronized void add(String conversationId, List<Message> messages) {
+        long now = System.currentTimeMillis();
+        evictIdle(now);
+
+        Conversation conversation = conversations.computeIfAbsent(conversationId, k -> new Conversation());
+        conversation.lastAccess = now;
+        for (Message message : messages) {
+            Entry entry = new Entry(message, estimateTokens(message), estimateBytes(message));
+            conversation.entries.add(entry);
+            conversation.tokens += entry.tokens();
+            totalTokens += entry.tokens();
+            totalBytes += entry.bytes();
+        }
+        trim(conversation);
+        evictOverCapacity(conversationId);
+    }
+
+    @Override
+    public synchronized List<Message> get(String conversationId) {
+        long now = System.currentTimeMillis();
+        evictIdle(now);
+
+        Conversation conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return List.of();
+        }
+        conversation.lastAccess = now;
+        List<Message> result = new ArrayList<>(conversation.entries.size());
+        for (Entry entry : conversation.entries) {
+            result.add(entry.message());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void clear(String conversationId) {
+        release(conversations.remove(conversationId));
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(conversations.size(), totalTokens, totalBytes,
+                idleEvictions.sum(), capacityEvictions.sum(), trimmedMessages.sum());
+    }
+
+    /**
+     * 单个对话超出token预算时，按轮次丢弃最早的历史：每次从第一条非系统消息开始，删除到下一条用户消息之前；
+     * 只剩最后一轮时即使超出预算也保留，避免把当前的提问与工具调用拆开
+     */
+    private void trim(Conversation conversation) {
+        while (conversation.tokens > maxTokensPerConversation) {
+            int first = firstNonSystem(conversation.entries);
+            int next = nextUserMessage(conversation.entries, first + 1);
+            if (first < 0 || next < 0) {
+                return;
+            }
+            Iterator<Entry> iterator = conversation.entries.listIterator(first);
+            for (int i = first; i < next; i++) {
+                Entry entry = iterator.next();
+                iterator.remove();
+                conversation.tokens -= entry.tokens();
+                totalTokens -= entry.tokens();
+                totalBytes -= entry.bytes();
+                trimmedMessages.increment();
+            }
+        }
+    }
+
+    /**
+     * 淘汰超过空闲时间的对话；按访问顺序遍历，遇到未过期的对话即可停止
+     */
+    private void evictIdle(long now) {
+        Iterator<Map.Entry<String, Conversation>> iterator = conversations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Conversation> entry = iterator.next();
+            if (now - entry.getValue().lastAccess < idleTimeout) {
+                return;
+            }
+            iterator.remove();
+            release(entry.getValue());
+            idleEvictions.increment();
+            log.debug("淘汰空闲对话: {}", entry.getKey());
+        }
+    }
+
+    /**
+     * 对话数或总token数超出上限时淘汰最久未访问的对话，当前正在写入的对话不淘汰
+     */
+    private void evictOverCapacity(String current) {
+        Iterator<Map.Entry<String, Conversation>> iterator = conversations.entrySet().iterator();
+        while ((conversations.size() > maxConversations || totalTokens > maxTotalTokens) && iterator.hasNext()) {
+            Map.Entry<String, Conversation> entry = iterator.next();
+            if (entry.getKey().equals(current)) {
+                continue;
+            }
+            iterator.remove();
+            release(entry.getValue());
+            capacityEvictions.increment();
+            log.info("对话记忆超出容量，淘汰对话: {}", entry.getKey());
+        }
+    }
+
+    private void release(Conversation conversation) {
+        if (conversation == null) {
+            return;
+        }
+        for (Entry entry : conversation.entries) {
+            totalTokens -= entry.tokens();
+            totalBytes -= entry.bytes();
+        }
+    }
+
+    private static int firstNonSystem(List<Entry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).message().getMessageType() != MessageType.SYSTEM) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int nextUserMessage(List<Entry> entries, int from) {
+        for (int i = from; i < entries.size(); i++) {
+            if (entries.get(i).message().getMessageType() == MessageType.USER) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 估算消息的token数：中文等宽字符每个字约1个token，其余字符约4个一个token；工具调用的参数与返回结果同样计入
+     */
+    static int estimateTokens(Message message) {
+        int wide = 0, narrow = 0;
+        for (String text : texts(message)) {
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) >= 0x2E80) {
+                    wide++;
+                } else {
+                    narrow++;
+                }
+            }
+        }
+        return MESSAGE_TOKENS + wide + (narrow + 3) / 4;
+    }
+
+    /**
+     * 估算消息占用的内存：文本按每个字符2个字节计算，加上消息对象的固定开销
+     */
+    static long estimateBytes(Message message) {
+        long bytes = MESSAGE_BYTES;
+        for (String text : texts(message)) {
+            bytes += 2L * text.length();
+        }
+        return bytes;
+    }
+
+    private static List<String> texts(Message message) {
+        List<String> texts = new ArrayList<>(2);
+        if (message.getText() != null) {
+            texts.add(message.getText());
+        }
+        if (message instanceof AssistantMessage assistant && assistant.hasToolCalls()) {
+            for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                texts.add(call.name() + call.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage toolResponse) {
+            for (ToolResponseMessage.ToolResponse response : toolResponse.getResponses()) {
+                texts.add(response.name() + response.responseData());
+            }
+        }
+        return texts;
+    }
+
+    private void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.memory.conversations", this, m -> m.stats().conversations()).register(registry);
+        Gauge.builder("chat.memory.tokens", this, m -> m.stats().tokens()).register(registry);
+        Gauge.builder("chat.memory.bytes", this, m -> m.stats().bytes()).baseUnit("bytes").register(registry);
+        FunctionCounter.builder("chat.memory.evictions", idleEvictions, LongAdder::sum).tag("reason", "idle").register(registry);
+        FunctionCounter.builder("chat.memory.evictions", capacityEvictions, LongAdder::sum).tag("reason", "capacity").register(registry);
+        FunctionCounter.builder("chat.memory.trimmed.messages", trimmedMessages, LongAdder::sum).register(registry);
+    }
+
+    private static class Conversation {
+        /**
+         * 截断时需要从中间按位置删除，使用链表
+         */
+        private final LinkedList<Entry> entries = new LinkedList<>();
+        private int tokens;
+        private long lastAccess;
+    }
+
+    private record Entry(Message message, int tokens, long bytes) {
+    }
+
+    /**
+     * 对话记忆统计
+     *
+     * @param conversations     驻留的对话数
+     * @param tokens            驻留的消息估算token数
+     * @param bytes             驻留的消息估算内存占用
+     * @param idleEvictions     因空闲超时被淘汰的对话数
+     * @param capacityEvictions 因超出容量被淘汰的对话数
+     * @param trimmedMessages   因超出单个对话token预算被丢弃的消息数
+     */
+    public record Stats(int conversations, long tokens, long bytes,
+                        long idleEvictions, long capacityEvictions, long trimmedMessages) {
+    }
+}
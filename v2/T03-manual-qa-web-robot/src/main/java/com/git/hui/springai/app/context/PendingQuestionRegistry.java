@@ -0,0 +1,116 @@
+package com.git.hui.springai.app.context;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 等待用户回答的问题
+ * <p>
+ * 大模型通过 AskUserQuestionTool 向用户提问后，对话挂起在一个 CompletableFuture 上，用户通过 /api/send/{chatId} 回答时完成该 future；
+ * 超时、对话结束或者页面断开时 future 同样会完成，并从注册表中移除，不会残留等待状态。
+ * 同时等待回答的问题数有上限，超过上限时不再向用户提问
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Component
+public class PendingQuestionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(PendingQuestionRegistry.class);
+
+    /**
+     * chatId -> 等待中的回答，每个对话同时只有一个等待回答的问题
+     */
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+
+    /**
+     * 等待用户回答的超时时间
+     */
+    private final Duration timeout;
+
+    public PendingQuestionRegistry(@Value("${chat.question.max-pending:200}") int maxPending,
+                                   @Value("${chat.question.timeout:5m}") Duration timeout) {
+        this.permits = new Semaphore(maxPending);
+        this.timeout = timeout;
+    }
+
+    /**
+     * 注册一个等待回答的问题，需要在向用户发送问题之前注册，避免用户回答得比注册更快
+     *
+     * @param chatId 对话id
+     * @return 用户的回答；等待中的问题数已达上限时返回null
+     */
+    public CompletableFuture<String> register(String chatId) {
+        if (!permits.tryAcquire()) {
+            log.warn("等待回答的问题数已达上限，chatId: {}", chatId);
+            return null;
+        }
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        // 超时后自动完成，释放等待状态
+        answer.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((res, e) -> {
+                    pending.remove(chatId, answer);
+                    permits.release();
+                });
+        CompletableFuture<String> previous = pending.put(chatId, answer);
+        if (previous != null) {
+            previous.complete("");
+        }
+        return answer;
+    }
+
+    /**
+     * 等待用户的回答，超时或被取消时返回空字符串
+     */
+    public String await(CompletableFuture<String> answer) {
+        try {
+            return answer.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                log.info("等待用户回答超时");
+            }
+            return "";
+        }
+    }
+
+    /**
+     * 用户回答问题
+     *
+     * @param chatId 对话id
+     * @param msg    回答内容
+     * @return 对话中没有等待回答的问题时返回false
+     */
+    public boolean answer(String chatId, String msg) {
+        CompletableFuture<String> answer = pending.get(chatId);
+        return answer != null && answer.complete(msg);
+    }
+
+    /**
+     * 对话结束或页面断开时，取消该对话中等待回答的问题
+     */
+    public void cancel(String chatId) {
+        CompletableFuture<String> answer = pending.get(chatId);
+        if (answer != null) {
+            answer.complete("");
+        }
+    }
+
+    /**
+     * 当前等待回答的问题数
+     */
+    public int size() {
+        return pending.size();
+    }
+}
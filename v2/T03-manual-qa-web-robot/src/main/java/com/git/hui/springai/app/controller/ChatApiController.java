@@ -1,20 +1,25 @@
 package com.git.hui.springai.app.controller;
 
 import com.git.hui.springai.app.advisor.MyLoggingAdvisor;
+import com.git.hui.springai.app.context.BoundedChatMemory;
+import com.git.hui.springai.app.context.PendingQuestionRegistry;
 import com.git.hui.springai.app.context.ReqContextHolder;
 import com.git.hui.springai.app.util.QwenImgGen;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springaicommunity.agent.tools.AskUserQuestionTool;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.ToolCallAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.image.Image;
 import org.springframework.ai.image.ImageModel;
 import org.springframework.ai.image.ImageOptionsBuilder;
 import org.springframework.ai.image.ImagePrompt;
 import org.springframework.ai.image.ImageResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -32,10 +37,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author YiHui
@@ -44,16 +53,31 @@ import java.util.concurrent.TimeUnit;
 @RequestMapping("/api")
 @RestController
 public class ChatApiController {
+    private static final Logger log = LoggerFactory.getLogger(ChatApiController.class);
 
     private final ChatClient chatClient;
 
     private final ImageModel imgModel;
 
+    private final PendingQuestionRegistry pendingQuestions;
+
+    private final BoundedChatMemory chatMemory;
+
+    /**
+     * 执行对话的线程池，对话在等待用户回答期间会挂起执行线程
+     */
+    private final ExecutorService chatExecutor;
+
     @Autowired
     private Environment environment;
 
-    public ChatApiController(ChatClient.Builder chatClientBuilder, ImageModel imgModel) {
+    public ChatApiController(ChatClient.Builder chatClientBuilder, ImageModel imgModel,
+                             PendingQuestionRegistry pendingQuestions, BoundedChatMemory chatMemory,
+                             @Value("${chat.executor.max-chats:64}") int maxChats) {
         this.imgModel = imgModel;
+        this.pendingQuestions = pendingQuestions;
+        this.chatMemory = chatMemory;
+        this.chatExecutor = newExecutor(maxChats);
         this.chatClient = chatClientBuilder
                 .defaultTools(AskUserQuestionTool.builder()
                         .questionHandler(new WebQuestionHandler())
@@ -63,7 +87,7 @@ public class ChatApiController {
                         // Tool calling advisor
                         ToolCallAdvisor.builder().conversationHistoryEnabled(false).build(),
                         // Chat memory advisor - after the tool calling advisor to remember tool calls
-                        MessageChatMemoryAdvisor.builder(MessageWindowChatMemory.builder().maxMessages(500).build()).build(),
+                        MessageChatMemoryAdvisor.builder(chatMemory).build(),
                         // Custom logging advisor
                         MyLoggingAdvisor.builder()
                                 .showAvailableTools(true)
@@ -72,71 +96,115 @@ public class ChatApiController {
                 .build();
     }
 
+    /**
+     * 优先使用虚拟线程，等待用户回答时只挂起虚拟线程，不占用平台线程；项目按JDK17编译，通过反射获取 JDK 21 的 Executors#newVirtualThreadPerTaskExecutor。
+     * 不支持虚拟线程时使用有上限的平台线程池，超出上限的对话直接拒绝
+     */
+    private static ExecutorService newExecutor(int maxChats) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("对话使用虚拟线程执行");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.info("当前JDK不支持虚拟线程，对话使用最多 {} 个平台线程执行", maxChats);
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxChats, maxChats, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(maxChats),
+                    r -> {
+                        Thread thread = new Thread(r, "chat-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        chatExecutor.shutdownNow();
+    }
+
     @GetMapping(path = "/chat/{chatId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter startChat(@PathVariable("chatId") String chatId,
                                 @RequestParam("question") String question) {
         SseEmitter sseEmitter = new SseEmitter(Long.MAX_VALUE);
-        ReqContextHolder.setReqId(new ReqContextHolder.ReqInfo(chatId, sseEmitter));
+        // 页面断开时取消等待中的问题，对话线程不必等到超时
+        sseEmitter.onCompletion(() -> pendingQuestions.cancel(chatId));
+        sseEmitter.onError(e -> pendingQuestions.cancel(chatId));
 
-        // 启动异步线程处理SSE响应
-        Thread thread = new Thread(() -> {
+        try {
+            chatExecutor.execute(() -> chat(chatId, question, sseEmitter));
+        } catch (RejectedExecutionException e) {
+            log.warn("进行中的对话过多，拒绝对话: {}", chatId);
             try {
-                try {
-                    String content = chatClient.prompt(question)
-                            .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, chatId))
-                            .call()
-                            .content();
-                    System.out.println("---> 接收大模型返回: " + content.replaceAll("\n", "\t"));
-                    sseEmitter.send(content);
-
-                    // 发送结束信号
-                    sseEmitter.send(SseEmitter.event().name("done").data(""));
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-                // 等待一段时间以确保前端收到done事件
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            } catch (Exception e) {
-                try {
-                    sseEmitter.send(SseEmitter.event()
-                            .name("error")
-                            .data("Exception occurred: " + e.getMessage()));
-                } catch (IOException ioException) {
-                    throw new RuntimeException(ioException);
-                }
-            } finally {
-                sseEmitter.complete();
-                ReqContextHolder.clear();
+                sseEmitter.send(SseEmitter.event().name("error").data("当前对话过多，请稍后再试"));
+            } catch (IOException ioException) {
+                log.debug("发送拒绝消息失败", ioException);
             }
-        });
-
-        thread.start();
-
+            sseEmitter.complete();
+        }
         return sseEmitter;
     }
 
-    private Map<String, BlockingQueue<String>> chatHistory = new ConcurrentHashMap<>();
+    private void chat(String chatId, String question, SseEmitter sseEmitter) {
+        ReqContextHolder.setReqId(new ReqContextHolder.ReqInfo(chatId, sseEmitter));
+        try {
+            try {
+                String content = chatClient.prompt(question)
+                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, chatId))
+                        .call()
+                        .content();
+                System.out.println("---> 接收大模型返回: " + content.replaceAll("\n", "\t"));
+                sseEmitter.send(content);
+
+                // 发送结束信号
+                sseEmitter.send(SseEmitter.event().name("done").data(""));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            // 等待一段时间以确保前端收到done事件
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (Exception e) {
+            try {
+                sseEmitter.send(SseEmitter.event()
+                        .name("error")
+                        .data("Exception occurred: " + e.getMessage()));
+            } catch (IOException ioException) {
+                throw new RuntimeException(ioException);
+            }
+        } finally {
+            sseEmitter.complete();
+            pendingQuestions.cancel(chatId);
+            ReqContextHolder.clear();
+        }
+    }
 
     /**
-     * 用户给大模型发送的消息
+     * 用户给大模型发送的消息，即对大模型提问的回答
      *
      * @param chatId
      * @param msg
-     * @return
+     * @return 对话中没有等待回答的问题时返回false
      */
     @GetMapping(path = "/send/{chatId}")
     public Boolean sendMsg(@PathVariable("chatId") String chatId, @RequestParam String msg) {
-        BlockingQueue<String> history = chatHistory.get(chatId);
-        if (history == null) {
-            chatHistory.put(chatId, new LinkedBlockingQueue<>());
-        }
-        chatHistory.get(chatId).add(msg);
-        return true;
+        return pendingQuestions.answer(chatId, msg);
+    }
+
+    /**
+     * 对话记忆的驻留情况
+     *
+     * @return 驻留的对话数、token数、估算的内存占用以及淘汰次数
+     */
+    @GetMapping(path = "/memory/stats")
+    public BoundedChatMemory.Stats memoryStats() {
+        return chatMemory.stats();
     }
 
 
@@ -193,6 +261,13 @@ public class ChatApiController {
 
             // 遍历所有需要询问用户的问题
             for (AskUserQuestionTool.Question q : questions) {
+                // 先注册等待状态再发送问题，避免用户的回答早于注册
+                CompletableFuture<String> pending = pendingQuestions.register(req.chatId());
+                if (pending == null) {
+                    answers.put(q.question(), "用户当前无法回答，请根据已有信息继续");
+                    continue;
+                }
+
                 // 向用户发送问题标题和内容
                 sendMsg(sseEmitter, "\n" + q.header() + ": " + q.question());
 
@@ -211,26 +286,8 @@ public class ChatApiController {
                     sendMsg(sseEmitter, "  (Enter a number, or type custom text)");
                 }
 
-                // 阻塞等待用户输入
-                BlockingQueue<String> queue = chatHistory.get(req.chatId());
-                // 如果队列不存在，则创建新的队列
-                if (queue == null) {
-                    queue = new LinkedBlockingQueue<>();
-                    chatHistory.put(req.chatId(), queue);
-                }
-                
-                String response = null;
-                try {
-                    // 等待最多5分钟获取用户响应，超时则返回空字符串
-                    response = queue.poll(5, TimeUnit.MINUTES);
-                    if (response == null) {
-                        response = ""; // 超时情况下的默认响应
-                    }
-                } catch (InterruptedException e) {
-                    // 线程被中断时设置中断状态并返回空字符串
-                    Thread.currentThread().interrupt();
-                    response = "";
-                }
+                // 挂起等待用户输入，超时、对话结束时返回空字符串
+                String response = pendingQuestions.await(pending);
 
                 // 解析用户响应并存入答案映射
                 answers.put(q.question(), parseResponse(response, options));
@@ -0,0 +1,197 @@
+package com.git.hui.springai.app.context;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对话记忆的截断、淘汰，以及 token/内存占用统计在截断、淘汰、清空之后的一致性
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class BoundedChatMemoryTest {
+
+    private final Message system = new SystemMessage("你是一个问答助手");
+
+    private static BoundedChatMemory memory(int maxConversations, long maxTotalTokens, int maxTokensPerConversation, Duration idleTimeout) {
+        return memory(new StaticListableBeanFactory(), maxConversations, maxTotalTokens, maxTokensPerConversation, idleTimeout);
+    }
+
+    private static BoundedChatMemory memory(StaticListableBeanFactory beanFactory, int maxConversations, long maxTotalTokens,
+                                            int maxTokensPerConversation, Duration idleTimeout) {
+        return new BoundedChatMemory(beanFactory.getBeanProvider(MeterRegistry.class),
+                maxConversations, maxTotalTokens, maxTokensPerConversation, idleTimeout);
+    }
+
+    /**
+     * 一轮带工具调用的对话：用户提问 -> 模型发起工具调用 -> 工具返回 -> 模型回答
+     */
+    private static List<Message> toolTurn(String question) {
+        return List.of(
+                new UserMessage(question),
+                AssistantMessage.builder().content("")
+                        .toolCalls(List.of(new AssistantMessage.ToolCall("call-1", "function", "queryWeather", "{\"city\":\"武汉\"}")))
+                        .build(),
+                ToolResponseMessage.builder()
+                        .responses(List.of(new ToolResponseMessage.ToolResponse("call-1", "queryWeather", "武汉今天晴，25度")))
+                        .build(),
+                new AssistantMessage("武汉今天天气晴朗，气温25度"));
+    }
+
+    private static void assertTotals(BoundedChatMemory memory, List<List<Message>> conversations) {
+        long tokens = 0, bytes = 0;
+        for (List<Message> messages : conversations) {
+            for (Message message : messages) {
+                tokens += BoundedChatMemory.estimateTokens(message);
+                bytes += BoundedChatMemory.estimateBytes(message);
+            }
+        }
+        BoundedChatMemory.Stats stats = memory.stats();
+        assertEquals(conversations.size(), stats.conversations());
+        assertEquals(tokens, stats.tokens());
+        assertEquals(bytes, stats.bytes());
+    }
+
+    @Test
+    public void testTrimAcrossToolCallTurns() {
+        BoundedChatMemory memory = memory(10, 1_000_000, 1, Duration.ofMinutes(30));
+        List<Message> messages = new ArrayList<>();
+        messages.add(system);
+        messages.addAll(toolTurn("武汉今天天气怎么样"));
+        messages.addAll(toolTurn("明天呢"));
+        memory.add("c1", messages);
+
+        // 超出预算时按轮次丢弃：系统消息保留，第一轮的工具调用与工具结果一起被丢弃，最后一轮即使超出预算也完整保留
+        List<Message> kept = memory.get("c1");
+        assertEquals(5, kept.size());
+        assertSame(system, kept.get(0));
+        assertEquals("明天呢", kept.get(1).getText());
+        assertTrue(((AssistantMessage) kept.get(2)).hasToolCalls());
+        assertInstanceOf(ToolResponseMessage.class, kept.get(3));
+        assertEquals(4, memory.stats().trimmedMessages());
+        assertTotals(memory, List.of(kept));
+
+        // 下一轮只有用户提问时，上一轮完整地被丢弃，不会留下孤立的工具结果
+        memory.add("c1", List.of(new UserMessage("后天呢")));
+        kept = memory.get("c1");
+        assertEquals(2, kept.size());
+        assertSame(system, kept.get(0));
+        assertEquals("后天呢", kept.get(1).getText());
+        assertEquals(8, memory.stats().trimmedMessages());
+        assertTotals(memory, List.of(kept));
+    }
+
+    @Test
+    public void testKeepWithinBudget() {
+        List<Message> turn = toolTurn("武汉今天天气怎么样");
+        int turnTokens = turn.stream().mapToInt(BoundedChatMemory::estimateTokens).sum();
+        BoundedChatMemory memory = memory(10, 1_000_000, turnTokens * 2, Duration.ofMinutes(30));
+        memory.add("c1", turn);
+        memory.add("c1", toolTurn("明天呢"));
+        assertEquals(8, memory.get("c1").size());
+        assertEquals(0, memory.stats().trimmedMessages());
+
+        // 第三轮超出预算，丢弃最早的一轮
+        memory.add("c1", toolTurn("后天呢"));
+        List<Message> kept = memory.get("c1");
+        assertEquals(8, kept.size());
+        assertEquals("明天呢", kept.get(0).getText());
+        assertTotals(memory, List.of(kept));
+    }
+
+    @Test
+    public void testIdleEviction() {
+        BoundedChatMemory memory = memory(10, 1_000_000, 8000, Duration.ZERO);
+        memory.add("c1", toolTurn("武汉今天天气怎么样"));
+        assertEquals(1, memory.stats().conversations());
+
+        // 空闲时间为0时，下一次访问之前的对话都已过期
+        assertTrue(memory.get("c1").isEmpty());
+        BoundedChatMemory.Stats stats = memory.stats();
+        assertEquals(1, stats.idleEvictions());
+        assertTotals(memory, List.of());
+    }
+
+    @Test
+    public void testCapacityEviction() {
+        BoundedChatMemory memory = memory(2, 1_000_000, 8000, Duration.ofMinutes(30));
+        List<Message> c1 = toolTurn("武汉今天天气怎么样");
+        List<Message> c2 = toolTurn("北京今天天气怎么样");
+        List<Message> c3 = toolTurn("上海今天天气怎么样");
+        memory.add("c1", c1);
+        memory.add("c2", c2);
+        // 访问 c1 之后 c2 成为最久未访问的对话
+        assertEquals(4, memory.get("c1").size());
+        memory.add("c3", c3);
+
+        assertTrue(memory.get("c2").isEmpty());
+        assertEquals(4, memory.get("c1").size());
+        assertEquals(4, memory.get("c3").size());
+        assertEquals(1, memory.stats().capacityEvictions());
+        assertTotals(memory, List.of(c1, c3));
+    }
+
+    @Test
+    public void testTotalTokenEviction() {
+        List<Message> c1 = toolTurn("武汉今天天气怎么样");
+        int tokens = c1.stream().mapToInt(BoundedChatMemory::estimateTokens).sum();
+        BoundedChatMemory memory = memory(10, tokens, 8000, Duration.ofMinutes(30));
+        memory.add("c1", c1);
+
+        // 总token数超出上限时淘汰其他对话，当前写入的对话即使单独超出上限也不淘汰
+        List<Message> c2 = new ArrayList<>(toolTurn("北京今天天气怎么样"));
+        c2.addAll(toolTurn("明天呢"));
+        memory.add("c2", c2);
+        assertTrue(memory.get("c1").isEmpty());
+        assertEquals(8, memory.get("c2").size());
+        assertEquals(1, memory.stats().capacityEvictions());
+        assertTotals(memory, List.of(c2));
+    }
+
+    @Test
+    public void testClear() {
+        BoundedChatMemory memory = memory(10, 1_000_000, 8000, Duration.ofMinutes(30));
+        List<Message> c2 = toolTurn("北京今天天气怎么样");
+        memory.add("c1", toolTurn("武汉今天天气怎么样"));
+        memory.add("c2", c2);
+
+        memory.clear("c1");
+        assertTotals(memory, List.of(c2));
+        // 清空不存在的对话不影响统计
+        memory.clear("c1");
+        memory.clear("unknown");
+        assertTotals(memory, List.of(c2));
+        memory.clear("c2");
+        assertTotals(memory, List.of());
+    }
+
+    @Test
+    public void testMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", registry);
+        BoundedChatMemory memory = memory(beanFactory, 1, 1_000_000, 8000, Duration.ofMinutes(30));
+        memory.add("c1", toolTurn("武汉今天天气怎么样"));
+        memory.add("c2", toolTurn("北京今天天气怎么样"));
+
+        BoundedChatMemory.Stats stats = memory.stats();
+        assertEquals(1, registry.get("chat.memory.conversations").gauge().value());
+        assertEquals(stats.tokens(), registry.get("chat.memory.tokens").gauge().value());
+        assertEquals(stats.bytes(), registry.get("chat.memory.bytes").gauge().value());
+        assertEquals(1, registry.get("chat.memory.evictions").tag("reason", "capacity").functionCounter().count());
+        assertEquals(0, registry.get("chat.memory.evictions").tag("reason", "idle").functionCounter().count());
+    }
+}
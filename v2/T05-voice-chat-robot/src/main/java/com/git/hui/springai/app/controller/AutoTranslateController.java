@@ -1,13 +1,21 @@
 package com.git.hui.springai.app.controller;
 
 import com.git.hui.springai.app.service.AudioTransactionService;
+import com.git.hui.springai.app.service.TranscriptionScheduler;
 import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,13 +24,24 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
  * 语音实时翻译的对话实现
@@ -33,14 +52,35 @@ import java.util.concurrent.ConcurrentHashMap;
 @RestController
 @RequestMapping(path = "auto")
 public class AutoTranslateController {
+    private static final Logger log = LoggerFactory.getLogger(AutoTranslateController.class);
+
     @Autowired
     private AudioTransactionService audioTransactionService;
 
     private final ChatClient chatClient;
 
+    /**
+     * 等待前端建立SSE连接的最长时间
+     */
+    private static final Duration EMITTER_WAIT_TIMEOUT = Duration.ofSeconds(30);
+
     // 存储任务状态的内存映射
     private final Map<String, TranslationTask> taskMap = new ConcurrentHashMap<>();
-    private Map<String, SseEmitter> emitters = new ConcurrentHashMap<>();
+
+    /**
+     * 翻译任务线程池，核心线程数即同时处理的任务数，排队数超过上限时拒绝新的上传
+     */
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    /**
+     * 流水线模式下同时进行中的翻译请求数
+     */
+    private final int maxInFlightTranslations;
+
+    /**
+     * SSE连接的超时时间，需覆盖整个转录+翻译过程
+     */
+    private final Duration emitterTimeout;
 
     private static final String TRANS_SYSTEM_PROMPT = """
             你是一名专业的翻译专家，精通多种语言。请根据以下要求完成翻译任务：
@@ -54,12 +94,31 @@ public class AutoTranslateController {
             {content}
             """;
 
-    // 翻译任务记录类
-    private record TranslationTask(String taskId, MultipartFile file, String targetLanguage) {
+    /**
+     * 翻译任务记录类
+     *
+     * @param file    上传文件的副本，请求结束后容器会删除原始的上传临时文件，任务排队期间只能使用副本
+     * @param emitter 前端建立SSE连接后完成
+     */
+    private record TranslationTask(String taskId, StoredAudio file, String targetLanguage, boolean pipelined,
+                                   CompletableFuture<SseEmitter> emitter) {
     }
 
-    public AutoTranslateController(ChatModel chatModel) {
+    public AutoTranslateController(ChatModel chatModel,
+                                   @Value("${audio.translate.pool-size:4}") int poolSize,
+                                   @Value("${audio.translate.queue-capacity:32}") int queueCapacity,
+                                   @Value("${audio.translate.max-in-flight:3}") int maxInFlightTranslations,
+                                   @Value("${audio.translate.emitter-timeout:10m}") Duration emitterTimeout) {
         this.chatClient = ChatClient.builder(chatModel).build();
+        this.maxInFlightTranslations = Math.max(1, maxInFlightTranslations);
+        this.emitterTimeout = emitterTimeout;
+
+        this.taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(poolSize);
+        taskExecutor.setMaxPoolSize(poolSize);
+        taskExecutor.setQueueCapacity(queueCapacity);
+        taskExecutor.setThreadNamePrefix("translation-task-");
+        taskExecutor.initialize();
     }
 
 
@@ -97,6 +156,7 @@ public class AutoTranslateController {
      *
      * @param file           音频文件
      * @param targetLanguage 目标语言
+     * @param pipelined      是否使用流水线模式：每个转录片段完成后立即翻译，逐段返回转录与翻译结果
      * @return 任务ID
      * @throws IOException
      */
@@ -104,7 +164,8 @@ public class AutoTranslateController {
     @ResponseBody
     public Map<String, String> uploadAudio(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(required = false) String targetLanguage) throws IOException {
+            @RequestParam(required = false) String targetLanguage,
+            @RequestParam(defaultValue = "false") boolean pipelined) throws IOException {
 
         if (StringUtils.isBlank(targetLanguage)) {
             targetLanguage = "英语";
@@ -113,12 +174,18 @@ public class AutoTranslateController {
         // 生成唯一任务ID
         String taskId = UUID.randomUUID().toString();
 
-        // 创建翻译任务
-        TranslationTask task = new TranslationTask(taskId, file, targetLanguage);
+        // 创建翻译任务；任务在请求结束之后才执行，先把上传文件转存到任务自己的临时文件中
+        TranslationTask task = new TranslationTask(taskId, StoredAudio.copyOf(file), targetLanguage, pipelined, new CompletableFuture<>());
         taskMap.put(taskId, task);
 
-        // 异步处理任务
-        processTranslationTask(taskId);
+        // 异步处理任务，排队的任务过多时直接拒绝
+        try {
+            taskExecutor.execute(() -> processTranslationTask(task));
+        } catch (TaskRejectedException e) {
+            taskMap.remove(taskId);
+            task.file().delete();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "翻译任务过多，请稍后重试", e);
+        }
 
         // 返回任务ID
         return Map.of("taskId", taskId);
@@ -133,73 +200,141 @@ public class AutoTranslateController {
      */
     @GetMapping(path = "getResultStream/{taskId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter getResultStream(@PathVariable String taskId) {
-        SseEmitter emitter = new SseEmitter();
-        emitters.put(taskId, emitter);
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        TranslationTask task = taskMap.get(taskId);
+        if (task == null) {
+            emitter.completeWithError(new IllegalArgumentException("任务不存在或已结束: " + taskId));
+            return emitter;
+        }
+        // 唤醒等待连接的任务
+        task.emitter().complete(emitter);
         return emitter;
     }
 
     /**
-     * 异步处理翻译任务
+     * 处理翻译任务，在任务线程池中执行，任务结束前一直占用一个线程，以此限制同时处理的任务数
      *
-     * @param taskId 任务ID
+     * @param task 翻译任务
      */
-    private void processTranslationTask(String taskId) {
-        TranslationTask task = taskMap.get(taskId);
-        if (task == null) return;
+    private void processTranslationTask(TranslationTask task) {
+        try {
+            Mono<Void> process = task.pipelined() ? pipelinedTranslate(task) : translateWhole(task);
+            process.block();
+        } catch (Exception e) {
+            log.error("处理任务 {} 出错", task.taskId(), e);
+            SseEmitter emitter = task.emitter().getNow(null);
+            if (emitter != null) {
+                emitter.completeWithError(e);
+            }
+        } finally {
+            taskMap.remove(task.taskId());
+            task.file().delete();
+        }
+    }
 
+    /**
+     * 整体转录之后，再将全部文本一次性翻译，流式返回翻译结果
+     */
+    private Mono<Void> translateWhole(TranslationTask task) {
+        return Mono.fromCallable(() -> audioTransactionService.audioTransaction(task.file()))
+                .zipWith(awaitEmitter(task))
+                .flatMap(tuple -> {
+                    String transcription = tuple.getT1();
+                    SseEmitter emitter = tuple.getT2();
+                    log.info("任务 {} 音频转录结果：{}", task.taskId(), transcription);
+                    send(emitter, SseEmitter.event().name("transcription").data(transcription));
 
-        new Thread(() -> {
-            SseEmitter sseEmitter = null;
-            try {
-                // 1. 音频转录
-                String transcription = audioTransactionService.audioTransaction(task.file());
-                System.out.println("音频转录结果：" + transcription);
-                while (true) {
-                    sseEmitter = emitters.get(taskId);
-                    if (sseEmitter != null) {
-                        break;
+                    PromptTemplate promptTemplate = new PromptTemplate(TRANS_SYSTEM_PROMPT);
+                    Prompt prompt = promptTemplate.create(Map.of(
+                            "lan", task.targetLanguage(),
+                            "content", transcription));
+                    // 流式获取翻译结果
+                    return chatClient.prompt(prompt).stream().content()
+                            .doOnNext(txt -> send(emitter, SseEmitter.event().name("translation").data(txt)))
+                            .then(Mono.fromRunnable(() -> end(emitter)));
+                });
+    }
+
+    /**
+     * 流水线模式：转录与翻译重叠进行
+     * <p>
+     * 转录结果按片段顺序到达，每到达一个片段就推送 transcription 事件并发起翻译；同时进行中的翻译请求不超过 maxInFlightTranslations，
+     * 翻译结果仍按片段顺序推送 translation 事件，事件id为片段序号。
+     * 转录或翻译失败的片段推送 segment-error 事件，不影响后续片段
+     */
+    private Mono<Void> pipelinedTranslate(TranslationTask task) {
+        return awaitEmitter(task).flatMap(emitter -> audioTransactionService.transcribeStream(task.file())
+                .filter(chunk -> {
+                    if (chunk.isFailed()) {
+                        log.warn("任务 {} 片段 {} 转录失败: {}", task.taskId(), chunk.index(), chunk.error());
+                        send(emitter, segmentError(chunk, "转录失败: " + chunk.error()));
+                        return false;
                     }
+                    // 静音片段转录结果为空，无需翻译
+                    return StringUtils.isNotBlank(chunk.text());
+                })
+                .doOnNext(chunk -> send(emitter, SseEmitter.event().name("transcription")
+                        .id(String.valueOf(chunk.index())).data(chunk.text())))
+                .flatMapSequential(chunk -> translateSegment(task, chunk), maxInFlightTranslations, 1)
+                .doOnNext(event -> send(emitter, event))
+                .then(Mono.fromRunnable(() -> end(emitter))));
+    }
+
+    /**
+     * 翻译单个片段，失败时返回 segment-error 事件，不影响后续片段
+     */
+    private Mono<SseEmitter.SseEventBuilder> translateSegment(TranslationTask task, TranscriptionScheduler.TranscriptChunk chunk) {
+        PromptTemplate promptTemplate = new PromptTemplate(TRANS_SYSTEM_PROMPT);
+        Prompt prompt = promptTemplate.create(Map.of(
+                "lan", task.targetLanguage(),
+                "content", chunk.text()));
+        return chatClient.prompt(prompt).stream().content()
+                .collect(Collectors.joining())
+                .doOnNext(txt -> log.debug("任务 {} 片段 {} 翻译完成", task.taskId(), chunk.index()))
+                .map(txt -> SseEmitter.event().name("translation").id(String.valueOf(chunk.index())).data(txt))
+                .onErrorResume(e -> {
+                    log.error("任务 {} 片段 {} 翻译失败", task.taskId(), chunk.index(), e);
+                    return Mono.just(segmentError(chunk, "翻译失败: " + e.getMessage()));
+                });
+    }
+
+    private static SseEmitter.SseEventBuilder segmentError(TranscriptionScheduler.TranscriptChunk chunk, String message) {
+        return SseEmitter.event().name("segment-error").id(String.valueOf(chunk.index()))
+                .data(Map.of("index", chunk.index(),
+                        "startTimeMs", chunk.startTimeMs(),
+                        "endTimeMs", chunk.endTimeMs(),
+                        "message", message));
+    }
 
-                    Thread.sleep(10);
-                }
-                sseEmitter.send(SseEmitter.event().name("transcription").data(transcription));
-
-                // 2. 翻译处理
-                PromptTemplate promptTemplate = new PromptTemplate(TRANS_SYSTEM_PROMPT);
-                Prompt prompt = promptTemplate.create(Map.of(
-                        "lan", task.targetLanguage,
-                        "content", transcription));
-                // 流式获取翻译结果
-                SseEmitter finalSseEmitter = sseEmitter;
-
-                Flux<String> res = chatClient.prompt(prompt).stream().content();
-                res.doOnComplete(() -> {
-                            try {
-                                finalSseEmitter.send(SseEmitter.event().name("end").data("true"));
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                            finalSseEmitter.complete();
-                            taskMap.remove(taskId);
-                            emitters.remove(taskId);
-                        })
-                        .subscribe(txt -> {
-                            System.out.println("翻译结果：" + txt);
-                            try {
-                                finalSseEmitter.send(SseEmitter.event().name("translation").data(txt));
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        });
-            } catch (Exception e) {
-                System.err.println("处理任务出错：" + e.getMessage());
-                if (sseEmitter != null) {
-                    sseEmitter.completeWithError(e);
-                }
-                taskMap.remove(taskId);
-                emitters.remove(taskId);
+    /**
+     * 等待前端建立SSE连接；连接建立时由 {@link #getResultStream(String)} 直接唤醒
+     */
+    private Mono<SseEmitter> awaitEmitter(TranslationTask task) {
+        return Mono.fromFuture(task.emitter())
+                .timeout(EMITTER_WAIT_TIMEOUT, Mono.error(() -> new IllegalStateException("等待SSE连接超时: " + task.taskId())));
+    }
+
+    private static void end(SseEmitter emitter) {
+        send(emitter, SseEmitter.event().name("end").data("true"));
+        emitter.complete();
+    }
+
+    /**
+     * 转录与翻译的回调可能来自不同线程，同一个连接上的写入需要串行
+     */
+    private static void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        synchronized (emitter) {
+            try {
+                emitter.send(event);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-        }).start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        taskExecutor.shutdown();
     }
 
     @GetMapping(path = "translate", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -211,4 +346,74 @@ public class AutoTranslateController {
         return chatClient.prompt(prompt).stream().content();
     }
 
+    /**
+     * 转存到任务自己的临时文件中的上传文件，任务结束后删除
+     */
+    private record StoredAudio(Path path, String name, String originalFilename, String contentType, long size)
+            implements MultipartFile {
+
+        static StoredAudio copyOf(MultipartFile file) throws IOException {
+            Path temp = Files.createTempFile("translate-", ".upload");
+            try {
+                file.transferTo(temp);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            return new StoredAudio(temp, file.getName(), file.getOriginalFilename(), file.getContentType(), Files.size(temp));
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败: {}", path, e);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            transferTo(dest.toPath());
+        }
+
+        @Override
+        public void transferTo(Path dest) throws IOException {
+            Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
@@ -2,18 +2,21 @@ package com.git.hui.springai.app.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.sound.sampled.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 /**
  * 音频分割服务
@@ -26,34 +29,134 @@ import java.util.concurrent.Executors;
 public class AudioSegmentationService {
     private static final Logger log = LoggerFactory.getLogger(AudioSegmentationService.class);
     
-    // 线程池用于并行处理
-    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
-    
     // 默认分割参数
     private static final int DEFAULT_SEGMENT_DURATION_MS = 30000; // 30秒
     private static final long MAX_FILE_SIZE_BYTES = 10 * 1024 * 1024; // 10MB
+
+    // 静音检测参数
+    private static final int ENERGY_WINDOW_MS = 20; // 能量计算窗口
+    private static final int SILENCE_SMOOTH_MS = 200; // 判断安静程度的滑动区间，短于一般的句间停顿
+    private static final int SILENCE_SEARCH_MS = 5000; // 在目标时长前后多大范围内寻找切分点
     
     /**
      * 音频片段信息
+     * <p>
+     * 两种形式：一种直接持有字节数组；另一种是内存映射WAV文件上的PCM切片（{@link #getPcm()}），不占用堆内存，
+     * 转录时通过 {@link #toResource()} 在切片前拼上WAV文件头，以流的方式读取
      */
     public static class AudioSegment {
         private final byte[] data;
+        private final ByteBuffer pcm;
+        private final AudioFormat format;
         private final int index;
         private final long startTimeMs;
         private final long endTimeMs;
         
         public AudioSegment(byte[] data, int index, long startTimeMs, long endTimeMs) {
             this.data = data;
+            this.pcm = null;
+            this.format = null;
+            this.index = index;
+            this.startTimeMs = startTimeMs;
+            this.endTimeMs = endTimeMs;
+        }
+
+        public AudioSegment(ByteBuffer pcm, AudioFormat format, int index, long startTimeMs, long endTimeMs) {
+            this.data = null;
+            this.pcm = pcm;
+            this.format = format;
             this.index = index;
             this.startTimeMs = startTimeMs;
             this.endTimeMs = endTimeMs;
         }
         
         // Getters
-        public byte[] getData() { return data; }
+        /**
+         * 片段内容；切片形式的片段会拷贝生成一个完整的WAV文件，仅用于兼容，优先使用 {@link #toResource()}
+         */
+        public byte[] getData() {
+            if (data != null) {
+                return data;
+            }
+            byte[] bytes = new byte[getSize()];
+            System.arraycopy(WavAudioFile.header(format, pcm.remaining()), 0, bytes, 0, WavAudioFile.HEADER_SIZE);
+            pcm.duplicate().get(bytes, WavAudioFile.HEADER_SIZE, pcm.remaining());
+            return bytes;
+        }
+        public ByteBuffer getPcm() { return pcm == null ? null : pcm.asReadOnlyBuffer().order(pcm.order()); }
+        public AudioFormat getFormat() { return format; }
+        public int getSize() { return data != null ? data.length : WavAudioFile.HEADER_SIZE + pcm.remaining(); }
         public int getIndex() { return index; }
         public long getStartTimeMs() { return startTimeMs; }
         public long getEndTimeMs() { return endTimeMs; }
+
+        /**
+         * 片段对应的音频资源，用于提交给转录模型
+         */
+        public Resource toResource() {
+            String filename = "segment_" + index + (data != null ? ".tmp" : ".wav");
+            if (data != null) {
+                return new ByteArrayResource(data) {
+                    @Override
+                    public String getFilename() {
+                        return filename;
+                    }
+                };
+            }
+            return new AbstractResource() {
+                @Override
+                public String getFilename() {
+                    return filename;
+                }
+
+                @Override
+                public String getDescription() {
+                    return "audio segment [" + filename + "]";
+                }
+
+                @Override
+                public long contentLength() {
+                    return getSize();
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new SequenceInputStream(new ByteArrayInputStream(WavAudioFile.header(format, pcm.remaining())),
+                            new ByteBufferInputStream(pcm.duplicate()));
+                }
+            };
+        }
+    }
+
+    /**
+     * 读取ByteBuffer的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
     }
     
     /**
@@ -64,15 +167,35 @@ public class AudioSegmentationService {
         SIZE_BASED,    // 基于文件大小分割
         SILENCE_BASED  // 基于静音检测分割（高级功能）
     }
+
+    /**
+     * 按指定策略分割音频文件
+     *
+     * @param file 原始音频文件
+     * @param strategy 分割策略
+     * @return 音频片段列表
+     */
+    public List<AudioSegment> segment(MultipartFile file, SegmentationStrategy strategy) throws IOException {
+        return switch (strategy) {
+            case TIME_BASED -> segmentByTime(file, DEFAULT_SEGMENT_DURATION_MS);
+            case SIZE_BASED -> segmentBySize(file, MAX_FILE_SIZE_BYTES);
+            case SILENCE_BASED -> segmentBySilence(file, DEFAULT_SEGMENT_DURATION_MS);
+        };
+    }
     
     /**
      * 按时间分割音频文件
+     * <p>
+     * WAV文件走流式分割（见 {@link #streamByTime(MultipartFile, int)}），片段是内存映射区的切片；其他格式整体读入内存后分割
      * 
      * @param file 原始音频文件
      * @param segmentDurationMs 每个片段的时长（毫秒）
      * @return 音频片段列表
      */
     public List<AudioSegment> segmentByTime(MultipartFile file, int segmentDurationMs) throws IOException {
+        if (WavAudioFile.isWav(file)) {
+            return streamByTime(file, segmentDurationMs).toList();
+        }
         log.info("开始按时间分割音频文件: {}, 片段时长: {}ms", file.getOriginalFilename(), segmentDurationMs);
         
         byte[] fileBytes = file.getBytes();
@@ -140,6 +263,97 @@ public class AudioSegmentationService {
         return segments;
     }
     
+    /**
+     * 流式按时间分割WAV文件
+     * <p>
+     * 上传文件只落盘一次并映射到内存，片段按需惰性生成，每个片段都是映射区上的切片，
+     * 因此无论录音多长，堆内存占用都保持平稳
+     *
+     * @param file 原始音频文件，需为PCM编码的WAV
+     * @param segmentDurationMs 每个片段的时长（毫秒）
+     * @return 音频片段流
+     */
+    public Stream<AudioSegment> streamByTime(MultipartFile file, int segmentDurationMs) throws IOException {
+        WavAudioFile wav = WavAudioFile.open(file);
+        log.info("开始流式按时间分割音频文件: {}, 片段时长: {}ms, 音频格式: {}, 总时长: {}ms",
+                file.getOriginalFilename(), segmentDurationMs, wav.getFormat(), wav.getDurationMs());
+        return streamByTime(wav, segmentDurationMs);
+    }
+
+    /**
+     * 流式按时间分割已映射的WAV文件
+     */
+    public Stream<AudioSegment> streamByTime(WavAudioFile wav, int segmentDurationMs) {
+        long totalFrames = wav.getFrameLength();
+        long framesPerSegment = Math.max(1, wav.msToFrame(segmentDurationMs));
+        long totalSegments = (totalFrames + framesPerSegment - 1) / framesPerSegment;
+        return LongStream.range(0, totalSegments).mapToObj(i -> {
+            long startFrame = i * framesPerSegment;
+            long frames = Math.min(framesPerSegment, totalFrames - startFrame);
+            return new AudioSegment(wav.slice(startFrame, frames), wav.getFormat(), (int) i,
+                    wav.frameToMs(startFrame), wav.frameToMs(startFrame + frames));
+        });
+    }
+
+    /**
+     * 基于静音检测分割音频文件
+     * <p>
+     * 在目标时长附近寻找最安静的位置切分，避免把一个字切成两半，片段之间也不需要重叠；只支持PCM编码的WAV，其他格式退化为按时间分割
+     *
+     * @param file 原始音频文件
+     * @param targetDurationMs 片段的目标时长（毫秒），实际时长在目标时长前后 {@value #SILENCE_SEARCH_MS}ms 范围内
+     * @return 音频片段列表
+     */
+    public List<AudioSegment> segmentBySilence(MultipartFile file, int targetDurationMs) throws IOException {
+        if (!WavAudioFile.isWav(file)) {
+            log.warn("静音检测分割只支持WAV文件，{} 改为按时间分割", file.getOriginalFilename());
+            return segmentByTime(file, targetDurationMs);
+        }
+        WavAudioFile wav = WavAudioFile.open(file);
+        log.info("开始基于静音检测分割音频文件: {}, 目标时长: {}ms, 总时长: {}ms",
+                file.getOriginalFilename(), targetDurationMs, wav.getDurationMs());
+        List<AudioSegment> segments = streamBySilence(wav, targetDurationMs, SILENCE_SEARCH_MS).toList();
+        log.info("静音检测分割完成，共生成 {} 个片段", segments.size());
+        return segments;
+    }
+
+    /**
+     * 基于静音检测流式分割已映射的WAV文件
+     * <p>
+     * 先一次扫描PCM数据得到短时能量曲线，再从前往后在每个 目标时长±搜索范围 的区间内选能量最低处作为切分点；
+     * 片段依旧是映射区上的切片
+     *
+     * @param wav 已映射的WAV文件
+     * @param targetDurationMs 片段的目标时长（毫秒）
+     * @param searchWindowMs 切分点的搜索范围（毫秒），不超过目标时长的一半
+     * @return 音频片段流
+     */
+    public Stream<AudioSegment> streamBySilence(WavAudioFile wav, int targetDurationMs, int searchWindowMs) {
+        EnergyProfile energy = EnergyProfile.of(wav, ENERGY_WINDOW_MS);
+        long totalFrames = wav.getFrameLength();
+        long target = Math.max(1, wav.msToFrame(targetDurationMs));
+        long search = Math.min(wav.msToFrame(searchWindowMs), target / 2);
+        long smooth = wav.msToFrame(SILENCE_SMOOTH_MS);
+
+        // 切分点只是少量的帧号，先全部算出来；片段在消费时才生成
+        List<Long> cuts = new ArrayList<>();
+        long start = 0;
+        while (totalFrames - start > target + search) {
+            long cut = energy.quietestFrame(start + target - search, start + target + search, smooth, start + target);
+            cut = Math.max(cut, start + 1);
+            cuts.add(cut);
+            start = cut;
+        }
+        cuts.add(totalFrames);
+
+        return LongStream.range(0, cuts.size()).mapToObj(i -> {
+            long startFrame = i == 0 ? 0 : cuts.get((int) i - 1);
+            long endFrame = cuts.get((int) i);
+            return new AudioSegment(wav.slice(startFrame, endFrame - startFrame), wav.getFormat(), (int) i,
+                    wav.frameToMs(startFrame), wav.frameToMs(endFrame));
+        });
+    }
+
     /**
      * 按文件大小分割音频
      * 
@@ -191,66 +405,10 @@ public class AudioSegmentationService {
             return List.of(new AudioSegment(file.getBytes(), 0, 0, getFileDurationMs(file)));
         }
         
-        // 对于大文件，按时间分割
-        return segmentByTime(file, DEFAULT_SEGMENT_DURATION_MS);
-    }
-    
-    /**
-     * 并行处理音频片段
-     * 
-     * @param segments 音频片段列表
-     * @param processor 片段处理器函数
-     * @return 处理结果列表
-     */
-    public <T> List<CompletableFuture<T>> processSegmentsParallel(
-            List<AudioSegment> segments, 
-            java.util.function.Function<AudioSegment, T> processor) {
-        
-        log.info("开始并行处理 {} 个音频片段", segments.size());
-        
-        List<CompletableFuture<T>> futures = new ArrayList<>();
-        
-        for (AudioSegment segment : segments) {
-            CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    log.debug("开始处理片段 {}", segment.getIndex());
-                    T result = processor.apply(segment);
-                    log.debug("片段 {} 处理完成", segment.getIndex());
-                    return result;
-                } catch (Exception e) {
-                    log.error("处理片段 {} 时发生错误", segment.getIndex(), e);
-                    throw new RuntimeException(e);
-                }
-            }, executorService);
-            
-            futures.add(future);
-        }
-        
-        return futures;
-    }
-    
-    /**
-     * 等待所有并行任务完成并收集结果
-     * 
-     * @param futures CompletableFuture列表
-     * @param <T> 结果类型
-     * @return 按顺序排列的结果列表
-     */
-    public <T> List<T> collectResults(List<CompletableFuture<T>> futures) {
-        List<T> results = new ArrayList<>();
-        
-        for (int i = 0; i < futures.size(); i++) {
-            try {
-                T result = futures.get(i).join(); // 按顺序等待结果
-                results.add(result);
-                log.debug("收集到片段 {} 的结果", i);
-            } catch (Exception e) {
-                log.error("收集片段 {} 结果时发生错误", i, e);
-                results.add(null); // 保持索引对应关系
-            }
-        }
-        
-        return results;
+        // 对于大文件：WAV在静音处分割，其他格式按时间分割
+        return WavAudioFile.isWav(file)
+                ? segmentBySilence(file, DEFAULT_SEGMENT_DURATION_MS)
+                : segmentByTime(file, DEFAULT_SEGMENT_DURATION_MS);
     }
     
     /**
@@ -275,11 +433,4 @@ public class AudioSegmentationService {
             return 0;
         }
     }
-    
-    /**
-     * 关闭线程池
-     */
-    public void shutdown() {
-        executorService.shutdown();
-    }
-}
\ No newline at end of file
+}
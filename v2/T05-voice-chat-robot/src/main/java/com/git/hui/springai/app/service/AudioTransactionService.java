@@ -11,10 +11,11 @@ import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -33,6 +34,9 @@ public class AudioTransactionService {
     @Autowired
     private AudioSegmentationService segmentationService;
 
+    @Autowired
+    private TranscriptionScheduler transcriptionScheduler;
+
     /**
      * 单个音频文件转录（原有方法保持兼容）
      */
@@ -64,14 +68,11 @@ public class AudioTransactionService {
                 return audioTransactionSingle(file);
             }
             
-            // 并行处理所有片段
-            List<CompletableFuture<String>> futures = segmentationService.processSegmentsParallel(
-                segments,
-                this::transcribeSegment
-            );
-            
-            // 收集结果
-            List<String> results = segmentationService.collectResults(futures);
+            // 并行处理所有片段，并发数、超时与重试由调度器控制，结果按片段顺序返回
+            List<String> results = transcriptionScheduler.transcribe(segments.stream(), this::transcribeSegment)
+                    .map(TranscriptionScheduler.TranscriptChunk::text)
+                    .collectList()
+                    .block();
             
             // 合并结果
             String finalResult = mergeTranscriptionResults(results);
@@ -88,6 +89,21 @@ public class AudioTransactionService {
         }
     }
     
+    /**
+     * 渐进式转录：按片段顺序输出转录结果，某个片段及其之前的片段都完成后立即返回该片段的文本，
+     * 调用方可以边转录边处理（如逐段翻译）
+     *
+     * @param file 音频文件
+     * @return 按片段顺序排列的转录结果，小文件只有一个片段
+     */
+    public Flux<TranscriptionScheduler.TranscriptChunk> transcribeStream(MultipartFile file) {
+        return Mono.fromCallable(() -> segmentationService.smartSegment(file))
+                .flatMapMany(segments -> {
+                    log.info("开始渐进式转录音频文件: {}，片段数: {}", file.getOriginalFilename(), segments.size());
+                    return transcriptionScheduler.transcribe(segments.stream(), this::transcribeSegment);
+                });
+    }
+
     /**
      * 单线程音频转录
      */
@@ -112,38 +128,24 @@ public class AudioTransactionService {
     }
     
     /**
-     * 转录单个音频片段
+     * 转录单个音频片段，失败时抛出异常，由调度器负责重试
      */
     private String transcribeSegment(AudioSegmentationService.AudioSegment segment) {
-        try {
-            AudioTranscriptionOptions options = OpenAiAudioTranscriptionOptions.builder()
-                    .responseFormat(OpenAiAudioApi.TranscriptResponseFormat.JSON)
-                    .model("FunAudioLLM/SenseVoiceSmall")
-                    .build();
-            
-            Resource resource = new ByteArrayResource(segment.getData()) {
-                @Override
-                public String getFilename() {
-                    return "segment_" + segment.getIndex() + ".tmp";
-                }
-                
-                @Override
-                public long contentLength() {
-                    return segment.getData().length;
-                }
-            };
-            
-            AudioTranscriptionPrompt prompt = new AudioTranscriptionPrompt(resource, options);
-            AudioTranscriptionResponse response = transcriptionModel.call(prompt);
-            
-            String result = response.getResult().getOutput();
-            log.debug("片段 {} 转录完成，结果长度: {} 字符", segment.getIndex(), result.length());
-            
-            return result;
-        } catch (Exception e) {
-            log.error("转录片段 {} 失败", segment.getIndex(), e);
-            return ""; // 返回空字符串而不是抛出异常
-        }
+        AudioTranscriptionOptions options = OpenAiAudioTranscriptionOptions.builder()
+                .responseFormat(OpenAiAudioApi.TranscriptResponseFormat.JSON)
+                .model("FunAudioLLM/SenseVoiceSmall")
+                .build();
+
+        // 流式分割的片段直接从内存映射区读取，不额外拷贝整段音频
+        Resource resource = segment.toResource();
+
+        AudioTranscriptionPrompt prompt = new AudioTranscriptionPrompt(resource, options);
+        AudioTranscriptionResponse response = transcriptionModel.call(prompt);
+
+        String result = response.getResult().getOutput();
+        log.debug("片段 {} 转录完成，结果长度: {} 字符", segment.getIndex(), result.length());
+
+        return result;
     }
     
     /**
@@ -0,0 +1,125 @@
+package com.git.hui.springai.app.service;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * 音频的短时能量曲线，用于静音检测
+ * <p>
+ * 一次顺序扫描PCM数据，按固定时长的窗口计算均方根(RMS)能量；同时保存前缀和，任意区间的平均能量 O(1) 可得
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class EnergyProfile {
+    /**
+     * 每个窗口的RMS能量，采样值归一化到 [-1, 1]
+     */
+    private final float[] rms;
+
+    /**
+     * rms 的前缀和，prefix[i] = rms[0] + ... + rms[i - 1]
+     */
+    private final double[] prefix;
+
+    private final long framesPerWindow;
+
+    private EnergyProfile(float[] rms, long framesPerWindow) {
+        this.rms = rms;
+        this.framesPerWindow = framesPerWindow;
+        this.prefix = new double[rms.length + 1];
+        for (int i = 0; i < rms.length; i++) {
+            prefix[i + 1] = prefix[i] + rms[i];
+        }
+    }
+
+    /**
+     * 计算能量曲线
+     *
+     * @param wav      已映射的WAV文件
+     * @param windowMs 窗口时长（毫秒），一般取 10~30ms
+     */
+    public static EnergyProfile of(WavAudioFile wav, int windowMs) {
+        AudioFormat format = wav.getFormat();
+        long totalFrames = wav.getFrameLength();
+        long framesPerWindow = Math.max(1, wav.msToFrame(windowMs));
+        int windows = (int) ((totalFrames + framesPerWindow - 1) / framesPerWindow);
+
+        ByteBuffer pcm = wav.slice(0, totalFrames);
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        int channels = format.getChannels();
+        int frameSize = format.getFrameSize();
+        float[] rms = new float[windows];
+        for (int w = 0; w < windows; w++) {
+            long startFrame = w * framesPerWindow;
+            long endFrame = Math.min(startFrame + framesPerWindow, totalFrames);
+            double sum = 0;
+            for (long frame = startFrame; frame < endFrame; frame++) {
+                int offset = (int) (frame * frameSize);
+                for (int c = 0; c < channels; c++) {
+                    double sample = sample(pcm, offset + c * bytesPerSample, bytesPerSample);
+                    sum += sample * sample;
+                }
+            }
+            rms[w] = (float) Math.sqrt(sum / ((endFrame - startFrame) * channels));
+        }
+        return new EnergyProfile(rms, framesPerWindow);
+    }
+
+    /**
+     * 读取一个采样并归一化到 [-1, 1]；WAV中8位为无符号数，其余为小端有符号数
+     */
+    private static double sample(ByteBuffer pcm, int offset, int bytesPerSample) {
+        switch (bytesPerSample) {
+            case 1:
+                return ((pcm.get(offset) & 0xFF) - 128) / 128.0;
+            case 2:
+                return pcm.getShort(offset) / 32768.0;
+            case 3:
+                int value = (pcm.get(offset) & 0xFF) | (pcm.get(offset + 1) & 0xFF) << 8 | pcm.get(offset + 2) << 16;
+                return value / 8388608.0;
+            default:
+                return pcm.getInt(offset) / 2147483648.0;
+        }
+    }
+
+    public int windows() {
+        return rms.length;
+    }
+
+    public float rms(int window) {
+        return rms[window];
+    }
+
+    /**
+     * 在 [fromFrame, toFrame) 区间内寻找最安静的位置
+     * <p>
+     * 以 smoothFrames 长度的滑动区间的平均能量衡量安静程度（单个窗口容易被字与字之间的短暂停顿误导）；
+     * 能量相近时优先选择离 targetFrame 更近的位置，使片段时长尽量接近目标时长
+     *
+     * @return 最安静区间的中点所在的帧
+     */
+    public long quietestFrame(long fromFrame, long toFrame, long smoothFrames, long targetFrame) {
+        int from = (int) (fromFrame / framesPerWindow);
+        int to = (int) Math.min(rms.length, toFrame / framesPerWindow);
+        int span = (int) Math.max(1, smoothFrames / framesPerWindow);
+        int target = (int) (targetFrame / framesPerWindow);
+        int radius = Math.max(1, Math.max(target - from, to - target));
+
+        int best = -1;
+        double bestScore = Double.MAX_VALUE;
+        for (int w = from; w + span <= to; w++) {
+            double average = (prefix[w + span] - prefix[w]) / span;
+            // 距离目标位置越远，惩罚越大（最多放大10%）
+            double score = average * (1 + 0.1 * Math.abs(w + span / 2 - target) / radius);
+            if (score < bestScore) {
+                bestScore = score;
+                best = w;
+            }
+        }
+        if (best < 0) {
+            return targetFrame;
+        }
+        return (best + span / 2) * framesPerWindow;
+    }
+}
@@ -0,0 +1,133 @@
+package com.git.hui.springai.app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 音频片段转录调度器
+ * <p>
+ * - 同时进行中的转录请求数受 concurrency 限制，片段按需从分割流中拉取，不会一次性把所有片段压入线程池<br/>
+ * - 每个片段独立超时与重试，重试耗尽后以失败片段的形式返回，不影响其他片段<br/>
+ * - 结果按片段顺序输出：某个片段的结果在它之前的片段都完成后立即发出，无需等待最慢的片段<br/>
+ * 转录请求是阻塞的网络调用，运行时支持虚拟线程（JDK 21+）时每个请求使用一个虚拟线程，否则使用与并发数相同的平台线程池
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+@Service
+public class TranscriptionScheduler {
+    private static final Logger log = LoggerFactory.getLogger(TranscriptionScheduler.class);
+
+    private final int concurrency;
+    private final int maxRetries;
+    private final Duration timeout;
+
+    private final ExecutorService executorService;
+    private final Scheduler scheduler;
+
+    public TranscriptionScheduler(@Value("${audio.transcription.concurrency:4}") int concurrency,
+                                  @Value("${audio.transcription.max-retries:2}") int maxRetries,
+                                  @Value("${audio.transcription.timeout:60s}") Duration timeout) {
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRetries = maxRetries;
+        this.timeout = timeout;
+        this.executorService = newExecutor(this.concurrency);
+        this.scheduler = Schedulers.fromExecutorService(executorService, "audio-transcription");
+    }
+
+    /**
+     * 优先使用虚拟线程；项目按JDK17编译，通过反射获取 JDK 21 的 Executors#newVirtualThreadPerTaskExecutor
+     */
+    private static ExecutorService newExecutor(int concurrency) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("音频转录使用虚拟线程执行，最大并发数: {}", concurrency);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.info("当前JDK不支持虚拟线程，音频转录使用 {} 个平台线程执行", concurrency);
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(concurrency, r -> {
+                Thread thread = new Thread(r, "audio-transcription-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * 转录片段，按片段顺序渐进式返回结果
+     *
+     * @param segments    音频片段流，按需拉取
+     * @param transcriber 单个片段的转录逻辑，失败时抛出异常以触发重试
+     * @return 按片段顺序排列的转录结果
+     */
+    public Flux<TranscriptChunk> transcribe(Stream<AudioSegmentationService.AudioSegment> segments,
+                                            Function<AudioSegmentationService.AudioSegment, String> transcriber) {
+        return Flux.fromStream(segments)
+                .flatMapSequential(segment -> transcribe(segment, transcriber), concurrency, 1);
+    }
+
+    private Mono<TranscriptChunk> transcribe(AudioSegmentationService.AudioSegment segment,
+                                             Function<AudioSegmentationService.AudioSegment, String> transcriber) {
+        long start = System.currentTimeMillis();
+        return Mono.fromCallable(() -> transcriber.apply(segment))
+                .subscribeOn(scheduler)
+                .timeout(timeout)
+                .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(500))
+                        .doBeforeRetry(signal -> log.warn("片段 {} 转录失败，第 {} 次重试: {}",
+                                segment.getIndex(), signal.totalRetries() + 1, signal.failure().getMessage())))
+                .map(text -> {
+                    log.debug("片段 {} 转录完成，耗时: {}ms", segment.getIndex(), System.currentTimeMillis() - start);
+                    return TranscriptChunk.of(segment, text);
+                })
+                .onErrorResume(e -> {
+                    log.error("片段 {} 转录失败，已放弃", segment.getIndex(), e);
+                    return Mono.just(TranscriptChunk.failed(segment, e));
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+        executorService.shutdown();
+    }
+
+    /**
+     * 单个片段的转录结果
+     *
+     * @param index       片段序号
+     * @param startTimeMs 片段开始时间
+     * @param endTimeMs   片段结束时间
+     * @param text        转录文本，失败时为空字符串
+     * @param error       失败原因，成功时为null
+     */
+    public record TranscriptChunk(int index, long startTimeMs, long endTimeMs, String text, String error) {
+        public static TranscriptChunk of(AudioSegmentationService.AudioSegment segment, String text) {
+            return new TranscriptChunk(segment.getIndex(), segment.getStartTimeMs(), segment.getEndTimeMs(),
+                    text == null ? "" : text, null);
+        }
+
+        public static TranscriptChunk failed(AudioSegmentationService.AudioSegment segment, Throwable e) {
+            return new TranscriptChunk(segment.getIndex(), segment.getStartTimeMs(), segment.getEndTimeMs(), "", String.valueOf(e.getMessage()));
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.git.hui.springai.app.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的 PCM WAV 文件
+ * <p>
+ * 上传的文件只落盘一次（大文件上传时本身就在临时文件中，transferTo 直接移动/复制），解析RIFF头之后将 data 块整体映射到内存，
+ * 切分出的音频片段都是映射区的切片，不占用堆内存；映射建立后临时文件即被删除，映射区在所有片段不可达后随GC释放
+ *
+ * @author YiHui
+ * @date 2026/10/18
+ */
+public class WavAudioFile {
+    /**
+     * 标准WAV文件头长度
+     */
+    public static final int HEADER_SIZE = 44;
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final AudioFormat format;
+    private final MappedByteBuffer data;
+
+    private WavAudioFile(AudioFormat format, MappedByteBuffer data) {
+        this.format = format;
+        this.data = data;
+    }
+
+    /**
+     * 判断上传的文件是否为WAV格式，只读取前12个字节
+     */
+    public static boolean isWav(MultipartFile file) throws IOException {
+        try (var in = file.getInputStream()) {
+            byte[] head = in.readNBytes(12);
+            return head.length == 12
+                    && "RIFF".equals(new String(head, 0, 4, StandardCharsets.US_ASCII))
+                    && "WAVE".equals(new String(head, 8, 4, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * 将上传的文件转存到临时文件后映射
+     */
+    public static WavAudioFile open(MultipartFile file) throws IOException {
+        Path temp = Files.createTempFile("audio-", ".wav");
+        try {
+            file.transferTo(temp);
+            return open(temp);
+        } finally {
+            // 映射建立之后删除文件不影响已映射的内容；不允许删除已映射文件的平台上退出时再删除
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                File tempFile = temp.toFile();
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 映射本地WAV文件
+     */
+    public static WavAudioFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, chunkHeader, 0);
+            if (!"RIFF".equals(fourCC(chunkHeader, 0))) {
+                throw new IOException("不是有效的WAV文件: 缺少RIFF头");
+            }
+
+            AudioFormat format = null;
+            long position = 12;
+            long size = channel.size();
+            while (position + 8 <= size) {
+                chunkHeader.clear();
+                readFully(channel, chunkHeader, position);
+                String id = fourCC(chunkHeader, 0);
+                long chunkSize = Integer.toUnsignedLong(chunkHeader.getInt(4));
+                long body = position + 8;
+                if ("fmt ".equals(id)) {
+                    ByteBuffer fmt = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(channel, fmt, body);
+                    format = toFormat(fmt);
+                } else if ("data".equals(id)) {
+                    if (format == null) {
+                        throw new IOException("不是有效的WAV文件: data块之前缺少fmt块");
+                    }
+                    // 边录边写的WAV文件data块长度可能为0或0xFFFFFFFF，以实际文件长度为准
+                    long length = chunkSize == 0 || body + chunkSize > size ? size - body : chunkSize;
+                    length -= length % format.getFrameSize();
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IOException("WAV文件过大，音频数据超过2GB");
+                    }
+                    MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, body, length);
+                    data.order(ByteOrder.LITTLE_ENDIAN);
+                    return new WavAudioFile(format, data);
+                }
+                // 块长度为奇数时有一个填充字节
+                position = body + chunkSize + (chunkSize & 1);
+            }
+            throw new IOException("不是有效的WAV文件: 缺少data块");
+        }
+    }
+
+    private static AudioFormat toFormat(ByteBuffer fmt) throws IOException {
+        int audioFormat = Short.toUnsignedInt(fmt.getShort(0));
+        int channels = Short.toUnsignedInt(fmt.getShort(2));
+        int sampleRate = fmt.getInt(4);
+        int blockAlign = Short.toUnsignedInt(fmt.getShort(12));
+        int bitsPerSample = Short.toUnsignedInt(fmt.getShort(14));
+        if (audioFormat != WAVE_FORMAT_PCM && audioFormat != WAVE_FORMAT_EXTENSIBLE) {
+            throw new IOException("只支持PCM编码的WAV文件，当前编码: " + audioFormat);
+        }
+        // WAV中8位采样为无符号数，其余为有符号数
+        AudioFormat.Encoding encoding = bitsPerSample > 8 ? AudioFormat.Encoding.PCM_SIGNED : AudioFormat.Encoding.PCM_UNSIGNED;
+        return new AudioFormat(encoding, sampleRate, bitsPerSample, channels, blockAlign, sampleRate, false);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("WAV文件不完整");
+            }
+        }
+    }
+
+    private static String fourCC(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[4];
+        buffer.get(offset, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * 总帧数
+     */
+    public long getFrameLength() {
+        return data.capacity() / format.getFrameSize();
+    }
+
+    /**
+     * 总时长（毫秒）
+     */
+    public long getDurationMs() {
+        return frameToMs(getFrameLength());
+    }
+
+    public long frameToMs(long frame) {
+        return (long) (frame / format.getFrameRate() * 1000);
+    }
+
+    public long msToFrame(long ms) {
+        return (long) (ms / 1000.0 * format.getFrameRate());
+    }
+
+    /**
+     * 指定帧区间的PCM数据，与映射区共享内存
+     *
+     * @param startFrame 起始帧
+     * @param frames     帧数
+     */
+    public ByteBuffer slice(long startFrame, long frames) {
+        int frameSize = format.getFrameSize();
+        return data.slice((int) (startFrame * frameSize), (int) (frames * frameSize)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 生成标准的44字节WAV文件头
+     *
+     * @param format     音频格式
+     * @param dataLength PCM数据长度
+     */
+    public static byte[] header(AudioFormat format, int dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(36 + dataLength);
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);
+        header.putShort((short) WAVE_FORMAT_PCM);
+        header.putShort((short) format.getChannels());
+        header.putInt((int) format.getSampleRate());
+        header.putInt((int) (format.getSampleRate() * format.getFrameSize()));
+        header.putShort((short) format.getFrameSize());
+        header.putShort((short) format.getSampleSizeInBits());
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(dataLength);
+        return header.array();
+    }
+}